@@ -0,0 +1,284 @@
+package api;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import exeptions.ManagerSaveException;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Журнал запросов. Обработчик только кладет запись в кольцевой буфер из заранее выделенных массивов,
+// а отдельный поток раз в IDLE_PARK_NANOS переносит накопленное в файл. Когда буфер полон, запись
+// отбрасывается и учитывается в getDropped(): запрос никогда не ждет диска.
+// Строка журнала: время в мс от эпохи, эндпоинт, id или '-', код ответа, байт в запросе, байт в ответе,
+// время обработки в мкс, например "1760781600123 GET_TASK_BY_ID 7 200 0 245 312".
+public final class AccessLog implements AutoCloseable {
+    private static final long IDLE_PARK_NANOS = 20_000_000;
+    private static final Endpoint[] ENDPOINTS = Endpoint.values();
+
+    private final Path file;
+    private final int sampleEvery;
+    private final long maxFileBytes;
+    private final int maxFiles;
+
+    // кольцевой буфер: запись с номером n лежит в ячейке n & mask и опубликована, когда published[ячейка] == n + 1
+    private final int capacity;
+    private final int mask;
+    private final long[] times;
+    private final int[] endpoints;
+    private final int[] ids;
+    private final int[] statuses;
+    private final long[] bytesIn;
+    private final long[] bytesOut;
+    private final long[] latencies;
+    private final AtomicLongArray published;
+    private final AtomicLong head = new AtomicLong(); // номер следующей записи
+    private volatile long tail; // номер первой не записанной в файл, меняет только поток записи
+    private final LongAdder dropped = new LongAdder();
+    private final Thread thread; // null - буфер разбирается вызовом drain()
+    private volatile boolean closed;
+
+    // поля ниже использует только поток записи
+    private final StringBuilder line = new StringBuilder(96);
+    private Writer out;
+    private long fileSize;
+    private long written;
+
+    public AccessLog(AccessLogConfig config) {
+        this(config, true);
+    }
+
+    AccessLog(AccessLogConfig config, boolean background) {
+        this.file = config.file();
+        this.sampleEvery = config.sampleEvery();
+        this.maxFileBytes = config.maxFileBytes();
+        this.maxFiles = config.maxFiles();
+        this.capacity = config.bufferCapacity() == 1 ? 1 : Integer.highestOneBit(config.bufferCapacity() - 1) << 1;
+        this.mask = capacity - 1;
+        this.times = new long[capacity];
+        this.endpoints = new int[capacity];
+        this.ids = new int[capacity];
+        this.statuses = new int[capacity];
+        this.bytesIn = new long[capacity];
+        this.bytesOut = new long[capacity];
+        this.latencies = new long[capacity];
+        this.published = new AtomicLongArray(capacity);
+        try {
+            open();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Не удалось открыть журнал запросов " + file);
+        }
+        if (background) {
+            this.thread = new Thread(this::run, "access-log-writer");
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            this.thread = null;
+        }
+    }
+
+    // Возвращает false, если запись не попала в буфер: отсеяна выборкой, буфер полон или журнал закрыт
+    public boolean record(Endpoint endpoint, int id, int status, long requestBytes, long responseBytes,
+                          long latencyNanos) {
+        if (closed) return false;
+        if (status < 400 && sampleEvery > 1 && ThreadLocalRandom.current().nextInt(sampleEvery) != 0) return false;
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail >= capacity) {
+                dropped.increment();
+                return false;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+        int slot = (int) sequence & mask;
+        times[slot] = System.currentTimeMillis();
+        endpoints[slot] = endpoint.ordinal();
+        ids[slot] = id;
+        statuses[slot] = status;
+        bytesIn[slot] = requestBytes;
+        bytesOut[slot] = responseBytes;
+        latencies[slot] = latencyNanos;
+        published.setRelease(slot, sequence + 1);
+        return true;
+    }
+
+    // Сколько записей отброшено из-за полного буфера или ошибок записи в файл
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    // Сколько строк записано в файл; читать из потока записи или после close()
+    long getWritten() {
+        return written;
+    }
+
+    // Фильтр для контекстов HttpServer: меряет время обработки и размер ответа и пишет запрос в журнал
+    Filter filter() {
+        return new AccessLogFilter();
+    }
+
+    // Переносит в файл все опубликованные записи; возвращает их число
+    int drain() {
+        int drained = 0;
+        long next = tail;
+        while (published.getAcquire((int) next & mask) == next + 1) {
+            int slot = (int) next & mask;
+            line.setLength(0);
+            line.append(times[slot]).append(' ').append(ENDPOINTS[endpoints[slot]]).append(' ');
+            if (ids[slot] == Router.NO_ID) line.append('-');
+            else line.append(ids[slot]);
+            line.append(' ').append(statuses[slot])
+                    .append(' ').append(bytesIn[slot])
+                    .append(' ').append(bytesOut[slot])
+                    .append(' ').append(latencies[slot] / 1000)
+                    .append('\n');
+            // ячейка освобождается до записи в файл: строка уже скопирована
+            tail = ++next;
+            drained++;
+            writeLine();
+        }
+        if (drained > 0 && out != null) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                closeQuietly();
+            }
+        }
+        return drained;
+    }
+
+    private void writeLine() {
+        try {
+            if (out == null) open();
+            if (fileSize > 0 && fileSize + line.length() > maxFileBytes) rotate();
+            out.append(line);
+            fileSize += line.length();
+            written++;
+        } catch (IOException e) {
+            // файл откроется заново на следующей строке, потерянная строка считается отброшенной
+            dropped.increment();
+            closeQuietly();
+        }
+    }
+
+    private void open() throws IOException {
+        out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        fileSize = Files.size(file);
+    }
+
+    private void rotate() throws IOException {
+        out.close();
+        out = null;
+        if (maxFiles == 0) {
+            Files.delete(file);
+        } else {
+            Files.deleteIfExists(archive(maxFiles));
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                if (Files.exists(archive(i))) Files.move(archive(i), archive(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(file, archive(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        open();
+    }
+
+    private Path archive(int number) {
+        return file.resolveSibling(file.getFileName() + "." + number);
+    }
+
+    private void closeQuietly() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // уже учтено как отброшенная строка
+        }
+        out = null;
+    }
+
+    private void run() {
+        while (!closed) {
+            if (drain() == 0) LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    // Записывает в файл все, что успело попасть в буфер, и закрывает файл
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        drain();
+        closeQuietly();
+    }
+
+    private class AccessLogFilter extends Filter {
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            long started = System.nanoTime();
+            CountingOutputStream body = new CountingOutputStream(exchange.getResponseBody());
+            exchange.setStreams(null, body);
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                long route = BaseHttpHandler.route(exchange);
+                record(Router.endpoint(route), Router.id(route), exchange.getResponseCode(), requestLength(exchange),
+                        body.count, System.nanoTime() - started);
+            }
+        }
+
+        @Override
+        public String description() {
+            return "Журнал запросов";
+        }
+
+        private static long requestLength(HttpExchange exchange) {
+            String length = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (length == null) return 0;
+            try {
+                return Long.parseLong(length);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
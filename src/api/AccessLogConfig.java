@@ -0,0 +1,26 @@
+package api;
+
+import java.nio.file.Path;
+
+// Настройки журнала запросов. bufferCapacity - сколько записей помещается в кольцевой буфер, округляется вверх
+// до степени двойки; sampleEvery - в журнал попадает в среднем один из sampleEvery успешных запросов,
+// ответы с кодом 400 и выше пишутся всегда; при размере файла больше maxFileBytes он переименовывается
+// в file.1, file.1 - в file.2 и так далее, хранится не больше maxFiles старых файлов.
+public record AccessLogConfig(Path file, int bufferCapacity, int sampleEvery, long maxFileBytes, int maxFiles) {
+
+    public AccessLogConfig {
+        if (file == null) throw new IllegalArgumentException("Не указан файл журнала запросов");
+        if (bufferCapacity < 1 || bufferCapacity > 1 << 24 || sampleEvery < 1 || maxFileBytes < 1 || maxFiles < 0) {
+            throw new IllegalArgumentException("Некорректные настройки журнала запросов");
+        }
+    }
+
+    // Каждый запрос, буфер на 8192 записи, файлы по 10 МиБ, 5 старых файлов
+    public static AccessLogConfig of(Path file) {
+        return new AccessLogConfig(file, 8192, 1, 10L << 20, 5);
+    }
+
+    public AccessLogConfig withSampleEvery(int sampleEvery) {
+        return new AccessLogConfig(file, bufferCapacity, sampleEvery, maxFileBytes, maxFiles);
+    }
+}
@@ -1,18 +1,22 @@
 package api;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import service.Managers;
 import service.TaskManager;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Collection;
 
 public abstract class BaseHttpHandler implements HttpHandler {
+    private static final Router ROUTER = Router.standard();
+    private static final int STREAM_BUFFER_CHARS = 8192;
+
     protected final TaskManager manager;
     protected final Gson gson;
 
@@ -21,57 +25,26 @@ public abstract class BaseHttpHandler implements HttpHandler {
         this.gson = Managers.getGson();
     }
 
-    protected static EndpointData getEndpoint(String root, String requestPath, String requestMethod) {
-        String patternString = String.format("^/%s(/(\\d+))?(/subtasks)?$", root);
-        Pattern pattern = Pattern.compile(patternString);
-        Matcher matcher = pattern.matcher(requestPath);
+    // Маршрут запроса, см. Router: эндпоинт и числовой параметр пути без промежуточных объектов
+    protected static long route(HttpExchange exchange) {
+        return ROUTER.route(exchange.getRequestMethod(), exchange.getRequestURI().getPath());
+    }
 
-        if (matcher.find()) {
-            String id = matcher.group(2);
-            boolean epicSubtasks = matcher.group(3) != null;
+    // ?expand=subtasks - эпики в ответе содержат подзадачи целиком, а не список их id
+    protected static Gson gsonFor(HttpExchange exchange) {
+        String expand = getQueryParam(exchange.getRequestURI().getQuery(), "expand");
+        return "subtasks".equals(expand) ? Managers.getExpandedGson() : Managers.getGson();
+    }
 
-            switch (root) {
-                case "tasks" -> {
-                    if (id == null && requestMethod.equals("GET"))
-                        return new EndpointData(Endpoint.GET_TASKS, Optional.empty());
-                    if (id == null && requestMethod.equals("POST"))
-                        return new EndpointData(Endpoint.CREATE_TASK, Optional.empty());
-                    if (id != null && requestMethod.equals("GET"))
-                        return new EndpointData(Endpoint.GET_TASK_BY_ID, Optional.of(Integer.parseInt(id)));
-                    if (id != null && requestMethod.equals("POST"))
-                        return new EndpointData(Endpoint.UPDATE_TASK, Optional.of(Integer.parseInt(id)));
-                    if (id != null && requestMethod.equals("DELETE"))
-                        return new EndpointData(Endpoint.DELETE_TASK, Optional.of(Integer.parseInt(id)));
-                }
-                case "subtasks" -> {
-                    if (id == null && requestMethod.equals("GET"))
-                        return new EndpointData(Endpoint.GET_SUBTASKS, Optional.empty());
-                    if (id == null && requestMethod.equals("POST"))
-                        return new EndpointData(Endpoint.CREATE_SUBTASK, Optional.empty());
-                    if (id != null && requestMethod.equals("GET"))
-                        return new EndpointData(Endpoint.GET_SUBTASK_BY_ID, Optional.of(Integer.parseInt(id)));
-                    if (id != null && requestMethod.equals("POST"))
-                        return new EndpointData(Endpoint.UPDATE_SUBTASK, Optional.of(Integer.parseInt(id)));
-                    if (id != null && requestMethod.equals("DELETE"))
-                        return new EndpointData(Endpoint.DELETE_SUBTASK, Optional.of(Integer.parseInt(id)));
-                }
-                case "epics" -> {
-                    if (id == null && requestMethod.equals("GET"))
-                        return new EndpointData(Endpoint.GET_EPICS, Optional.empty());
-                    if (id == null && requestMethod.equals("POST"))
-                        return new EndpointData(Endpoint.CREATE_EPIC, Optional.empty());
-                    if (id != null && requestMethod.equals("GET") && !epicSubtasks)
-                        return new EndpointData(Endpoint.GET_EPIC_BY_ID, Optional.of(Integer.parseInt(id)));
-                    if (id != null && requestMethod.equals("GET"))
-                        return new EndpointData(Endpoint.GET_EPIC_SUBTASKS, Optional.of(Integer.parseInt(id)));
-                    if (id != null && requestMethod.equals("POST"))
-                        return new EndpointData(Endpoint.UPDATE_EPIC, Optional.of(Integer.parseInt(id)));
-                    if (id != null && requestMethod.equals("DELETE"))
-                        return new EndpointData(Endpoint.DELETE_EPIC, Optional.of(Integer.parseInt(id)));
-                }
+    protected static String getQueryParam(String query, String name) {
+        if (query == null) return null;
+        for (String param : query.split("&")) {
+            int separatorIndex = param.indexOf('=');
+            if (separatorIndex > 0 && param.substring(0, separatorIndex).equals(name)) {
+                return param.substring(separatorIndex + 1);
             }
         }
-        return new EndpointData(Endpoint.UNKNOWN, Optional.empty());
+        return null;
     }
 
     protected void sendText(HttpExchange exchange, String text, int statusCode) throws IOException {
@@ -87,6 +60,20 @@ public abstract class BaseHttpHandler implements HttpHandler {
         exchange.close();
     }
 
+    // Список пишется в тело ответа по мере сериализации, кусками chunked-кодирования: в памяти не бывает
+    // ни строки со всем JSON, ни массива его байт. Вывод совпадает с gson.toJson(items) символ в символ.
+    protected void sendJson(HttpExchange exchange, Collection<?> items, int statusCode) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
+        exchange.sendResponseHeaders(statusCode, 0);
+        Gson responseGson = gsonFor(exchange);
+        try (JsonWriter writer = responseGson.newJsonWriter(new BufferedWriter(
+                new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), STREAM_BUFFER_CHARS))) {
+            responseGson.toJson(items, items.getClass(), writer);
+        } finally {
+            exchange.close();
+        }
+    }
+
     protected void sendNotFound(HttpExchange exchange) throws IOException {
         String text = "{" +
                 "\"message\":\"Запрашиваемые данные не найдены\"," +
@@ -114,6 +101,13 @@ public abstract class BaseHttpHandler implements HttpHandler {
         sendText(exchange, text, 406);
     }
 
-    protected record EndpointData(Endpoint endpoint, Optional<Integer> idOptional) {
+    protected void sendBadRequest(HttpExchange exchange) throws IOException {
+        String text = "{" +
+                "\"message\":\"Некорректные параметры запроса\"," +
+                "\"statusCode\":\"400\"," +
+                "\"success\":\"false\"" +
+                "}";
+        sendText(exchange, text, 400);
     }
+
 }
@@ -22,17 +22,16 @@ public class EpicsHandler extends BaseHttpHandler {
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
-        EndpointData endpointData = getEndpoint("epics", exchange.getRequestURI().getPath(), exchange.getRequestMethod());
-        System.out.println("\nзапрос на: " + exchange.getRequestURI().getPath() + ", метод: " + exchange.getRequestMethod());
-        System.out.println("Endpoint: " + endpointData.endpoint());
-        switch (endpointData.endpoint()) {
-            case GET_EPIC_BY_ID -> handleGetEpicById(exchange, endpointData.idOptional().orElse(-999));
+        long route = route(exchange);
+        Endpoint endpoint = Router.endpoint(route);
+        switch (endpoint) {
+            case GET_EPIC_BY_ID -> handleGetEpicById(exchange, Router.id(route));
             case GET_EPICS -> handleGetAllEpics(exchange);
             case CREATE_EPIC -> handleAddEpic(exchange);
-            case UPDATE_EPIC -> handleUpdateEpic(exchange, endpointData.idOptional().orElse(-999));
-            case DELETE_EPIC -> handleDeleteEpic(exchange, endpointData.idOptional().orElse(-999));
-            case GET_EPIC_SUBTASKS -> handleGetEpicSubTasks(exchange, endpointData.idOptional().orElse(-999));
-            case UNKNOWN -> sendUnknownEndpoint(exchange);
+            case UPDATE_EPIC -> handleUpdateEpic(exchange, Router.id(route));
+            case DELETE_EPIC -> handleDeleteEpic(exchange, Router.id(route));
+            case GET_EPIC_SUBTASKS -> handleGetEpicSubTasks(exchange, Router.id(route));
+            default -> sendUnknownEndpoint(exchange);
         }
 
     }
@@ -40,7 +39,7 @@ public class EpicsHandler extends BaseHttpHandler {
     private void handleGetEpicById(HttpExchange exchange, int id) throws IOException {
         Optional<Epic> epicOptional = manager.getEpicById(id);
         if (epicOptional.isPresent()) {
-            String epicJSON = gson.toJson(epicOptional.get());
+            String epicJSON = gsonFor(exchange).toJson(epicOptional.get());
             sendText(exchange, epicJSON, 200);
         } else {
             sendNotFound(exchange);
@@ -61,9 +60,7 @@ public class EpicsHandler extends BaseHttpHandler {
     }
 
     private void handleGetAllEpics(HttpExchange exchange) throws IOException {
-        List<Epic> epicList = manager.getAllEpics();
-        String epicListJson = gson.toJson(epicList);
-        sendText(exchange, epicListJson, 200);
+        sendJson(exchange, manager.getAllEpics(), 200);
     }
 
     private void handleUpdateEpic(HttpExchange exchange, int id) throws IOException {
@@ -87,8 +84,7 @@ public class EpicsHandler extends BaseHttpHandler {
     private void handleGetEpicSubTasks(HttpExchange exchange, int id) throws IOException {
         try {
             List<SubTask> subTaskList = manager.getEpicSubTasks(id);
-            String epicListJson = gson.toJson(subTaskList);
-            sendText(exchange, epicListJson, 200);
+            sendJson(exchange, subTaskList, 200);
         } catch (NoSuchElementException e) {
             sendNotFound(exchange);
         }
@@ -1,11 +1,9 @@
 package api;
 
 import com.sun.net.httpserver.HttpExchange;
-import model.Task;
 import service.TaskManager;
 
 import java.io.IOException;
-import java.util.List;
 
 public class HistoryHandler extends BaseHttpHandler {
 
@@ -15,10 +13,8 @@ public class HistoryHandler extends BaseHttpHandler {
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
-        if (exchange.getRequestURI().getPath().equals("/history") && exchange.getRequestMethod().equals("GET")) {
-            List<Task> history = manager.getHistory();
-            String historyJson = gson.toJson(history);
-            sendText(exchange, historyJson, 200);
+        if (Router.endpoint(route(exchange)) == Endpoint.GET_HISTORY) {
+            sendJson(exchange, manager.getHistory(), 200);
         } else {
             sendUnknownEndpoint(exchange);
         }
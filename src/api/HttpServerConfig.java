@@ -0,0 +1,36 @@
+package api;
+
+// Настройки HttpTaskServer. port 0 - любой свободный порт, backlog 0 - очередь соединений по умолчанию ОС,
+// maxConcurrentRequests 0 - без ограничения. threads используется только пулами FIXED и WORK_STEALING.
+// Со всеми исполнителями, кроме DISPATCHER, менеджер вызывается из нескольких потоков сразу и должен быть
+// потокобезопасным, например Managers.getConcurrent().
+public record HttpServerConfig(int port, int backlog, ExecutorType executorType, int threads,
+                               int maxConcurrentRequests) {
+
+    public HttpServerConfig {
+        if (port < 0 || port > 65_535) throw new IllegalArgumentException("Некорректный порт: " + port);
+        if (backlog < 0 || threads < 1 || maxConcurrentRequests < 0) {
+            throw new IllegalArgumentException("Некорректные настройки сервера");
+        }
+    }
+
+    // Как раньше: все запросы обрабатывает единственный поток HttpServer
+    public static HttpServerConfig defaults() {
+        return new HttpServerConfig(8080, 0, ExecutorType.DISPATCHER, 1, 0);
+    }
+
+    public static HttpServerConfig virtualThreads(int port, int maxConcurrentRequests) {
+        return new HttpServerConfig(port, 0, ExecutorType.VIRTUAL, 1, maxConcurrentRequests);
+    }
+
+    public static HttpServerConfig fixedPool(int port, int threads) {
+        return new HttpServerConfig(port, 0, ExecutorType.FIXED, threads, 0);
+    }
+
+    public enum ExecutorType {
+        DISPATCHER, // поток HttpServer, без исполнителя
+        FIXED, // пул из threads потоков
+        WORK_STEALING, // ForkJoinPool с параллелизмом threads
+        VIRTUAL // виртуальный поток на каждый запрос
+    }
+}
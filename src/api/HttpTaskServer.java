@@ -1,20 +1,52 @@
 package api;
 
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import service.Managers;
 import service.TaskManager;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 public class HttpTaskServer {
-    private static final int PORT = 8080;
     private final TaskManager manager;
     private final HttpServer httpServer;
+    private final ExecutorService executor; // null - запросы обрабатывает поток HttpServer
+    private final Semaphore concurrencyLimit; // null - без ограничения
+    private final AccessLog accessLog; // null - без журнала запросов
 
     public HttpTaskServer(TaskManager manager) throws IOException {
+        this(manager, HttpServerConfig.defaults());
+    }
+
+    public HttpTaskServer(TaskManager manager, HttpServerConfig config) throws IOException {
+        this(manager, config, null);
+    }
+
+    // accessLogConfig null - запросы не журналируются
+    public HttpTaskServer(TaskManager manager, HttpServerConfig config, AccessLogConfig accessLogConfig)
+            throws IOException {
         this.manager = manager;
-        this.httpServer = HttpServer.create(new InetSocketAddress(PORT), 0);
+        this.httpServer = HttpServer.create(new InetSocketAddress(config.port()), config.backlog());
+        this.executor = switch (config.executorType()) {
+            case DISPATCHER -> null;
+            case FIXED -> Executors.newFixedThreadPool(config.threads());
+            case WORK_STEALING -> Executors.newWorkStealingPool(config.threads());
+            case VIRTUAL -> Executors.newVirtualThreadPerTaskExecutor();
+        };
+        this.concurrencyLimit = config.maxConcurrentRequests() > 0
+                ? new Semaphore(config.maxConcurrentRequests(), true)
+                : null;
+        this.accessLog = accessLogConfig != null ? new AccessLog(accessLogConfig) : null;
+        httpServer.setExecutor(executor);
         serverInitPaths();
     }
 
@@ -22,8 +54,11 @@ public class HttpTaskServer {
         this(Managers.getDefault());
     }
 
+    // По умолчанию запросы обрабатывает один поток; многопоточные исполнители включаются через HttpServerConfig
+    // вместе с потокобезопасным менеджером
     public static void main(String[] args) throws IOException {
-        HttpTaskServer taskServer = new HttpTaskServer();
+        HttpTaskServer taskServer = new HttpTaskServer(Managers.getDefault(), HttpServerConfig.defaults(),
+                AccessLogConfig.of(Path.of("access.log")));
         taskServer.startServer();
     }
 
@@ -31,20 +66,78 @@ public class HttpTaskServer {
         return manager;
     }
 
+    // Фактический порт: при port = 0 его выбирает ОС
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    // Журнал запросов или null, если он не включен
+    public AccessLog getAccessLog() {
+        return accessLog;
+    }
+
     private void serverInitPaths() {
-        httpServer.createContext("/tasks", new TasksHandler(manager));
-        httpServer.createContext("/subtasks", new SubTasksHandler(manager));
-        httpServer.createContext("/epics", new EpicsHandler(manager));
-        httpServer.createContext("/history", new HistoryHandler(manager));
-        httpServer.createContext("/prioritized", new PrioritizedHandler(manager));
+        createContext("/tasks", new TasksHandler(manager));
+        createContext("/subtasks", new SubTasksHandler(manager));
+        createContext("/epics", new EpicsHandler(manager));
+        createContext("/history", new HistoryHandler(manager));
+        createContext("/prioritized", new PrioritizedHandler(manager));
+    }
+
+    // Журнал подключается первым, чтобы в задержку входило и ожидание своей очереди
+    private void createContext(String path, HttpHandler handler) {
+        HttpContext context = httpServer.createContext(path, handler);
+        if (accessLog != null) context.getFilters().add(accessLog.filter());
+        if (concurrencyLimit != null) context.getFilters().add(new ConcurrencyLimitFilter(concurrencyLimit));
     }
 
     public void startServer() {
         httpServer.start();
-        System.out.println("HTTP-сервер запущен на " + PORT + " порту!");
+        System.out.println("HTTP-сервер запущен на " + getPort() + " порту!");
     }
 
     public void stopServer() {
         httpServer.stop(0);
+        if (executor != null) {
+            executor.shutdownNow();
+            // обработчики, успевшие ответить, дописывают запрос в журнал
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (accessLog != null) accessLog.close();
+    }
+
+
+    // Запросы сверх лимита ждут своей очереди в потоке исполнителя; с виртуальными потоками это дешево
+    private static class ConcurrencyLimitFilter extends Filter {
+        private final Semaphore permits;
+
+        ConcurrencyLimitFilter(Semaphore permits) {
+            this.permits = permits;
+        }
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exchange.close();
+                return;
+            }
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                permits.release();
+            }
+        }
+
+        @Override
+        public String description() {
+            return "Ограничение числа одновременных запросов";
+        }
     }
 }
@@ -5,6 +5,8 @@ import model.Task;
 import service.TaskManager;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 
 public class PrioritizedHandler extends BaseHttpHandler {
@@ -15,13 +17,24 @@ public class PrioritizedHandler extends BaseHttpHandler {
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
-        if (exchange.getRequestURI().getPath().equals("/prioritized") && exchange.getRequestMethod().equals("GET")) {
-            List<Task> prioritized = manager.getPrioritizedTasks();
-            String prioritizedJson = gson.toJson(prioritized);
-            sendText(exchange, prioritizedJson, 200);
+        if (Router.endpoint(route(exchange)) == Endpoint.GET_PRIORITIZED) {
+            try {
+                // /prioritized?from=2025-01-01T00:00&to=2025-01-02T00:00, любая из границ может отсутствовать
+                String query = exchange.getRequestURI().getQuery();
+                LocalDateTime from = parseDateTime(getQueryParam(query, "from"));
+                LocalDateTime to = parseDateTime(getQueryParam(query, "to"));
+                List<Task> prioritized = manager.getPrioritizedTasks(from, to);
+                sendJson(exchange, prioritized, 200);
+            } catch (DateTimeParseException e) {
+                sendBadRequest(exchange);
+            }
         } else {
             sendUnknownEndpoint(exchange);
         }
 
     }
+
+    private static LocalDateTime parseDateTime(String value) {
+        return value == null ? null : LocalDateTime.parse(value);
+    }
 }
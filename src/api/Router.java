@@ -0,0 +1,157 @@
+package api;
+
+import java.util.Arrays;
+
+// Маршрутизатор запросов: дерево по сегментам пути, в узлах - эндпоинты для каждого метода.
+// Дерево строится один раз, а разбор запроса идет по символам пути без регулярных выражений и новых объектов:
+// результат упакован в long - эндпоинт в старших 32 битах и числовой параметр пути в младших.
+// Шаблон маршрута - сегменты через '/', сегмент {id} соответствует неотрицательному int, остальные сравниваются
+// как есть. Числовой параметр в маршруте может быть только один. Строка запроса (?from=...) маршрутизатору
+// не передается, ее разбирает обработчик.
+final class Router {
+    static final int NO_ID = -1;
+
+    private static final String ID_SEGMENT = "{id}";
+    private static final String[] METHODS = {"GET", "POST", "DELETE", "PUT", "PATCH", "HEAD"};
+    private static final Endpoint[] ENDPOINTS = Endpoint.values();
+    private static final long UNKNOWN_ROUTE = pack(Endpoint.UNKNOWN, NO_ID);
+
+    private final Node root = new Node();
+
+    static Router standard() {
+        return new Router()
+                .add("GET", "/tasks", Endpoint.GET_TASKS)
+                .add("POST", "/tasks", Endpoint.CREATE_TASK)
+                .add("GET", "/tasks/{id}", Endpoint.GET_TASK_BY_ID)
+                .add("POST", "/tasks/{id}", Endpoint.UPDATE_TASK)
+                .add("DELETE", "/tasks/{id}", Endpoint.DELETE_TASK)
+
+                .add("GET", "/subtasks", Endpoint.GET_SUBTASKS)
+                .add("POST", "/subtasks", Endpoint.CREATE_SUBTASK)
+                .add("GET", "/subtasks/{id}", Endpoint.GET_SUBTASK_BY_ID)
+                .add("POST", "/subtasks/{id}", Endpoint.UPDATE_SUBTASK)
+                .add("DELETE", "/subtasks/{id}", Endpoint.DELETE_SUBTASK)
+
+                .add("GET", "/epics", Endpoint.GET_EPICS)
+                .add("POST", "/epics", Endpoint.CREATE_EPIC)
+                .add("GET", "/epics/{id}", Endpoint.GET_EPIC_BY_ID)
+                .add("POST", "/epics/{id}", Endpoint.UPDATE_EPIC)
+                .add("DELETE", "/epics/{id}", Endpoint.DELETE_EPIC)
+                .add("GET", "/epics/{id}/subtasks", Endpoint.GET_EPIC_SUBTASKS)
+
+                .add("GET", "/history", Endpoint.GET_HISTORY)
+                .add("GET", "/prioritized", Endpoint.GET_PRIORITIZED);
+    }
+
+    Router add(String method, String pattern, Endpoint endpoint) {
+        int methodIndex = methodIndex(method);
+        if (methodIndex < 0) throw new IllegalArgumentException("Неподдерживаемый метод: " + method);
+        if (!pattern.startsWith("/") || pattern.endsWith("/")) {
+            throw new IllegalArgumentException("Некорректный шаблон маршрута: " + pattern);
+        }
+        Node node = root;
+        boolean hasId = false;
+        for (String segment : pattern.substring(1).split("/", -1)) {
+            if (segment.isEmpty()) throw new IllegalArgumentException("Некорректный шаблон маршрута: " + pattern);
+            if (segment.equals(ID_SEGMENT)) {
+                if (hasId) throw new IllegalArgumentException("В маршруте больше одного параметра: " + pattern);
+                hasId = true;
+                if (node.idChild == null) node.idChild = new Node();
+                node = node.idChild;
+            } else {
+                node = node.literalChild(segment);
+            }
+        }
+        if (node.endpoints[methodIndex] != null) {
+            throw new IllegalArgumentException("Маршрут уже задан: " + method + " " + pattern);
+        }
+        node.endpoints[methodIndex] = endpoint;
+        return this;
+    }
+
+    long route(String method, String path) {
+        int methodIndex = methodIndex(method);
+        int length = path.length();
+        if (methodIndex < 0 || length == 0 || path.charAt(0) != '/') return UNKNOWN_ROUTE;
+        Node node = root;
+        int id = NO_ID;
+        int start = 1;
+        while (true) {
+            int end = path.indexOf('/', start);
+            if (end < 0) end = length;
+            if (end == start) return UNKNOWN_ROUTE;
+            Node next = node.findLiteral(path, start, end);
+            if (next == null && node.idChild != null) {
+                id = parseId(path, start, end);
+                if (id == NO_ID) return UNKNOWN_ROUTE;
+                next = node.idChild;
+            }
+            if (next == null) return UNKNOWN_ROUTE;
+            node = next;
+            if (end == length) break;
+            start = end + 1;
+        }
+        Endpoint endpoint = node.endpoints[methodIndex];
+        return endpoint == null ? UNKNOWN_ROUTE : pack(endpoint, id);
+    }
+
+    static Endpoint endpoint(long route) {
+        return ENDPOINTS[(int) (route >>> 32)];
+    }
+
+    static int id(long route) {
+        return (int) route;
+    }
+
+    private static long pack(Endpoint endpoint, int id) {
+        return ((long) endpoint.ordinal() << 32) | (id & 0xFFFF_FFFFL);
+    }
+
+    private static int methodIndex(String method) {
+        for (int i = 0; i < METHODS.length; i++) {
+            if (METHODS[i].equals(method)) return i;
+        }
+        return -1;
+    }
+
+    // Только цифры и не больше Integer.MAX_VALUE, иначе NO_ID
+    private static int parseId(String path, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') return NO_ID;
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) return NO_ID;
+        }
+        return (int) value;
+    }
+
+    private static class Node {
+        private String[] literals = new String[0];
+        private Node[] literalChildren = new Node[0];
+        private Node idChild;
+        private final Endpoint[] endpoints = new Endpoint[METHODS.length];
+
+        private Node literalChild(String segment) {
+            for (int i = 0; i < literals.length; i++) {
+                if (literals[i].equals(segment)) return literalChildren[i];
+            }
+            literals = Arrays.copyOf(literals, literals.length + 1);
+            literalChildren = Arrays.copyOf(literalChildren, literalChildren.length + 1);
+            literals[literals.length - 1] = segment;
+            literalChildren[literalChildren.length - 1] = new Node();
+            return literalChildren[literalChildren.length - 1];
+        }
+
+        // Литералов в узле единицы, поэтому линейный поиск быстрее любой хеш-таблицы и не требует подстроки
+        private Node findLiteral(String path, int start, int end) {
+            for (int i = 0; i < literals.length; i++) {
+                String literal = literals[i];
+                if (literal.length() == end - start && path.regionMatches(start, literal, 0, end - start)) {
+                    return literalChildren[i];
+                }
+            }
+            return null;
+        }
+    }
+}
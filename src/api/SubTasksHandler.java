@@ -9,7 +9,6 @@ import service.TaskManager;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
 import java.util.Optional;
 
 public class SubTasksHandler extends BaseHttpHandler {
@@ -20,16 +19,15 @@ public class SubTasksHandler extends BaseHttpHandler {
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
-        EndpointData endpointData = getEndpoint("subtasks", exchange.getRequestURI().getPath(), exchange.getRequestMethod());
-        System.out.println("\nзапрос на: " + exchange.getRequestURI().getPath() + ", метод: " + exchange.getRequestMethod());
-        System.out.println("Endpoint: " + endpointData.endpoint());
-        switch (endpointData.endpoint()) {
-            case GET_SUBTASK_BY_ID -> handleGetSubTaskById(exchange, endpointData.idOptional().orElse(-999));
+        long route = route(exchange);
+        Endpoint endpoint = Router.endpoint(route);
+        switch (endpoint) {
+            case GET_SUBTASK_BY_ID -> handleGetSubTaskById(exchange, Router.id(route));
             case GET_SUBTASKS -> handleGetAllSubTasks(exchange);
             case CREATE_SUBTASK -> handleAddSubTask(exchange);
-            case UPDATE_SUBTASK -> handleUpdateSubTask(exchange, endpointData.idOptional().orElse(-999));
-            case DELETE_SUBTASK -> handleDeleteSubTask(exchange, endpointData.idOptional().orElse(-999));
-            case UNKNOWN -> sendUnknownEndpoint(exchange);
+            case UPDATE_SUBTASK -> handleUpdateSubTask(exchange, Router.id(route));
+            case DELETE_SUBTASK -> handleDeleteSubTask(exchange, Router.id(route));
+            default -> sendUnknownEndpoint(exchange);
         }
 
     }
@@ -60,9 +58,7 @@ public class SubTasksHandler extends BaseHttpHandler {
     }
 
     private void handleGetAllSubTasks(HttpExchange exchange) throws IOException {
-        List<SubTask> subTaskList = manager.getAllSubTasks();
-        String subTaskListJson = gson.toJson(subTaskList);
-        sendText(exchange, subTaskListJson, 200);
+        sendJson(exchange, manager.getAllSubTasks(), 200);
     }
 
     private void handleUpdateSubTask(HttpExchange exchange, int id) throws IOException {
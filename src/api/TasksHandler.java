@@ -8,7 +8,6 @@ import service.TaskManager;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
 import java.util.Optional;
 
 public class TasksHandler extends BaseHttpHandler {
@@ -19,16 +18,15 @@ public class TasksHandler extends BaseHttpHandler {
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
-        EndpointData endpointData = getEndpoint("tasks", exchange.getRequestURI().getPath(), exchange.getRequestMethod());
-        System.out.println("\nзапрос на: " + exchange.getRequestURI().getPath() + ", метод: " + exchange.getRequestMethod());
-        System.out.println("Endpoint: " + endpointData.endpoint());
-        switch (endpointData.endpoint()) {
-            case GET_TASK_BY_ID -> handleGetTaskById(exchange, endpointData.idOptional().orElse(-999));
+        long route = route(exchange);
+        Endpoint endpoint = Router.endpoint(route);
+        switch (endpoint) {
+            case GET_TASK_BY_ID -> handleGetTaskById(exchange, Router.id(route));
             case GET_TASKS -> handleGetAllTasks(exchange);
             case CREATE_TASK -> handleAddTask(exchange);
-            case UPDATE_TASK -> handleUpdateTask(exchange, endpointData.idOptional().orElse(-999));
-            case DELETE_TASK -> handleDeleteTask(exchange, endpointData.idOptional().orElse(-999));
-            case UNKNOWN -> sendUnknownEndpoint(exchange);
+            case UPDATE_TASK -> handleUpdateTask(exchange, Router.id(route));
+            case DELETE_TASK -> handleDeleteTask(exchange, Router.id(route));
+            default -> sendUnknownEndpoint(exchange);
         }
 
     }
@@ -57,9 +55,7 @@ public class TasksHandler extends BaseHttpHandler {
     }
 
     private void handleGetAllTasks(HttpExchange exchange) throws IOException {
-        List<Task> taskList = manager.getAllTasks();
-        String taskListJson = gson.toJson(taskList);
-        sendText(exchange, taskListJson, 200);
+        sendJson(exchange, manager.getAllTasks(), 200);
     }
 
     private void handleUpdateTask(HttpExchange exchange, int id) throws IOException {
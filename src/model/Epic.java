@@ -1,12 +1,17 @@
 package model;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.TreeMap;
 
 public class Epic extends Task {
     private final HashMap<Integer, SubTask> subTasks = new HashMap<>();
     private LocalDateTime endTime;
+    // Накопленные значения по подзадачам; не сериализуются и пересобираются при первом обращении
+    private transient Aggregates aggregates;
 
     public Epic(String title, String description) {
         super(title, description);
@@ -23,23 +28,47 @@ public class Epic extends Task {
 
     public void addSubTaskToEpic(SubTask subTask) {
         subTasks.put(subTask.getId(), subTask);
+        Aggregates epicAggregates = getAggregates();
+        epicAggregates.retract(subTask.getId());
+        epicAggregates.contribute(subTask);
+        applyAggregates();
+    }
+
+    // Пакетное добавление при восстановлении: агрегаты считаются один раз на весь пакет, а не на каждую подзадачу
+    public void addSubTasksToEpic(Collection<SubTask> newSubTasks) {
+        for (SubTask subTask : newSubTasks) {
+            subTasks.put(subTask.getId(), subTask);
+        }
+        checkStatus();
     }
 
     public ArrayList<SubTask> getEpicSubTasks() {
         return new ArrayList<>(subTasks.values());
     }
 
+    public boolean containsSubTask(int id) {
+        return subTasks.containsKey(id);
+    }
+
+    public int getSubTasksCount() {
+        return subTasks.size();
+    }
+
     public void deleteSubTaskFromEpic(int id) {
-        subTasks.remove(id);
+        if (subTasks.remove(id) == null) return;
+        getAggregates().retract(id);
+        applyAggregates();
     }
 
     public void deleteAllEpicSubTasks() {
         subTasks.clear();
+        aggregates = new Aggregates();
+        applyAggregates();
     }
 
     @Override
     public void setStatus(Status status) {
-        checkStatus();
+        super.setStatus(getAggregates().status(subTasks.size()));
     }
 
     @Override
@@ -51,32 +80,79 @@ public class Epic extends Task {
         this.endTime = endTime;
     }
 
-    private boolean isAllDone() {
-        return subTasks
-                .values()
-                .stream()
-                .map(Task::getStatus)
-                .allMatch(status -> status == Status.DONE);
+    // Полный пересчет за один проход - нужен, если подзадачи изменили напрямую, минуя менеджер
+    public void checkStatus() {
+        aggregates = new Aggregates();
+        subTasks.values().forEach(aggregates::contribute);
+        applyAggregates();
     }
 
-    private boolean isAllNew() {
-        return subTasks
-                .values()
-                .stream()
-                .map(Task::getStatus)
-                .allMatch(status -> status == Status.NEW);
+    private Aggregates getAggregates() {
+        if (aggregates == null) checkStatus();
+        return aggregates;
     }
 
-    public void checkStatus() {
-        Status newStatus = Status.IN_PROGRESS;
+    private void applyAggregates() {
+        Status newStatus = aggregates.status(subTasks.size());
+        if (getStatus() != newStatus) super.setStatus(newStatus);
 
-        if (isAllDone() && !subTasks.isEmpty()) {
-            newStatus = Status.DONE;
-        } else if (isAllNew()) {
-            newStatus = Status.NEW;
+        if (aggregates.startTimes.isEmpty()) {
+            setDuration(Duration.ZERO);
+            setStartTime(null);
+            setEndTime(null);
+        } else {
+            setDuration(aggregates.totalDuration);
+            setStartTime(aggregates.startTimes.firstKey());
+            setEndTime(aggregates.endTimes.lastKey());
         }
+    }
 
-        if (getStatus() != newStatus) super.setStatus(newStatus);
+    private record Contribution(Status status, LocalDateTime startTime, LocalDateTime endTime, Duration duration) {
+    }
+
+    // Счетчики статусов, сумма длительностей и мультимножества начал/окончаний: O(log n) на изменение подзадачи
+    private static class Aggregates {
+        private final HashMap<Integer, Contribution> contributions = new HashMap<>();
+        private final int[] statusCounts = new int[Status.values().length];
+        private final TreeMap<LocalDateTime, Integer> startTimes = new TreeMap<>();
+        private final TreeMap<LocalDateTime, Integer> endTimes = new TreeMap<>();
+        private Duration totalDuration = Duration.ZERO;
+
+        void contribute(SubTask subTask) {
+            LocalDateTime startTime = subTask.getStartTime().orElse(null);
+            LocalDateTime endTime = startTime == null ? null : subTask.getEndTime();
+            Contribution contribution = new Contribution(subTask.getStatus(), startTime, endTime, subTask.getDuration());
+            contributions.put(subTask.getId(), contribution);
+
+            statusCounts[contribution.status().ordinal()]++;
+            if (endTime != null) {
+                startTimes.merge(startTime, 1, Integer::sum);
+                endTimes.merge(endTime, 1, Integer::sum);
+                totalDuration = totalDuration.plus(contribution.duration());
+            }
+        }
+
+        void retract(int subTaskId) {
+            Contribution contribution = contributions.remove(subTaskId);
+            if (contribution == null) return;
+
+            statusCounts[contribution.status().ordinal()]--;
+            if (contribution.endTime() != null) {
+                decrement(startTimes, contribution.startTime());
+                decrement(endTimes, contribution.endTime());
+                totalDuration = totalDuration.minus(contribution.duration());
+            }
+        }
+
+        Status status(int subTasksCount) {
+            if (subTasksCount > 0 && statusCounts[Status.DONE.ordinal()] == subTasksCount) return Status.DONE;
+            if (statusCounts[Status.NEW.ordinal()] == subTasksCount) return Status.NEW;
+            return Status.IN_PROGRESS;
+        }
+
+        private static void decrement(TreeMap<LocalDateTime, Integer> counts, LocalDateTime key) {
+            counts.computeIfPresent(key, (time, count) -> count == 1 ? null : count - 1);
+        }
     }
 
 }
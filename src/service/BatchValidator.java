@@ -0,0 +1,97 @@
+package service;
+
+import exeptions.ManagerSaveException;
+import exeptions.TimeIntersectionException;
+import model.SubTask;
+import model.Task;
+import model.Type;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+// Проверка пакета до первого изменения. Пакет проигрывается на "черновике": какие id он заменит или удалит,
+// какие эпики будут существовать, и какие интервалы окажутся в расписании. Пересечения проверяются одним
+// проходом по отсортированным интервалам пакета и одним запросом к хранилищу на каждый интервал.
+// Наследник отвечает только на вопросы о состоянии до пакета.
+abstract class BatchValidator {
+
+    abstract boolean epicExists(int id);
+
+    abstract void forEachSubTaskId(int epicId, IntConsumer action);
+
+    // Есть ли среди сохраненных задач, кроме самой task и задач из ignoredIds, пересекающая ее по времени
+    abstract boolean overlapsStored(Task task, IntObjectHashMap<?> ignoredIds);
+
+    final void validate(List<Operation> operations) {
+        IntObjectHashMap<Boolean> replacedIds = new IntObjectHashMap<>(); // их текущие интервалы не учитываются
+        IntObjectHashMap<Task> batchVersions = new IntObjectHashMap<>(); // итоговые версии задач пакета с id
+        IntObjectHashMap<Boolean> epicExists = new IntObjectHashMap<>(); // эпики, созданные или удаленные пакетом
+        List<Task> newTasks = new ArrayList<>(); // задачи пакета, id которым еще не выдан
+
+        for (Operation operation : operations) {
+            Task task = operation.task();
+            if (operation.kind() == Operation.Kind.DELETE) {
+                replacedIds.put(operation.id(), true);
+                batchVersions.remove(operation.id());
+                if (operation.type() == Type.EPIC) {
+                    epicExists.put(operation.id(), false);
+                    forEachSubTaskId(operation.id(), subTaskId -> replacedIds.put(subTaskId, true));
+                    List<Integer> orphanIds = new ArrayList<>();
+                    for (Task version : batchVersions.values()) {
+                        if (isSubTaskOf(version, operation.id())) orphanIds.add(version.getId());
+                    }
+                    orphanIds.forEach(batchVersions::remove);
+                    newTasks.removeIf(newTask -> isSubTaskOf(newTask, operation.id()));
+                }
+                continue;
+            }
+            if (task.getType() == Type.SUBTASK) {
+                int parentEpicId = ((SubTask) task).getParentEpicId();
+                Boolean exists = epicExists.get(parentEpicId);
+                if (parentEpicId == 0 || (exists == null ? !epicExists(parentEpicId) : !exists)) {
+                    throw new ManagerSaveException("Пакет не применен: у подзадачи нет родительского Epic");
+                }
+            }
+            if (task.getId() == -1) {
+                newTasks.add(task);
+            } else {
+                replacedIds.put(task.getId(), true);
+                batchVersions.put(task.getId(), task);
+                if (task.getType() == Type.EPIC) epicExists.put(task.getId(), true);
+            }
+        }
+
+        List<Task> scheduled = new ArrayList<>(newTasks);
+        scheduled.addAll(batchVersions.values());
+        scheduled.removeIf(task -> task.getType() == Type.EPIC || task.getStartTime().isEmpty());
+        if (hasTimeConflictWithin(scheduled)) {
+            throw new TimeIntersectionException("Пакет не применен: задачи пакета пересекаются по времени");
+        }
+        for (Task task : scheduled) {
+            if (overlapsStored(task, replacedIds)) {
+                throw new TimeIntersectionException("Пакет не применен: пересечение по времени с существующей задачей");
+            }
+        }
+    }
+
+    private static boolean isSubTaskOf(Task task, int epicId) {
+        return task.getType() == Type.SUBTASK && ((SubTask) task).getParentEpicId() == epicId;
+    }
+
+    // После сортировки по (начало, конец) задача пересекается с предыдущими, если начинается раньше
+    // самого позднего из их окончаний
+    private static boolean hasTimeConflictWithin(List<Task> scheduled) {
+        scheduled.sort(Comparator
+                .comparing((Task task) -> task.getStartTime().get())
+                .thenComparing(Task::getEndTime));
+        LocalDateTime latestEnd = null;
+        for (Task task : scheduled) {
+            if (latestEnd != null && task.getStartTime().get().isBefore(latestEnd)) return true;
+            if (latestEnd == null || task.getEndTime().isAfter(latestEnd)) latestEnd = task.getEndTime();
+        }
+        return false;
+    }
+}
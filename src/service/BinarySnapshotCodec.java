@@ -0,0 +1,152 @@
+package service;
+
+import exeptions.ManagerSaveException;
+import model.Epic;
+import model.Status;
+import model.SubTask;
+import model.Task;
+import model.Type;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+// Двоичный формат снимка, версия 1:
+// магия "TKBS", байт версии, varint число записей, затем записи:
+// байт типа, varint id, байт статуса, varint длительность в минутах, varlong время начала в минутах от эпохи
+// (zigzag + 1, 0 - нет времени), varint id эпика (только у подзадач), строки названия и описания
+// (varint длина UTF-8 + 1, 0 - null, затем байты).
+class BinarySnapshotCodec {
+    static final byte[] MAGIC = {'T', 'K', 'B', 'S'};
+    static final int VERSION = 1;
+    private static final Type[] TYPES = Type.values();
+    private static final Status[] STATUSES = Status.values();
+    private static final int STRING_CHUNK = 8192;
+    private static final int MAX_STRING_BYTES = Integer.MAX_VALUE - 8;
+
+    static void write(DataOutput output, Collection<? extends Task> state) throws IOException {
+        output.write(MAGIC);
+        output.writeByte(VERSION);
+        writeVarLong(output, state.size());
+        for (Task task : state) {
+            writeTask(output, task);
+        }
+    }
+
+    // Одна запись без заголовка - этим же кодом записи лежат на страницах PagedTaskStore
+    static void writeTask(DataOutput output, Task task) throws IOException {
+        Type type = task.getType();
+        output.writeByte(type.ordinal());
+        writeVarLong(output, task.getId());
+        output.writeByte(task.getStatus().ordinal());
+        writeVarLong(output, task.getDuration().toMinutes());
+        LocalDateTime startTime = task.getStartTime().orElse(null);
+        writeVarLong(output, startTime == null ? 0 : zigzag(startTime.toEpochSecond(ZoneOffset.UTC) / 60) + 1);
+        if (type == Type.SUBTASK) writeVarLong(output, ((SubTask) task).getParentEpicId());
+        writeString(output, task.getTitle());
+        writeString(output, task.getDescription());
+    }
+
+    // Магия уже прочитана вызывающим при определении формата
+    static void read(DataInput input, Consumer<Task> taskConsumer) throws IOException {
+        int version = input.readUnsignedByte();
+        if (version != VERSION) throw new ManagerSaveException("Неподдерживаемая версия снимка: " + version);
+        long count = readVarLong(input);
+        for (long i = 0; i < count; i++) {
+            taskConsumer.accept(readTask(input));
+        }
+    }
+
+    static boolean isMagic(byte[] prefix) {
+        return Arrays.equals(prefix, MAGIC);
+    }
+
+    static Task readTask(DataInput input) throws IOException {
+        Type type = TYPES[input.readUnsignedByte()];
+        int id = (int) readVarLong(input);
+        Status status = STATUSES[input.readUnsignedByte()];
+        Duration duration = Duration.ofMinutes(readVarLong(input));
+        long encodedStart = readVarLong(input);
+        LocalDateTime startTime = encodedStart == 0
+                ? null
+                : LocalDateTime.ofEpochSecond(unzigzag(encodedStart - 1) * 60, 0, ZoneOffset.UTC);
+        int parentEpicId = type == Type.SUBTASK ? (int) readVarLong(input) : 0;
+        String title = readString(input);
+        String description = readString(input);
+
+        Task task = switch (type) {
+            case TASK -> new Task(title, description, id);
+            case SUBTASK -> new SubTask(title, description, parentEpicId, id);
+            case EPIC -> new Epic(title, description, id); // статус и время эпика выводятся из подзадач
+        };
+        if (type != Type.EPIC) {
+            task.setStatus(status);
+            if (startTime != null) task.setStartTime(startTime);
+            if (!duration.isZero()) task.setDuration(duration);
+        }
+        return task;
+    }
+
+    private static void writeString(DataOutput output, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(output, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(output, bytes.length + 1L);
+        output.write(bytes);
+    }
+
+    // Длина читается до проверки контрольной суммы, поэтому ей нельзя верить: буфер растет по мере прихода байт,
+    // и испорченная длина приводит к концу файла, а не к огромному массиву
+    private static String readString(DataInput input) throws IOException {
+        long length = readVarLong(input);
+        if (length == 0) return null;
+        if (length < 0 || length - 1 > MAX_STRING_BYTES) {
+            throw new ManagerSaveException("Снимок поврежден: неверная длина строки " + length);
+        }
+        int remaining = (int) (length - 1);
+        byte[] bytes = new byte[Math.min(remaining, STRING_CHUNK)];
+        int read = 0;
+        while (read < remaining) {
+            if (read == bytes.length) bytes = Arrays.copyOf(bytes, (int) Math.min(remaining, bytes.length * 2L));
+            input.readFully(bytes, read, bytes.length - read);
+            read = bytes.length;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // По 7 бит на байт, старший бит - признак продолжения
+    private static void writeVarLong(DataOutput output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput input) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new ManagerSaveException("Снимок поврежден: слишком длинное число");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
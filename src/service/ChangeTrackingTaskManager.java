@@ -0,0 +1,131 @@
+package service;
+
+import model.Epic;
+import model.SubTask;
+import model.Task;
+import model.Type;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Менеджер, который сохраняет только затронутые изменением задачи: после каждой операции (пакет - одна операция)
+// наследник получает id, чье состояние поменялось, и по currentTask узнает, что под ними лежит сейчас.
+public abstract class ChangeTrackingTaskManager extends InMemoryTaskManager {
+
+    // id, которых больше нет в менеджере, приходят тоже - для них currentTask вернет null
+    protected abstract void writeChanges(Set<Integer> changedIds);
+
+    protected Task currentTask(int id) {
+        Task task = tasks.get(id);
+        if (task == null) task = subTasks.get(id);
+        if (task == null) task = epics.get(id);
+        return task;
+    }
+
+    @Override
+    public int addNewTask(Task newTask) {
+        int id = super.addNewTask(newTask);
+        writeChanges(Set.of(id));
+        return id;
+    }
+
+    @Override
+    public int addNewSubTask(SubTask newSubTask) {
+        int id = super.addNewSubTask(newSubTask);
+        writeChanges(Set.of(id));
+        return id;
+    }
+
+    @Override
+    public int addNewEpic(Epic newEpic) {
+        int id = super.addNewEpic(newEpic);
+        writeChanges(Set.of(id));
+        return id;
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        super.updateTask(task);
+        writeChanges(Set.of(task.getId()));
+    }
+
+    @Override
+    public void updateSubTask(SubTask subTask) {
+        super.updateSubTask(subTask);
+        writeChanges(Set.of(subTask.getId()));
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        super.updateEpic(epic);
+        writeChanges(Set.of(epic.getId()));
+    }
+
+    @Override
+    public void deleteTask(int id) {
+        super.deleteTask(id);
+        writeChanges(Set.of(id));
+    }
+
+    @Override
+    public void deleteSubTask(int id) {
+        super.deleteSubTask(id);
+        writeChanges(Set.of(id));
+    }
+
+    @Override
+    public void deleteEpic(int id) {
+        Set<Integer> changedIds = new LinkedHashSet<>();
+        changedIds.add(id);
+        addSubTaskIds(id, changedIds);
+        super.deleteEpic(id);
+        writeChanges(changedIds);
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        Set<Integer> changedIds = new LinkedHashSet<>();
+        tasks.forEachKey(changedIds::add);
+        super.deleteAllTasks();
+        writeChanges(changedIds);
+    }
+
+    @Override
+    public void deleteAllSubTasks() {
+        Set<Integer> changedIds = new LinkedHashSet<>();
+        subTasks.forEachKey(changedIds::add);
+        super.deleteAllSubTasks();
+        writeChanges(changedIds);
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        Set<Integer> changedIds = new LinkedHashSet<>();
+        epics.forEachKey(changedIds::add);
+        subTasks.forEachKey(changedIds::add);
+        super.deleteAllEpics();
+        writeChanges(changedIds);
+    }
+
+    // Пакет применяется целиком или не применяется вовсе, поэтому изменения пишутся после него одним разом
+    @Override
+    public List<Integer> applyBatch(List<Operation> operations) {
+        Set<Integer> deletedIds = new LinkedHashSet<>();
+        for (Operation operation : operations) {
+            if (operation.kind() != Operation.Kind.DELETE) continue;
+            deletedIds.add(operation.id());
+            if (operation.type() == Type.EPIC) addSubTaskIds(operation.id(), deletedIds);
+        }
+        List<Integer> ids = super.applyBatch(operations);
+        Set<Integer> changedIds = new LinkedHashSet<>(ids);
+        changedIds.addAll(deletedIds);
+        writeChanges(changedIds);
+        return ids;
+    }
+
+    private void addSubTaskIds(int epicId, Set<Integer> ids) {
+        Epic epic = epics.get(epicId);
+        if (epic != null) epic.getEpicSubTasks().forEach(subTask -> ids.add(subTask.getId()));
+    }
+}
@@ -0,0 +1,23 @@
+package service;
+
+import java.time.Duration;
+
+// Когда сжимать журнал WAL: по его размеру, по числу записей или по времени с прошлого сжатия.
+// Время проверяется при очередной записи - пока изменений нет, сжимать нечего.
+public record CompactionPolicy(long maxLogBytes, int maxLogRecords, Duration maxInterval) {
+
+    public static CompactionPolicy defaults() {
+        return new CompactionPolicy(64L * 1024 * 1024, 100_000, Duration.ofMinutes(10));
+    }
+
+    public static CompactionPolicy disabled() {
+        return new CompactionPolicy(Long.MAX_VALUE, Integer.MAX_VALUE, null);
+    }
+
+    boolean isDue(long logBytes, int logRecords, Duration sinceLastCompaction) {
+        if (logRecords == 0) return false;
+        return logBytes >= maxLogBytes
+                || logRecords >= maxLogRecords
+                || (maxInterval != null && sinceLastCompaction.compareTo(maxInterval) >= 0);
+    }
+}
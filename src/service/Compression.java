@@ -0,0 +1,26 @@
+package service;
+
+// Сжатие файлов снимка (основного, .next и предыдущего поколения) блоками deflate, см. DeflateBlocks.
+// level - уровень Deflater: 1 - быстрее, 9 - меньше; 0 - без сжатия. Читаются снимки с любым уровнем.
+public record Compression(int level) {
+
+    public Compression {
+        if (level < 0 || level > 9) throw new IllegalArgumentException("Уровень сжатия должен быть от 0 до 9");
+    }
+
+    public static Compression none() {
+        return new Compression(0);
+    }
+
+    public static Compression fast() {
+        return new Compression(1);
+    }
+
+    public static Compression deflate(int level) {
+        return new Compression(level);
+    }
+
+    boolean isEnabled() {
+        return level > 0;
+    }
+}
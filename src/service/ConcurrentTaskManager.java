@@ -0,0 +1,281 @@
+package service;
+
+import model.Epic;
+import model.SubTask;
+import model.Task;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Потокобезопасный менеджер: изменения идут под эксклюзивной блокировкой, чтение - под разделяемой.
+// Чтение по id сначала идет вовсе без блокировки (оптимистично) и не задерживает запись; если за это время
+// началась запись, оно повторяется под разделяемой блокировкой. Списки, расписание и подзадачи эпика читаются
+// только под ней: читатели не блокируют друг друга, но ждут, пока идет запись (в том числе долгий пакет).
+// id выдаются только внутри эксклюзивной блокировки.
+// Чтение возвращает копии, сделанные под блокировкой: их можно сериализовать и менять без блокировки,
+// а в менеджер изменения попадают только через update*. Переданные в add*/update* объекты менеджер хранит
+// сам, после вызова их нельзя менять.
+public class ConcurrentTaskManager extends InMemoryTaskManager {
+    private final StampedLock lock = new StampedLock();
+
+    public ConcurrentTaskManager() {
+        super(new SynchronizedHistoryManager(Managers.getDefaultHistory()));
+    }
+
+    private <R> R read(Supplier<R> action) {
+        long stamp = lock.readLock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void read(Runnable action) {
+        long stamp = lock.readLock();
+        try {
+            action.run();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private <R> R write(Supplier<R> action) {
+        long stamp = lock.writeLock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void write(Runnable action) {
+        long stamp = lock.writeLock();
+        try {
+            action.run();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public ArrayList<Task> getAllTasks() {
+        return read(() -> copyAll(super.getAllTasks()));
+    }
+
+    @Override
+    public ArrayList<SubTask> getAllSubTasks() {
+        return read(() -> copyAll(super.getAllSubTasks()));
+    }
+
+    @Override
+    public ArrayList<Epic> getAllEpics() {
+        return read(() -> copyAll(super.getAllEpics()));
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        write(super::deleteAllTasks);
+    }
+
+    @Override
+    public void deleteAllSubTasks() {
+        write(super::deleteAllSubTasks);
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        write(super::deleteAllEpics);
+    }
+
+    @Override
+    public Optional<Task> getTaskById(int id) {
+        return findById(id, tasks, super::getTaskById);
+    }
+
+    @Override
+    public Optional<SubTask> getSubTaskById(int id) {
+        return findById(id, subTasks, super::getSubTaskById);
+    }
+
+    @Override
+    public Optional<Epic> getEpicById(int id) {
+        return findById(id, epics, super::getEpicById);
+    }
+
+    // Без блокировки таблица может оказаться посреди изменения: тогда чтение может вернуть чужое или бросить
+    // исключение, но validate это обнаружит, и результат будет отброшен. Просмотр попадает в историю после
+    // первой проверки; если запись успела вклиниться и удалить задачу, повтор под блокировкой уберет ее из истории.
+    private <T extends Task> Optional<T> findById(int id, IntObjectHashMap<T> source,
+            IntFunction<Optional<T>> lockedFind) {
+        long stamp = lock.tryOptimisticRead();
+        boolean viewed = false;
+        if (stamp != 0) {
+            try {
+                T task = source.get(id);
+                T copy = task == null ? null : copyOf(task);
+                if (lock.validate(stamp)) {
+                    if (task == null) return Optional.empty();
+                    historyManager.add(task);
+                    viewed = true;
+                    if (lock.validate(stamp)) return Optional.of(copy);
+                }
+            } catch (RuntimeException e) {
+                // таблицу меняли во время чтения - повторяем под блокировкой
+            }
+        }
+        boolean addedToHistory = viewed;
+        return read(() -> {
+            Optional<T> found = lockedFind.apply(id);
+            if (found.isEmpty() && addedToHistory) historyManager.remove(id);
+            return found.map(ConcurrentTaskManager::copyOf);
+        });
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        write(() -> super.updateTask(task));
+    }
+
+    @Override
+    public void updateSubTask(SubTask subTask) {
+        write(() -> super.updateSubTask(subTask));
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        write(() -> super.updateEpic(epic));
+    }
+
+    @Override
+    public void deleteTask(int id) {
+        write(() -> super.deleteTask(id));
+    }
+
+    @Override
+    public void deleteSubTask(int id) {
+        write(() -> super.deleteSubTask(id));
+    }
+
+    @Override
+    public void deleteEpic(int id) {
+        write(() -> super.deleteEpic(id));
+    }
+
+    @Override
+    public ArrayList<SubTask> getEpicSubTasks(int id) {
+        return read(() -> copyAll(super.getEpicSubTasks(id)));
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return read(() -> copyAll(super.getPrioritizedTasks()));
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        return read(() -> copyAll(super.getPrioritizedTasks(from, to)));
+    }
+
+    @Override
+    public Stream<Task> streamPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        // ленивый обход дерева нельзя выпускать за пределы блокировки - отдаем снимок окна
+        return getPrioritizedTasks(from, to).stream();
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return read(() -> copyAll(super.getHistory()));
+    }
+
+    @Override
+    public int addNewTask(Task newTask) {
+        return write(() -> super.addNewTask(newTask));
+    }
+
+    @Override
+    public int addNewSubTask(SubTask newSubTask) {
+        return write(() -> super.addNewSubTask(newSubTask));
+    }
+
+    @Override
+    public int addNewEpic(Epic newEpic) {
+        return write(() -> super.addNewEpic(newEpic));
+    }
+
+    @Override
+    public List<Integer> applyBatch(List<Operation> operations) {
+        return write(() -> super.applyBatch(operations));
+    }
+
+    @Override
+    public void verifyIntegrity() {
+        read(super::verifyIntegrity);
+    }
+
+    private static <T extends Task> ArrayList<T> copyAll(List<T> source) {
+        ArrayList<T> copies = new ArrayList<>(source.size());
+        for (T task : source) {
+            copies.add(copyOf(task));
+        }
+        return copies;
+    }
+
+    // Эпик собирается из копий своих подзадач, поэтому его статус и время совпадают с оригиналом
+    @SuppressWarnings("unchecked")
+    private static <T extends Task> T copyOf(T task) {
+        Task copy = switch (task.getType()) {
+            case TASK -> copyFields(task, new Task(task.getTitle(), task.getDescription(), task.getId()));
+            case SUBTASK -> copyFields(task, new SubTask(task.getTitle(), task.getDescription(),
+                    ((SubTask) task).getParentEpicId(), task.getId()));
+            case EPIC -> {
+                Epic epic = new Epic(task.getTitle(), task.getDescription(), task.getId());
+                epic.addSubTasksToEpic(copyAll(((Epic) task).getEpicSubTasks()));
+                yield epic;
+            }
+        };
+        return (T) copy;
+    }
+
+    private static <T extends Task> T copyFields(Task source, T copy) {
+        copy.setStatus(source.getStatus());
+        copy.setDuration(source.getDuration());
+        source.getStartTime().ifPresent(copy::setStartTime);
+        return copy;
+    }
+
+    // Просмотр задачи меняет историю, поэтому история должна выдерживать параллельных читателей
+    private static class SynchronizedHistoryManager implements HistoryManager {
+        private final HistoryManager delegate;
+
+        SynchronizedHistoryManager(HistoryManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized void add(Task task) {
+            delegate.add(task);
+        }
+
+        @Override
+        public synchronized List<Task> getHistory() {
+            return delegate.getHistory();
+        }
+
+        @Override
+        public synchronized void clearHistory() {
+            delegate.clearHistory();
+        }
+
+        @Override
+        public synchronized void remove(int id) {
+            delegate.remove(id);
+        }
+    }
+}
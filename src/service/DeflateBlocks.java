@@ -0,0 +1,160 @@
+package service;
+
+import exeptions.ManagerSaveException;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Сжатый файл: магия "TKDZ", байт версии, затем блоки - длина исходных данных (int), длина сжатых (int) и сами
+// сжатые байты (deflate без заголовка), в конце int 0. Каждый блок сжимается отдельно, поэтому при чтении
+// в памяти лежит не больше одного блока, а поврежденный блок не тянет за собой разбор остальных.
+class DeflateBlocks {
+    static final byte[] MAGIC = {'T', 'K', 'D', 'Z'};
+    private static final int VERSION = 1;
+    private static final int BLOCK_SIZE = 256 << 10;
+    private static final int MAX_BLOCK_SIZE = 16 << 20; // больше не пишется - значит, длина повреждена
+
+    static boolean isMagic(byte[] prefix) {
+        return Arrays.equals(prefix, MAGIC);
+    }
+
+    // finish() дописывает последний блок и признак конца, но не закрывает исходный поток
+    static class Output extends OutputStream {
+        private final DataOutputStream output;
+        private final Deflater deflater;
+        private final byte[] block = new byte[BLOCK_SIZE];
+        private byte[] compressed = new byte[BLOCK_SIZE + 1024];
+        private int length;
+
+        Output(OutputStream output, int level) throws IOException {
+            this.output = new DataOutputStream(output);
+            this.deflater = new Deflater(level, true);
+            this.output.write(MAGIC);
+            this.output.writeByte(VERSION);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (length == block.length) writeBlock();
+            block[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) throws IOException {
+            while (count > 0) {
+                if (length == block.length) writeBlock();
+                int copied = Math.min(count, block.length - length);
+                System.arraycopy(bytes, offset, block, length, copied);
+                length += copied;
+                offset += copied;
+                count -= copied;
+            }
+        }
+
+        void finish() throws IOException {
+            if (length > 0) writeBlock();
+            output.writeInt(0);
+            output.flush();
+            deflater.end();
+        }
+
+        private void writeBlock() throws IOException {
+            deflater.reset();
+            deflater.setInput(block, 0, length);
+            deflater.finish();
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                if (compressedLength == compressed.length) compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+            }
+            output.writeInt(length);
+            output.writeInt(compressedLength);
+            output.write(compressed, 0, compressedLength);
+            length = 0;
+        }
+    }
+
+    // Отдает исходные байты блок за блоком; обрыв файла - EOFException, испорченный блок - ManagerSaveException
+    static class Input extends InputStream {
+        private final DataInputStream input;
+        private final Inflater inflater = new Inflater(true);
+        private byte[] block = new byte[0];
+        private byte[] compressed = new byte[0];
+        private int position;
+        private int length;
+        private boolean finished;
+
+        Input(InputStream input) throws IOException {
+            this.input = new DataInputStream(input);
+            this.input.skipNBytes(MAGIC.length);
+            int version = this.input.readUnsignedByte();
+            if (version != VERSION) throw new ManagerSaveException("Неподдерживаемая версия сжатого снимка: " + version);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == length && !nextBlock()) return -1;
+            return block[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int count) throws IOException {
+            if (count == 0) return 0;
+            if (position == length && !nextBlock()) return -1;
+            int copied = Math.min(count, length - position);
+            System.arraycopy(block, position, bytes, offset, copied);
+            position += copied;
+            return copied;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            input.close();
+        }
+
+        private boolean nextBlock() throws IOException {
+            if (finished) return false;
+            int rawLength = input.readInt();
+            if (rawLength == 0) {
+                finished = true;
+                if (input.read() != -1) throw new ManagerSaveException("Снимок поврежден: данные после конца");
+                return false;
+            }
+            int compressedLength = input.readInt();
+            if (rawLength < 0 || rawLength > MAX_BLOCK_SIZE || compressedLength <= 0
+                    || compressedLength > MAX_BLOCK_SIZE) {
+                throw new ManagerSaveException("Снимок поврежден: неверная длина блока");
+            }
+            if (compressed.length < compressedLength) compressed = new byte[compressedLength];
+            if (block.length < rawLength) block = new byte[rawLength];
+            input.readFully(compressed, 0, compressedLength);
+
+            inflater.reset();
+            inflater.setInput(compressed, 0, compressedLength);
+            try {
+                int inflated = 0;
+                while (inflated < rawLength && !inflater.finished()) {
+                    int produced = inflater.inflate(block, inflated, rawLength - inflated);
+                    if (produced == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                    inflated += produced;
+                }
+                if (inflated != rawLength) {
+                    throw new ManagerSaveException("Снимок поврежден: блок не распаковался");
+                }
+            } catch (DataFormatException e) {
+                throw new ManagerSaveException("Снимок поврежден: " + e.getMessage());
+            }
+            position = 0;
+            length = rawLength;
+            return true;
+        }
+    }
+}
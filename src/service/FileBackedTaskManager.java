@@ -7,18 +7,68 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.OptionalInt;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
 
-public class FileBackedTaskManager extends InMemoryTaskManager {
+public class FileBackedTaskManager extends InMemoryTaskManager implements AutoCloseable {
     private final File autoSaveFile;
+    private final PersistenceMode mode;
+    private final WriteAheadLog log;
+    private final CompactionPolicy compactionPolicy;
+    private final GroupCommitWriter groupCommit; // null, если журнал пишется в потоке вызова
+    private final SnapshotStore snapshots;
+    private final Path rotatedLog; // журнал, который поглощается снимком, пишущимся в фоне
+    private final PersistentHistoryManager history;
+    // Новый менеджер начинает с чистого листа: первое изменение пишет снимок и удаляет старый журнал
+    private boolean checkpointPending = true;
+    private CompletableFuture<Void> compaction = CompletableFuture.completedFuture(null);
+    private long lastCompactionNanos = System.nanoTime();
+    private ForkJoinPool loadPool; // не null только на время параллельной загрузки снимка
 
     public FileBackedTaskManager(File file) {
+        this(file, PersistenceMode.SNAPSHOT);
+    }
+
+    public FileBackedTaskManager(File file, PersistenceMode mode) {
+        this(file, mode, CompactionPolicy.defaults());
+    }
+
+    public FileBackedTaskManager(File file, PersistenceMode mode, CompactionPolicy compactionPolicy) {
+        this(file, mode, compactionPolicy, WritePolicy.fsync());
+    }
+
+    public FileBackedTaskManager(File file, PersistenceMode mode, CompactionPolicy compactionPolicy,
+                                 WritePolicy writePolicy) {
+        this(file, mode, compactionPolicy, writePolicy, SnapshotFormat.CSV);
+    }
+
+    public FileBackedTaskManager(File file, PersistenceMode mode, CompactionPolicy compactionPolicy,
+                                 WritePolicy writePolicy, SnapshotFormat snapshotFormat) {
+        this(file, mode, compactionPolicy, writePolicy, snapshotFormat, Compression.none());
+    }
+
+    // В режиме SNAPSHOT от writePolicy зависит только fsync снимка: сам снимок по-прежнему пишется в потоке вызова
+    // snapshotFormat и compression задают только то, как снимок пишется: прочитать можно снимок любого вида
+    public FileBackedTaskManager(File file, PersistenceMode mode, CompactionPolicy compactionPolicy,
+                                 WritePolicy writePolicy, SnapshotFormat snapshotFormat, Compression compression) {
+        super(new PersistentHistoryManager(Path.of(file.getPath() + ".history")));
+        this.history = (PersistentHistoryManager) historyManager;
         this.autoSaveFile = file;
+        this.mode = mode;
+        this.compactionPolicy = compactionPolicy;
+        this.log = new WriteAheadLog(Path.of(file.getPath() + ".wal"));
+        this.rotatedLog = Path.of(file.getPath() + ".wal.old");
+        this.snapshots = new SnapshotStore(file.toPath(), writePolicy.durability() != WritePolicy.Durability.NONE,
+                snapshotFormat, compression);
+        boolean writesInBackground = writePolicy.durability() != WritePolicy.Durability.FSYNC;
+        this.groupCommit = mode == PersistenceMode.WAL && writesInBackground
+                ? new GroupCommitWriter(log, writePolicy)
+                : null;
     }
 
     public static void main(String[] args) {
@@ -46,141 +96,405 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
     }
 
     public static FileBackedTaskManager loadFromFile(File file) {
-        Path path = file.toPath();
-        FileBackedTaskManager loadedManager = new FileBackedTaskManager(file);
-        try {
-            String content = Files.readString(path); // Чтение всего содержимого файла в одну строку
-            String[] data = content.strip().split("\n");
-            if (data.length == 1) return loadedManager;
-            String[] dataWithoutHeader = Arrays.copyOfRange(data, 1, data.length);
-
-            OptionalInt maxIdOptional = Arrays
-                    .stream(dataWithoutHeader)
-                    .map(line -> line.split(",")[0]) // Берем id
-                    .mapToInt(Integer::parseInt)
-                    .max();
-            //            loadedManager.setCounter(maxId);
-            loadedManager.idCounter = maxIdOptional.orElse(-1);
-
-            // Сначала нужно восстановить все эпики и таски и только потом SubTask, т.к. они содержат ссылки на Epic.
-            Map<Boolean, List<String>> taskStrings = Arrays
-                    .stream(dataWithoutHeader)
-                    .collect(Collectors.partitioningBy(str -> !str.split(",")[1].equals("SUBTASK")));
-
-            taskStrings.get(true) // сначала делаем все эпики и таски
-                    .stream()
-                    .map(TaskManagerUtils::restoreFromString)
-                    .forEach(loadedManager::restoreTask);
-
-            taskStrings.get(false) // потом восстанавливаем SubTask
-                    .stream()
-                    .map(TaskManagerUtils::restoreFromString)
-                    .forEach(loadedManager::restoreTask);
+        return loadFromFile(file, PersistenceMode.SNAPSHOT);
+    }
 
-        } catch (IOException e) {
-            throw new ManagerSaveException("Возникла ошибка чтения из файла");
+    // Загружает снимок и проигрывает поверх него журнал изменений, если он есть
+    public static FileBackedTaskManager loadFromFile(File file, PersistenceMode mode) {
+        return loadFromFile(file, mode, CompactionPolicy.defaults());
+    }
+
+    // Загружает последний снимок и проигрывает поверх него только журналы, которые в него еще не вошли
+    public static FileBackedTaskManager loadFromFile(File file, PersistenceMode mode, CompactionPolicy compactionPolicy) {
+        return loadFromFile(file, mode, compactionPolicy, WritePolicy.fsync());
+    }
+
+    public static FileBackedTaskManager loadFromFile(File file, PersistenceMode mode, CompactionPolicy compactionPolicy,
+                                                     WritePolicy writePolicy) {
+        return loadFromFile(file, mode, compactionPolicy, writePolicy, SnapshotFormat.CSV);
+    }
+
+    // CSV-файл можно загрузить с snapshotFormat = BINARY: следующий снимок будет записан уже в двоичном виде
+    public static FileBackedTaskManager loadFromFile(File file, PersistenceMode mode, CompactionPolicy compactionPolicy,
+                                                     WritePolicy writePolicy, SnapshotFormat snapshotFormat) {
+        return loadFromFile(file, mode, compactionPolicy, writePolicy, snapshotFormat, Compression.none());
+    }
+
+    // Несжатый снимок можно загрузить со сжатием: следующий снимок будет записан уже сжатым, и наоборот
+    public static FileBackedTaskManager loadFromFile(File file, PersistenceMode mode, CompactionPolicy compactionPolicy,
+                                                     WritePolicy writePolicy, SnapshotFormat snapshotFormat,
+                                                     Compression compression) {
+        return load(new FileBackedTaskManager(file, mode, compactionPolicy, writePolicy, snapshotFormat, compression),
+                null);
+    }
+
+    public static FileBackedTaskManager loadFromFileParallel(File file) {
+        return loadFromFileParallel(file, ForkJoinPool.commonPool());
+    }
+
+    // Строки CSV-снимка разбираются в pool; результат совпадает с loadFromFile
+    public static FileBackedTaskManager loadFromFileParallel(File file, ForkJoinPool pool) {
+        return load(new FileBackedTaskManager(file), pool);
+    }
+
+    private static FileBackedTaskManager load(FileBackedTaskManager loadedManager, ForkJoinPool pool) {
+        File file = loadedManager.autoSaveFile;
+        PersistenceMode mode = loadedManager.mode;
+        loadedManager.loadPool = pool;
+        loadedManager.snapshots.recover(loadedManager.rotatedLog);
+        boolean hasRotatedLog = Files.exists(loadedManager.rotatedLog);
+        boolean restoredFromPrevious = false;
+        // в режиме WAL снимка может еще не быть - тогда все состояние в журнале
+        if (mode == PersistenceMode.SNAPSHOT || file.exists() || !(loadedManager.log.exists() || hasRotatedLog)) {
+            restoredFromPrevious = loadedManager.loadSnapshot();
+        }
+        if (hasRotatedLog) {
+            // сжатие не успело завершиться: доводим его до конца до проигрывания текущего журнала
+            WriteAheadLog.replay(loadedManager.rotatedLog, loadedManager::decodeRecord);
+            loadedManager.installSnapshot(loadedManager.currentState());
         }
+        if (loadedManager.log.exists()) loadedManager.log.replay(loadedManager::decodeRecord);
+        // в режиме SNAPSHOT журнал больше не ведется: переносим его в снимок, чтобы не проиграть повторно;
+        // поврежденный основной снимок тоже сразу заменяем восстановленным состоянием
+        if ((mode == PersistenceMode.SNAPSHOT && loadedManager.log.exists()) || restoredFromPrevious) {
+            if (loadedManager.log.exists()) loadedManager.log.rotate(loadedManager.rotatedLog);
+            loadedManager.installSnapshot(loadedManager.currentState());
+        }
+        loadedManager.checkpointPending = false;
+        loadedManager.loadPool = null;
+        // история ссылается на задачи по id, поэтому проигрывается после того, как они восстановлены
+        loadedManager.history.replay(loadedManager::findTask);
         return loadedManager;
     }
 
+    // Если основной снимок поврежден или пропал, берем предыдущее поколение и проигрываем журнал,
+    // который превратил его в основной. Возвращает true, если пришлось откатиться на предыдущее поколение.
+    private boolean loadSnapshot() {
+        List<Task> restoredTasks;
+        boolean fromPrevious = false;
+        try {
+            restoredTasks = readSnapshot(snapshots.getPath());
+        } catch (ManagerSaveException e) {
+            if (!Files.exists(snapshots.getPreviousPath())) throw e;
+            restoredTasks = readSnapshot(snapshots.getPreviousPath());
+            fromPrevious = true;
+        }
+
+        restoreAll(restoredTasks);
+
+        if (fromPrevious && Files.exists(snapshots.getPreviousLogPath())) {
+            WriteAheadLog.replay(snapshots.getPreviousLogPath(), this::decodeRecord);
+        }
+        return fromPrevious;
+    }
+
+    // Каждая запись разбирается один раз по мере чтения, а менеджер меняется только после проверки всего файла
+    private List<Task> readSnapshot(Path source) {
+        if (loadPool != null) return snapshots.readParallel(source, loadPool);
+        List<Task> restoredTasks = new ArrayList<>();
+        snapshots.read(source, restoredTasks::add);
+        return restoredTasks;
+    }
+
+    // Выгружает текущее состояние в отдельный файл, например в CSV для переноса или просмотра
+    public void exportTo(File target, SnapshotFormat format) {
+        exportTo(target, format, Compression.none());
+    }
+
+    public void exportTo(File target, SnapshotFormat format, Compression compression) {
+        snapshots.write(target.toPath(), currentState(), format, compression);
+    }
+
     @Override
     public void deleteAllSubTasks() {
         super.deleteAllSubTasks();
-        save();
+        persist(clearRecord(Type.SUBTASK));
     }
 
     @Override
     public void deleteAllEpics() {
         super.deleteAllEpics();
-        save();
+        persist(clearRecord(Type.EPIC));
     }
 
     @Override
     public void deleteAllTasks() {
         super.deleteAllTasks();
-        save();
+        persist(clearRecord(Type.TASK));
     }
 
     @Override
     public void deleteTask(int id) {
         super.deleteTask(id);
-        save();
+        persist(deleteRecord(Type.TASK, id));
     }
 
     @Override
     public void deleteSubTask(int id) {
         super.deleteSubTask(id);
-        save();
+        persist(deleteRecord(Type.SUBTASK, id));
     }
 
     @Override
     public void deleteEpic(int id) {
         super.deleteEpic(id);
-        save();
+        persist(deleteRecord(Type.EPIC, id));
     }
 
     @Override
     public int addNewTask(Task newTask) {
         int newTaskId = super.addNewTask(newTask);
-        save();
+        persist(upsertRecord(newTask));
         return newTaskId;
     }
 
     @Override
     public int addNewSubTask(SubTask newSubTask) {
         int newSubTaskId = super.addNewSubTask(newSubTask);
-        save();
+        persist(upsertRecord(newSubTask));
         return newSubTaskId;
     }
 
     @Override
     public int addNewEpic(Epic newEpic) {
         int newEpicId = super.addNewEpic(newEpic);
-        save();
+        persist(upsertRecord(newEpic));
         return newEpicId;
     }
 
+    @Override
+    public List<Integer> applyBatch(List<Operation> operations) {
+        List<Integer> ids = super.applyBatch(operations);
+        // один раз на весь пакет, addAll тоже проходит через applyBatch
+        persist(operations.stream()
+                .map(operation -> operation.kind() == Operation.Kind.DELETE
+                        ? deleteRecord(operation.type(), operation.id())
+                        : upsertRecord(operation.task()))
+                .toList());
+        return ids;
+    }
+
     @Override
     public void updateTask(Task task) {
         super.updateTask(task);
-        save();
+        persist(upsertRecord(task));
     }
 
     @Override
     public void updateSubTask(SubTask subTask) {
         super.updateSubTask(subTask);
-        save();
+        persist(upsertRecord(subTask));
     }
 
     @Override
     public void updateEpic(Epic epic) {
         super.updateEpic(epic);
-        save();
+        persist(upsertRecord(epic));
     }
 
-    private void save() {
-        String header = "id,type,name,status,description,duration,startTime,epic";
+    // Дописывает очередь изменений, ожидает завершения фонового сжатия и закрывает журнал
+    @Override
+    public void close() {
+        if (groupCommit != null) groupCommit.close();
+        awaitCompaction();
+        log.close();
+        history.close();
+    }
+
+    // Завершится, когда все уже сделанные изменения окажутся на диске
+    public CompletableFuture<Void> whenDurable() {
+        return groupCommit == null ? CompletableFuture.completedFuture(null) : groupCommit.whenDurable();
+    }
+
+    // Число изменений, которые пока есть только в памяти
+    public int getPendingRecords() {
+        return groupCommit == null ? 0 : groupCommit.getPendingRecords();
+    }
+
+    // Насколько диск отстает от памяти: возраст самого старого не записанного изменения
+    public Duration getPersistenceLag() {
+        return groupCommit == null ? Duration.ZERO : groupCommit.getLag();
+    }
+
+    // Запускает сжатие вне очереди: журнал переименовывается в .wal.old, новые записи идут в пустой журнал,
+    // а снимок состояния на момент ротации пишется в фоне и не блокирует последующие изменения
+    public CompletableFuture<Void> compact() {
+        awaitCompaction();
+        if (mode != PersistenceMode.WAL || checkpointPending) return compaction;
+        if (groupCommit != null) groupCommit.flush(); // поток записи не должен писать в ротируемый файл
+        if (!log.exists()) return compaction;
+
+        log.rotate(rotatedLog);
+        List<Task> frozenState = freezeState();
+        lastCompactionNanos = System.nanoTime();
+        compaction = CompletableFuture.runAsync(() -> installSnapshot(frozenState), runnable -> {
+            Thread compactor = new Thread(runnable, "task-log-compactor");
+            compactor.setDaemon(true);
+            compactor.start();
+        });
+        return compaction;
+    }
 
-        Stream<String> convertedTasksStream = Stream.of(tasks, subTasks, epics)
-                .flatMap(map -> map.values().stream())
-                .map(TaskManagerUtils::convertToString);
-        Stream<String> fullContent = Stream.concat(Stream.of(header), convertedTasksStream);
+    private void awaitCompaction() {
+        try {
+            compaction.join();
+        } catch (CompletionException e) {
+            throw new ManagerSaveException("Возникла ошибка сжатия журнала изменений");
+        }
+    }
+
+    private void compactIfDue() {
+        if (!compaction.isDone()) return;
+        // после неудачного сжатия .wal.old остается на диске, и поверх него ротировать нельзя
+        if (compaction.isCompletedExceptionally()) return;
+        Duration sinceLastCompaction = Duration.ofNanos(System.nanoTime() - lastCompactionNanos);
+        if (compactionPolicy.isDue(log.getBytes(), log.getRecords(), sinceLastCompaction)) compact();
+    }
+
+    private void persist(String record) {
+        persist(List.of(record));
+    }
 
+    private void persist(List<String> records) {
+        if (mode == PersistenceMode.WAL && !checkpointPending) {
+            if (groupCommit != null) {
+                groupCommit.submit(records);
+            } else {
+                log.append(records, true);
+            }
+            compactIfDue();
+        } else if (checkpointPending) {
+            checkpoint();
+        } else {
+            save();
+        }
+    }
+
+    // Старые журналы к новому состоянию не относятся: удаляем их до записи снимка
+    private void checkpoint() {
+        log.reset();
         try {
-            Files.write(autoSaveFile.toPath(), (Iterable<String>) fullContent::iterator);
+            Files.deleteIfExists(rotatedLog);
         } catch (IOException e) {
-            throw new ManagerSaveException("Возникла ошибка сохранения в файл");
+            throw new ManagerSaveException("Возникла ошибка удаления журнала изменений");
         }
+        save();
+        history.rewrite();
+        checkpointPending = false;
+    }
+
+    // Снимок поглощает .wal.old: после установки тот хранится рядом с предыдущим поколением как .prev.wal
+    private void installSnapshot(Collection<? extends Task> state) {
+        snapshots.install(state, rotatedLog);
+    }
 
+    private Task findTask(int id) {
+        Task task = tasks.get(id);
+        if (task == null) task = subTasks.get(id);
+        if (task == null) task = epics.get(id);
+        return task;
     }
 
-    private void restoreTask(Task task) {
-        Type taskType = task.getType();
-        switch (taskType) {
-            case TASK -> super.addNewTask(task);
-            case SUBTASK -> super.addNewSubTask((SubTask) task);
-            case EPIC -> super.addNewEpic((Epic) task);
+    private List<Task> currentState() {
+        List<Task> state = new ArrayList<>(tasks.size() + subTasks.size() + epics.size());
+        state.addAll(tasks.values());
+        state.addAll(subTasks.values());
+        state.addAll(epics.values());
+        return state;
+    }
+
+    // Копии задач на момент ротации: пока снимок пишется в фоне, исходные объекты продолжают меняться.
+    // Эпики собираются из копий подзадач, поэтому их статус и время совпадают с оригиналами.
+    private List<Task> freezeState() {
+        List<Task> state = new ArrayList<>(tasks.size() + subTasks.size() + epics.size());
+        IntObjectHashMap<Epic> frozenEpics = new IntObjectHashMap<>(epics.size());
+        for (Epic epic : epics.values()) {
+            frozenEpics.put(epic.getId(), new Epic(epic.getTitle(), epic.getDescription(), epic.getId()));
+        }
+        for (Task task : tasks.values()) {
+            state.add(copyFields(task, new Task(task.getTitle(), task.getDescription(), task.getId())));
+        }
+        for (SubTask subTask : subTasks.values()) {
+            SubTask copy = copyFields(subTask, new SubTask(subTask.getTitle(), subTask.getDescription(),
+                    subTask.getParentEpicId(), subTask.getId()));
+            frozenEpics.get(copy.getParentEpicId()).addSubTaskToEpic(copy);
+            state.add(copy);
         }
+        state.addAll(frozenEpics.values());
+        return state;
+    }
+
+    private static <T extends Task> T copyFields(Task source, T copy) {
+        copy.setStatus(source.getStatus());
+        copy.setDuration(source.getDuration());
+        source.getStartTime().ifPresent(copy::setStartTime);
+        return copy;
+    }
+
+    // Записи журнала: U,<строка задачи как в снимке> - добавление или обновление,
+    // D,<тип>,<id> - удаление, C,<тип> - удаление всех задач типа
+    private static String upsertRecord(Task task) {
+        return "U," + TaskManagerUtils.convertToString(task);
+    }
+
+    private static String deleteRecord(Type type, int id) {
+        return "D," + type + "," + id;
+    }
+
+    private static String clearRecord(Type type) {
+        return "C," + type;
+    }
+
+    private Runnable decodeRecord(String record) {
+        if (record.startsWith("U,")) {
+            Task task = TaskManagerUtils.restoreFromString(record, 2);
+            return () -> replayUpsert(task);
+        }
+        String[] data = record.split(",", 3);
+        return switch (data[0]) {
+            case "D" -> {
+                Type type = Type.valueOf(data[1]);
+                int id = Integer.parseInt(data[2]);
+                yield () -> replayDelete(type, id);
+            }
+            case "C" -> {
+                Type type = Type.valueOf(data[1]);
+                yield () -> replayClear(type);
+            }
+            default -> throw new IllegalArgumentException("Неизвестная запись журнала: " + record);
+        };
+    }
+
+    // Записи журнала проверялись при записи, поэтому вставляются без поиска пересечений: в середине пакета
+    // (добавить z на место x, затем удалить x) состояние может пересекаться, а после пакета уже нет
+    private void replayUpsert(Task task) {
+        if (task instanceof Epic epic) {
+            // как и при загрузке снимка, подзадачи эпика определяются их ссылкой на родителя
+            Epic previousEpic = epics.get(epic.getId());
+            if (previousEpic != null) previousEpic.getEpicSubTasks().forEach(epic::addSubTaskToEpic);
+        }
+        restoreTask(task);
+    }
+
+    private void replayDelete(Type type, int id) {
+        idCounter = Math.max(idCounter, id);
+        switch (type) {
+            case TASK -> super.deleteTask(id);
+            case SUBTASK -> super.deleteSubTask(id);
+            case EPIC -> super.deleteEpic(id);
+        }
+    }
+
+    private void replayClear(Type type) {
+        switch (type) {
+            case TASK -> super.deleteAllTasks();
+            case SUBTASK -> super.deleteAllSubTasks();
+            case EPIC -> super.deleteAllEpics();
+        }
+    }
+
+    private void save() {
+        snapshots.install(currentState(), null);
     }
 
 }
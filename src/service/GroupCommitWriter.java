@@ -0,0 +1,178 @@
+package service;
+
+import exeptions.ManagerSaveException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Групповая запись журнала в отдельном потоке: изменение только ставится в очередь и не ждет диска,
+// а поток записи сбрасывает накопленное одной пачкой (и одним fsync для BATCHED).
+class GroupCommitWriter implements AutoCloseable {
+    private final WriteAheadLog log;
+    private final WritePolicy policy;
+    private final Thread thread;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // все поля ниже защищены lock
+    private List<String> pending = new ArrayList<>();
+    private CompletableFuture<Void> pendingAck = new CompletableFuture<>();
+    private long pendingSinceNanos;
+    private CompletableFuture<Void> inFlightAck = CompletableFuture.completedFuture(null);
+    private int inFlightRecords;
+    private long inFlightSinceNanos;
+    private boolean flushRequested;
+    private boolean closed;
+    private RuntimeException failure;
+
+    GroupCommitWriter(WriteAheadLog log, WritePolicy policy) {
+        this.log = log;
+        this.policy = policy;
+        this.thread = new Thread(this::run, "task-log-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Возвращает future, который завершится, когда эти записи окажутся на диске
+    CompletableFuture<Void> submit(List<String> records) {
+        lock.lock();
+        try {
+            if (failure != null) throw new ManagerSaveException("Возникла ошибка записи в журнал изменений");
+            if (closed) throw new ManagerSaveException("Журнал изменений уже закрыт");
+            boolean startsBatch = pending.isEmpty();
+            if (startsBatch) pendingSinceNanos = System.nanoTime();
+            pending.addAll(records);
+            // поток записи просыпается, чтобы отсчитать интервал новой пачки или сбросить заполненную
+            if (startsBatch || pending.size() >= policy.maxBatchRecords()) changed.signal();
+            return pendingAck;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Future, который завершится, когда на диске окажутся все уже принятые записи
+    CompletableFuture<Void> whenDurable() {
+        lock.lock();
+        try {
+            return pending.isEmpty() ? inFlightAck : pendingAck;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Сбрасывает очередь, не дожидаясь интервала, и ждет записи
+    void flush() {
+        CompletableFuture<Void> ack;
+        lock.lock();
+        try {
+            flushRequested = !pending.isEmpty();
+            changed.signal();
+            ack = pending.isEmpty() ? inFlightAck : pendingAck;
+        } finally {
+            lock.unlock();
+        }
+        ack.join();
+    }
+
+    int getPendingRecords() {
+        lock.lock();
+        try {
+            return pending.size() + inFlightRecords;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Сколько времени самое старое из не записанных изменений существует только в памяти
+    Duration getLag() {
+        lock.lock();
+        try {
+            if (inFlightRecords > 0) return Duration.ofNanos(System.nanoTime() - inFlightSinceNanos);
+            if (!pending.isEmpty()) return Duration.ofNanos(System.nanoTime() - pendingSinceNanos);
+            return Duration.ZERO;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        boolean force = policy.durability() == WritePolicy.Durability.BATCHED;
+        long flushIntervalNanos = policy.flushInterval().toNanos();
+        while (true) {
+            List<String> batch;
+            CompletableFuture<Void> ack;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    changed.await();
+                }
+                if (pending.isEmpty()) return;
+                // копим пачку до интервала с первого изменения или до нужного размера
+                long remaining = pendingSinceNanos + flushIntervalNanos - System.nanoTime();
+                while (remaining > 0 && !closed && !flushRequested && pending.size() < policy.maxBatchRecords()) {
+                    remaining = changed.awaitNanos(remaining);
+                }
+                batch = pending;
+                ack = pendingAck;
+                inFlightAck = ack;
+                inFlightRecords = batch.size();
+                inFlightSinceNanos = pendingSinceNanos;
+                pending = new ArrayList<>();
+                pendingAck = new CompletableFuture<>();
+                flushRequested = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(new ManagerSaveException("Поток записи журнала изменений прерван"));
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                log.append(batch, force);
+            } catch (RuntimeException e) {
+                fail(e);
+                ack.completeExceptionally(e);
+                return;
+            }
+            lock.lock();
+            try {
+                inFlightRecords = 0;
+            } finally {
+                lock.unlock();
+            }
+            ack.complete(null);
+        }
+    }
+
+    private void fail(RuntimeException e) {
+        lock.lock();
+        try {
+            failure = e;
+            pendingAck.completeExceptionally(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) throw new ManagerSaveException("Возникла ошибка записи в журнал изменений");
+    }
+}
@@ -3,11 +3,10 @@ package service;
 import model.Task;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 public class InMemoryHistoryManager implements HistoryManager {
-    private final HashMap<Integer, HistoryNode> historyMap = new HashMap<>();
+    private final IntObjectHashMap<HistoryNode> historyMap = new IntObjectHashMap<>();
     private HistoryNode head = null;
     private HistoryNode tail = null;
 
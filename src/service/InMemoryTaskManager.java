@@ -7,19 +7,45 @@ import model.SubTask;
 import model.Task;
 import model.Type;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class InMemoryTaskManager implements TaskManager {
-    protected final HashMap<Integer, Task> tasks = new HashMap<>();
-    protected final HashMap<Integer, SubTask> subTasks = new HashMap<>();
-    protected final HashMap<Integer, Epic> epics = new HashMap<>();
-    protected final HistoryManager historyManager = Managers.getDefaultHistory();
-    protected final TreeSet<Task> prioritizedTasks = new TreeSet<>(
-            Comparator.comparing(task -> task.getStartTime().orElse(LocalDateTime.MAX))
-    );
+    protected final IntObjectHashMap<Task> tasks = new IntObjectHashMap<>();
+    protected final IntObjectHashMap<SubTask> subTasks = new IntObjectHashMap<>();
+    protected final IntObjectHashMap<Epic> epics = new IntObjectHashMap<>();
+    protected final HistoryManager historyManager;
+    protected final TaskIntervalTree prioritizedTasks = new TaskIntervalTree();
     protected int idCounter = 0;
+    private final BatchValidator batchValidator = new BatchValidator() {
+        @Override
+        boolean epicExists(int id) {
+            return epics.containsKey(id);
+        }
+
+        @Override
+        void forEachSubTaskId(int epicId, IntConsumer action) {
+            Epic epic = epics.get(epicId);
+            if (epic != null) epic.getEpicSubTasks().forEach(subTask -> action.accept(subTask.getId()));
+        }
+
+        @Override
+        boolean overlapsStored(Task task, IntObjectHashMap<?> ignoredIds) {
+            return prioritizedTasks.findOverlap(task.getStartTime().get(), task.getEndTime(), task.getId(),
+                    ignoredIds) != null;
+        }
+    };
+
+    public InMemoryTaskManager() {
+        this(Managers.getDefaultHistory());
+    }
+
+    protected InMemoryTaskManager(HistoryManager historyManager) {
+        this.historyManager = historyManager;
+    }
 
     @Override
     public ArrayList<Task> getAllTasks() {
@@ -38,24 +64,28 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public void deleteAllTasks() {
-        tasks.keySet().forEach(historyManager::remove);
-        tasks.values().stream().filter(task -> task.getStartTime().isPresent()).forEach(prioritizedTasks::remove);
+        tasks.forEachKey(historyManager::remove);
+        tasks.values().forEach(prioritizedTasks::remove);
         tasks.clear();
     }
 
     @Override
     public void deleteAllSubTasks() {
-        epics.values().forEach(Epic::deleteAllEpicSubTasks);
-        subTasks.keySet().forEach(historyManager::remove);
-        subTasks.values().stream().filter(task -> task.getStartTime().isPresent()).forEach(prioritizedTasks::remove);
-        subTasks.clear();
+        clearSubTasks();
     }
 
     @Override
     public void deleteAllEpics() {
-        epics.keySet().forEach(historyManager::remove);
+        epics.forEachKey(historyManager::remove);
         epics.clear();
-        deleteAllSubTasks();
+        clearSubTasks(); // не через deleteAllSubTasks(), чтобы наследники не обрабатывали удаление дважды
+    }
+
+    private void clearSubTasks() {
+        epics.values().forEach(Epic::deleteAllEpicSubTasks);
+        subTasks.forEachKey(historyManager::remove);
+        subTasks.values().forEach(prioritizedTasks::remove);
+        subTasks.clear();
     }
 
     @Override
@@ -84,7 +114,11 @@ public class InMemoryTaskManager implements TaskManager {
     public void updateTask(Task task) {
         if (hasTimeConflict(task)) throw new TimeIntersectionException("Задача не обновлена: пересечение по времени");
         if (task.getType() != Type.TASK) return;
-        if (task.getStartTime().isPresent()) prioritizedTasks.add(task);
+        replaceTask(task);
+    }
+
+    private void replaceTask(Task task) {
+        prioritizedTasks.add(task);
         tasks.put(task.getId(), task);
     }
 
@@ -95,28 +129,58 @@ public class InMemoryTaskManager implements TaskManager {
         if (subTask.getParentEpicId() == 0 || epics.get(subTask.getParentEpicId()) == null) {
             throw new ManagerSaveException("У подзадачи должен быть родительский Epic");
         }
-        if (subTask.getStartTime().isPresent()) prioritizedTasks.add(subTask);
-        subTasks.put(subTask.getId(), subTask);
-        checkEpicStatusIsChanged(subTask.getParentEpicId());
+        replaceSubTask(subTask);
+    }
+
+    private void replaceSubTask(SubTask subTask) {
+        SubTask previousSubTask = subTasks.put(subTask.getId(), subTask);
+        if (previousSubTask != null) unlinkFromPreviousEpic(previousSubTask, subTask);
+        epics.get(subTask.getParentEpicId()).addSubTaskToEpic(subTask); // эпик пересчитывает только вклад этой подзадачи
+        prioritizedTasks.add(subTask);
+    }
+
+    private void unlinkFromPreviousEpic(SubTask previousSubTask, SubTask subTask) {
+        if (previousSubTask.getParentEpicId() == subTask.getParentEpicId()) return;
+        Epic previousEpic = epics.get(previousSubTask.getParentEpicId());
+        if (previousEpic != null) previousEpic.deleteSubTaskFromEpic(subTask.getId());
     }
 
     @Override
     public void updateEpic(Epic epic) {
-        epics.put(epic.getId(), epic);
+        replaceEpic(epic);
+    }
+
+    // Подзадачи эпика меняются только через подзадачи: новая версия эпика получает сохраненные,
+    // а присланный список (например, только id из JSON) не может их потерять или подменить
+    private void replaceEpic(Epic epic) {
+        Epic previousEpic = epics.put(epic.getId(), epic);
+        if (previousEpic == epic) return;
+        epic.deleteAllEpicSubTasks();
+        if (previousEpic != null && previousEpic.getSubTasksCount() > 0) {
+            epic.addSubTasksToEpic(previousEpic.getEpicSubTasks());
+        }
     }
 
     @Override
     public void deleteTask(int id) {
+        removeTask(id);
+    }
+
+    private void removeTask(int id) {
         historyManager.remove(id);
         Task taskToDelete = tasks.get(id);
         if (taskToDelete != null) {
-            prioritizedTasks.remove(tasks.get(id));
+            prioritizedTasks.remove(id);
             tasks.remove(id);
         }
     }
 
     @Override
     public void deleteSubTask(int id) {
+        removeSubTask(id);
+    }
+
+    private void removeSubTask(int id) {
         historyManager.remove(id);
         SubTask subTaskToDelete = subTasks.get(id);
         if (subTaskToDelete != null) {
@@ -124,12 +188,15 @@ public class InMemoryTaskManager implements TaskManager {
             parentEpic.deleteSubTaskFromEpic(subTaskToDelete.getId());
             prioritizedTasks.remove(subTaskToDelete);
             subTasks.remove(id);
-            checkEpicStatusIsChanged(parentEpic.getId());
         }
     }
 
     @Override
     public void deleteEpic(int id) {
+        removeEpic(id);
+    }
+
+    private void removeEpic(int id) {
         historyManager.remove(id);
         Epic epicToDelete = epics.get(id);
         if (epicToDelete != null) {
@@ -155,7 +222,21 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public List<Task> getPrioritizedTasks() {
-        return new ArrayList<>(prioritizedTasks);
+        return prioritizedTasks.toList();
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        return prioritizedTasks.toList(from, to);
+    }
+
+    @Override
+    public Stream<Task> streamPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        Spliterator<Task> spliterator = Spliterators.spliteratorUnknownSize(
+                prioritizedTasks.iterator(from, to),
+                Spliterator.ORDERED | Spliterator.NONNULL
+        );
+        return StreamSupport.stream(spliterator, false);
     }
 
     private void setIdToTask(Task task) {
@@ -169,11 +250,13 @@ public class InMemoryTaskManager implements TaskManager {
     public int addNewTask(Task newTask) {
         if (hasTimeConflict(newTask))
             throw new TimeIntersectionException("Задача не добавлена: пересечение по времени");
+        return insertTask(newTask);
+    }
+
+    private int insertTask(Task newTask) {
         setIdToTask(newTask);
         tasks.put(newTask.getId(), newTask);
-        if (newTask.getStartTime().isPresent()) {
-            prioritizedTasks.add(newTask);
-        }
+        prioritizedTasks.add(newTask);
         return newTask.getId();
     }
 
@@ -184,87 +267,195 @@ public class InMemoryTaskManager implements TaskManager {
         if (newSubTask.getParentEpicId() == 0 || epics.get(newSubTask.getParentEpicId()) == null) {
             throw new ManagerSaveException("Нельзя добавить подзадачу без привязки к родительскому Epic");
         }
+        return insertSubTask(newSubTask);
+    }
+
+    private int insertSubTask(SubTask newSubTask) {
         setIdToTask(newSubTask);
         subTasks.put(newSubTask.getId(), newSubTask);
         epics.get(newSubTask.getParentEpicId()).addSubTaskToEpic(newSubTask);
-        checkEpicStatusIsChanged(newSubTask.getParentEpicId());
-        if (newSubTask.getStartTime().isPresent()) {
-            prioritizedTasks.add(newSubTask);
-        }
+        prioritizedTasks.add(newSubTask);
         return newSubTask.getId();
     }
 
     @Override
     public int addNewEpic(Epic newEpic) {
+        return insertEpic(newEpic);
+    }
+
+    private int insertEpic(Epic newEpic) {
         setIdToTask(newEpic);
         epics.put(newEpic.getId(), newEpic);
         return newEpic.getId();
     }
 
-    private boolean isOverlap(Task task1, Task task2) {
-        if (task1.getStartTime().isEmpty() || task2.getStartTime().isEmpty()) return false;
-        LocalDateTime start1 = task1.getStartTime().get();
-        LocalDateTime end1 = task1.getEndTime();
-        LocalDateTime start2 = task2.getStartTime().get();
-        LocalDateTime end2 = task2.getEndTime();
-
-        return !end1.isBefore(start2) && !end2.isBefore(start1) && !end1.isEqual(start2) && !end2.isEqual(start1);
-
+    // Доверенное восстановление состояния, которое уже проверялось при записи (снимок, выгрузка другого
+    // менеджера): задачи вставляются как есть, без поиска пересечений. Проверить данные можно отдельно -
+    // verifyIntegrity().
+    public static InMemoryTaskManager restoredFrom(Collection<? extends Task> restoredTasks) {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        manager.restoreAll(restoredTasks);
+        return manager;
     }
 
-    private boolean hasTimeConflict(Task task) {
-        List<Task> prioritizedTasks = getPrioritizedTasks();
-        if (prioritizedTasks.isEmpty()) return false;
-        return prioritizedTasks
-                .stream()
-                .anyMatch(task1 -> isOverlap(task1, task) && !task1.equals(task));
-    }
-
-    private void checkEpicStatusIsChanged(int epicId) {
-        Epic epic = epics.get(epicId);
-        if (epic.getEpicSubTasks().isEmpty()) {
-            updateEpicTimes(epic, Duration.ZERO, null, null);
-            return;
+    // Восстановление ранее сохраненного состояния: данные уже проверялись при записи, поэтому пересечения
+    // по времени не ищутся. Подзадачи собираются по эпикам и привязываются в конце, так что агрегаты
+    // каждого эпика считаются один раз, а индекс по времени строится одной сортировкой.
+    protected void restoreAll(Collection<? extends Task> restoredTasks) {
+        int taskCount = 0;
+        int subTaskCount = 0;
+        for (Task task : restoredTasks) {
+            if (task.getType() == Type.TASK) taskCount++;
+            if (task.getType() == Type.SUBTASK) subTaskCount++;
         }
-        epic.checkStatus();
-
-        Duration totalDuration = Duration.ZERO;
-        LocalDateTime earliestStart = LocalDateTime.MAX;
-        LocalDateTime latestEnd = LocalDateTime.MIN;
-        boolean hasTimeData = false;
-
-        for (SubTask subTask : epic.getEpicSubTasks()) {
-            Optional<LocalDateTime> subTaskStartTime = subTask.getStartTime();
-            LocalDateTime subTaskEndTime = subTask.getEndTime();
-
-            if (subTaskStartTime.isPresent() && subTaskEndTime != null) {
-                hasTimeData = true;
-
-
-                if (subTaskStartTime.get().isBefore(earliestStart)) {
-                    earliestStart = subTaskStartTime.get();
+        tasks.ensureCapacity(tasks.size() + taskCount);
+        subTasks.ensureCapacity(subTasks.size() + subTaskCount);
+        epics.ensureCapacity(epics.size() + restoredTasks.size() - taskCount - subTaskCount);
+
+        IntObjectHashMap<List<SubTask>> subTasksByEpic = new IntObjectHashMap<>();
+        List<Integer> epicIds = new ArrayList<>(); // порядок первого появления - для понятной ошибки
+        List<Task> scheduled = new ArrayList<>(taskCount + subTaskCount);
+        for (Task task : restoredTasks) {
+            idCounter = Math.max(idCounter, task.getId());
+            switch (task.getType()) {
+                case TASK -> {
+                    tasks.put(task.getId(), task);
+                    scheduled.add(task);
+                }
+                case EPIC -> epics.put(task.getId(), (Epic) task);
+                case SUBTASK -> {
+                    SubTask subTask = (SubTask) task;
+                    SubTask previousSubTask = subTasks.put(subTask.getId(), subTask);
+                    if (previousSubTask != null) unlinkFromPreviousEpic(previousSubTask, subTask);
+                    List<SubTask> epicSubTasks = subTasksByEpic.get(subTask.getParentEpicId());
+                    if (epicSubTasks == null) {
+                        epicSubTasks = new ArrayList<>();
+                        subTasksByEpic.put(subTask.getParentEpicId(), epicSubTasks);
+                        epicIds.add(subTask.getParentEpicId());
+                    }
+                    epicSubTasks.add(subTask);
+                    scheduled.add(subTask);
                 }
+            }
+        }
+        for (int epicId : epicIds) {
+            List<SubTask> epicSubTasks = subTasksByEpic.get(epicId);
+            epicSubTasks.removeIf(subTask -> subTasks.get(subTask.getId()) != subTask); // повтор id: берется последний
+            if (epicSubTasks.isEmpty()) continue;
+            Epic epic = epics.get(epicId);
+            if (epic == null) {
+                throw new ManagerSaveException("У подзадачи " + epicSubTasks.get(0).getId() + " нет родительского Epic");
+            }
+            epic.addSubTasksToEpic(epicSubTasks);
+        }
+        prioritizedTasks.addAll(scheduled);
+    }
 
-                if (subTaskEndTime.isAfter(latestEnd)) {
-                    latestEnd = subTaskEndTime;
+    // Доверенная вставка одной задачи, например при проигрывании журнала: запись проверялась, когда попала
+    // в журнал, а промежуточное состояние при проигрывании может пересекаться по времени
+    protected final void restoreTask(Task task) {
+        idCounter = Math.max(idCounter, task.getId());
+        switch (task.getType()) {
+            case TASK -> replaceTask(task);
+            case SUBTASK -> {
+                SubTask subTask = (SubTask) task;
+                if (epics.get(subTask.getParentEpicId()) == null) {
+                    throw new ManagerSaveException("У подзадачи " + subTask.getId() + " нет родительского Epic");
                 }
+                replaceSubTask(subTask);
+            }
+            case EPIC -> replaceEpic((Epic) task);
+        }
+    }
 
-                totalDuration = totalDuration.plus(subTask.getDuration());
+    // Отдельная проверка восстановленного состояния за O(n log n): у каждой подзадачи есть эпик, который о ней
+    // знает, каждая подзадача эпика хранится в менеджере и ссылается на него же, id не повторяются между типами,
+    // и задачи не пересекаются по времени. Индекс уже отсортирован
+    // по началу, поэтому пересечения ищутся одним проходом с самым поздним окончанием. Условие пересечения то же,
+    // что в findOverlap: при равном начале задача нулевой длительности ни с чем не пересекается.
+    public void verifyIntegrity() {
+        for (SubTask subTask : subTasks.values()) {
+            Epic epic = epics.get(subTask.getParentEpicId());
+            if (epic == null || !epic.containsSubTask(subTask.getId())) {
+                throw new ManagerSaveException("У подзадачи " + subTask.getId() + " нет родительского Epic");
+            }
+            if (tasks.containsKey(subTask.getId()) || epics.containsKey(subTask.getId())) {
+                throw new ManagerSaveException("Id " + subTask.getId() + " занят задачами разных типов");
+            }
+        }
+        for (Epic epic : epics.values()) {
+            if (tasks.containsKey(epic.getId())) {
+                throw new ManagerSaveException("Id " + epic.getId() + " занят задачами разных типов");
+            }
+            for (SubTask subTask : epic.getEpicSubTasks()) {
+                if (subTasks.get(subTask.getId()) != subTask || subTask.getParentEpicId() != epic.getId()) {
+                    throw new ManagerSaveException("Эпик " + epic.getId() + " ссылается на подзадачу "
+                            + subTask.getId() + ", которой нет в менеджере или которая принадлежит другому эпику");
+                }
+            }
+        }
+        Task latest = null;
+        for (Task task : prioritizedTasks) {
+            if (latest != null && task.getStartTime().get().isBefore(latest.getEndTime())
+                    && task.getEndTime().isAfter(latest.getStartTime().get())) {
+                throw new TimeIntersectionException("Задачи " + latest.getId() + " и " + task.getId()
+                        + " пересекаются по времени");
             }
+            if (latest == null || task.getEndTime().isAfter(latest.getEndTime())) latest = task;
+        }
+    }
+
+    @Override
+    public List<Integer> addAll(Collection<? extends Task> newTasks) {
+        List<Operation> operations = new ArrayList<>(newTasks.size());
+        for (Task newTask : newTasks) {
+            operations.add(Operation.add(newTask));
         }
+        return applyBatch(operations);
+    }
 
-        if (hasTimeData) {
-            updateEpicTimes(epic, totalDuration, earliestStart, latestEnd);
-        } else {
-            updateEpicTimes(epic, Duration.ZERO, null, null);
+    // Пакет либо применяется целиком, либо не меняет ничего: все проверки выполняются до первого изменения
+    @Override
+    public List<Integer> applyBatch(List<Operation> operations) {
+        batchValidator.validate(operations);
+        List<Integer> ids = new ArrayList<>(operations.size());
+        for (Operation operation : operations) {
+            ids.add(applyOperation(operation));
         }
+        return ids;
+    }
 
+    private int applyOperation(Operation operation) {
+        Task task = operation.task();
+        return switch (operation.kind()) {
+            case ADD -> switch (operation.type()) {
+                case TASK -> insertTask(task);
+                case SUBTASK -> insertSubTask((SubTask) task);
+                case EPIC -> insertEpic((Epic) task);
+            };
+            case UPDATE -> {
+                switch (operation.type()) {
+                    case TASK -> replaceTask(task);
+                    case SUBTASK -> replaceSubTask((SubTask) task);
+                    case EPIC -> replaceEpic((Epic) task);
+                }
+                yield task.getId();
+            }
+            case DELETE -> {
+                switch (operation.type()) {
+                    case TASK -> removeTask(operation.id());
+                    case SUBTASK -> removeSubTask(operation.id());
+                    case EPIC -> removeEpic(operation.id());
+                }
+                yield operation.id();
+            }
+        };
     }
 
-    private void updateEpicTimes(Epic epic, Duration duration, LocalDateTime startTime, LocalDateTime endTime) {
-        epic.setDuration(duration);
-        epic.setStartTime(startTime);
-        epic.setEndTime(endTime);
+    private boolean hasTimeConflict(Task task) {
+        Optional<LocalDateTime> startTime = task.getStartTime();
+        if (startTime.isEmpty()) return false;
+        return prioritizedTasks.findOverlap(startTime.get(), task.getEndTime(), task.getId()) != null;
     }
 
 }
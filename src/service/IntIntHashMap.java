@@ -0,0 +1,127 @@
+package service;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// То же, что IntObjectHashMap, но и значения - неотрицательные int: ни ключи, ни значения не упаковываются.
+// Свободная ячейка помечается значением NO_VALUE, его же возвращают get, put и remove при отсутствии ключа.
+class IntIntHashMap {
+    static final int NO_VALUE = -1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int resizeThreshold;
+
+    IntIntHashMap() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        return Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+    }
+
+    void ensureCapacity(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        if (capacity > keys.length) resize(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, NO_VALUE);
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slot(int key) {
+        return (key ^ (key >>> 16)) & (keys.length - 1);
+    }
+
+    private int indexOf(int key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key); values[i] != NO_VALUE; i = (i + 1) & mask) {
+            if (keys[i] == key) return i;
+        }
+        return -1;
+    }
+
+    int get(int key) {
+        int index = indexOf(key);
+        return index < 0 ? NO_VALUE : values[index];
+    }
+
+    boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    int put(int key, int value) {
+        if (value < 0) throw new IllegalArgumentException("Значение не может быть отрицательным: " + value);
+        int mask = keys.length - 1;
+        int i = slot(key);
+        for (; values[i] != NO_VALUE; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                int previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeThreshold) resize(keys.length << 1);
+        return NO_VALUE;
+    }
+
+    int remove(int key) {
+        int index = indexOf(key);
+        if (index < 0) return NO_VALUE;
+        int previous = values[index];
+        shiftBack(index);
+        size--;
+        return previous;
+    }
+
+    // Обратный сдвиг, как в IntObjectHashMap
+    private void shiftBack(int freed) {
+        int mask = keys.length - 1;
+        values[freed] = NO_VALUE;
+        for (int i = (freed + 1) & mask; values[i] != NO_VALUE; i = (i + 1) & mask) {
+            int home = slot(keys[i]);
+            boolean reachable = freed <= i ? (home > freed && home <= i) : (home > freed || home <= i);
+            if (!reachable) {
+                keys[freed] = keys[i];
+                values[freed] = values[i];
+                values[i] = NO_VALUE;
+                freed = i;
+            }
+        }
+    }
+
+    private void resize(int newCapacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(newCapacity);
+        int mask = newCapacity - 1;
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldValues[j] == NO_VALUE) continue;
+            int i = slot(oldKeys[j]);
+            while (values[i] != NO_VALUE) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEachKey(IntConsumer action) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != NO_VALUE) action.accept(keys[i]);
+        }
+    }
+}
@@ -0,0 +1,683 @@
+package service;
+
+import exeptions.ManagerSaveException;
+import exeptions.TimeIntersectionException;
+import model.Epic;
+import model.Status;
+import model.SubTask;
+import model.Task;
+import model.Type;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+// Менеджер поверх встроенной базы данных (H2, SQLite и т.п.) через JDBC: драйвер берется из classpath по URL.
+// Данные живут только в базе: выборки, поиск пересечений по времени и расписание идут запросами по индексам,
+// а в памяти держится ограниченный кэш последних задач (LRU). Задача из кэша - тот же объект, что вернул
+// или получил менеджер, и эпик в кэше пересчитывается при изменении своих подзадач; вытесненная задача
+// при следующем обращении читается из базы заново. Каждая операция (пакет - одна операция) - одна транзакция.
+// Статус и время эпика выводятся из подзадач и в базе не хранятся.
+public class JdbcTaskManager implements TaskManager, AutoCloseable {
+    static final int DEFAULT_CACHE_SIZE = 10_000;
+    private static final int BATCH_SIZE = 1_000;
+    private static final Type[] TYPES = Type.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS tasks ("
+            + "id INTEGER PRIMARY KEY, "
+            + "task_type SMALLINT NOT NULL, "
+            + "title VARCHAR, "
+            + "description VARCHAR, "
+            + "status SMALLINT, "
+            + "duration_minutes BIGINT NOT NULL, "
+            + "start_time BIGINT, " // секунды от эпохи
+            + "end_time BIGINT, "
+            + "epic_id INTEGER)";
+    private static final String[] CREATE_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS tasks_start_time ON tasks (start_time)",
+            "CREATE INDEX IF NOT EXISTS tasks_status ON tasks (status)",
+            "CREATE INDEX IF NOT EXISTS tasks_epic_id ON tasks (epic_id)"
+    };
+    private static final String COLUMNS = "SELECT id, task_type, title, description, status, duration_minutes, "
+            + "start_time, epic_id FROM tasks ";
+    private static final String SELECT_BY_ID = COLUMNS + "WHERE id = ?";
+    private static final String SELECT_BY_TYPE = COLUMNS + "WHERE task_type = ? ORDER BY id";
+    private static final String SELECT_BY_EPIC = COLUMNS + "WHERE epic_id = ? ORDER BY id";
+    private static final String SELECT_SUBTASKS = COLUMNS + "WHERE task_type = " + Type.SUBTASK.ordinal()
+            + " ORDER BY epic_id, id";
+    private static final String SELECT_SCHEDULED = COLUMNS + "WHERE start_time >= ? AND start_time < ? "
+            + "AND task_type <> " + Type.EPIC.ordinal() + " ORDER BY start_time, id";
+    // Начало пересекающей задачи не раньше start - самая большая длительность, поэтому диапазон по индексу
+    // start_time ограничен с обеих сторон
+    private static final String SELECT_OVERLAPS = "SELECT id FROM tasks WHERE start_time < ? AND start_time > ? "
+            + "AND end_time > ? AND id <> ?";
+    private static final String SELECT_TYPE = "SELECT task_type, epic_id FROM tasks WHERE id = ?";
+    private static final String SELECT_IDS_BY_EPIC = "SELECT id FROM tasks WHERE epic_id = ?";
+    private static final String DELETE = "DELETE FROM tasks WHERE id = ?";
+    private static final String DELETE_BY_EPIC = "DELETE FROM tasks WHERE epic_id = ?";
+    private static final String DELETE_BY_TYPE = "DELETE FROM tasks WHERE task_type = ?";
+    private static final String INSERT = "INSERT INTO tasks (id, task_type, title, description, status, "
+            + "duration_minutes, start_time, end_time, epic_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final Connection connection;
+    private final PreparedStatement selectById;
+    private final PreparedStatement selectByType;
+    private final PreparedStatement selectByEpic;
+    private final PreparedStatement selectScheduled;
+    private final PreparedStatement selectOverlaps;
+    private final PreparedStatement selectType;
+    private final PreparedStatement selectIdsByEpic;
+    private final PreparedStatement delete;
+    private final PreparedStatement deleteByEpic;
+    private final PreparedStatement deleteByType;
+    private final PreparedStatement insert;
+    private final HistoryManager historyManager = Managers.getDefaultHistory();
+    private final Map<Integer, Task> cache;
+    private final BatchValidator batchValidator = new BatchValidator() {
+        @Override
+        boolean epicExists(int id) {
+            return query(() -> typeOf(id) == Type.EPIC);
+        }
+
+        @Override
+        void forEachSubTaskId(int epicId, IntConsumer action) {
+            query(() -> subTaskIds(epicId)).forEach(action::accept);
+        }
+
+        @Override
+        boolean overlapsStored(Task task, IntObjectHashMap<?> ignoredIds) {
+            return query(() -> findOverlap(task, ignoredIds));
+        }
+    };
+    private final IntObjectHashMap<Boolean> pendingIds = new IntObjectHashMap<>(); // строки в пакетах delete/insert
+    private int idCounter;
+    private long maxDurationSeconds; // не уменьшается: это только граница для поиска пересечений
+
+    public JdbcTaskManager(String url) {
+        this(url, DEFAULT_CACHE_SIZE);
+    }
+
+    public JdbcTaskManager(String url, int cacheSize) {
+        if (cacheSize < 1) throw new IllegalArgumentException("Некорректный размер кэша: " + cacheSize);
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Task> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        try {
+            connection = DriverManager.getConnection(url);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_TABLE);
+                for (String index : CREATE_INDEXES) {
+                    statement.execute(index);
+                }
+                try (ResultSet row = statement.executeQuery(
+                        "SELECT COALESCE(MAX(id), 0), COALESCE(MAX(end_time - start_time), 0) FROM tasks")) {
+                    row.next();
+                    idCounter = row.getInt(1);
+                    maxDurationSeconds = row.getLong(2);
+                }
+            }
+            connection.setAutoCommit(false);
+            selectById = connection.prepareStatement(SELECT_BY_ID);
+            selectByType = connection.prepareStatement(SELECT_BY_TYPE);
+            selectByEpic = connection.prepareStatement(SELECT_BY_EPIC);
+            selectScheduled = connection.prepareStatement(SELECT_SCHEDULED);
+            selectOverlaps = connection.prepareStatement(SELECT_OVERLAPS);
+            selectType = connection.prepareStatement(SELECT_TYPE);
+            selectIdsByEpic = connection.prepareStatement(SELECT_IDS_BY_EPIC);
+            delete = connection.prepareStatement(DELETE);
+            deleteByEpic = connection.prepareStatement(DELETE_BY_EPIC);
+            deleteByType = connection.prepareStatement(DELETE_BY_TYPE);
+            insert = connection.prepareStatement(INSERT);
+            connection.commit();
+        } catch (SQLException e) {
+            throw new ManagerSaveException("Возникла ошибка открытия базы данных: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new ManagerSaveException("Возникла ошибка закрытия базы данных");
+        }
+    }
+
+    // Сколько задач сейчас в кэше
+    int getCachedCount() {
+        return cache.size();
+    }
+
+    @Override
+    public ArrayList<Task> getAllTasks() {
+        return query(() -> selectAll(Type.TASK, Task.class));
+    }
+
+    @Override
+    public ArrayList<SubTask> getAllSubTasks() {
+        return query(() -> selectAll(Type.SUBTASK, SubTask.class));
+    }
+
+    // Подзадачи читаются одним проходом, отсортированными по эпику, и раздаются эпикам не из кэша
+    @Override
+    public ArrayList<Epic> getAllEpics() {
+        return query(() -> {
+            ArrayList<Epic> allEpics = selectAll(Type.EPIC, Epic.class);
+            IntObjectHashMap<Epic> loadedEpics = new IntObjectHashMap<>();
+            for (Epic epic : allEpics) {
+                if (cache.get(epic.getId()) != epic) loadedEpics.put(epic.getId(), epic);
+            }
+            if (loadedEpics.isEmpty()) return allEpics;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rows = statement.executeQuery(SELECT_SUBTASKS)) {
+                List<SubTask> epicSubTasks = new ArrayList<>();
+                int epicId = 0;
+                while (rows.next()) {
+                    SubTask subTask = (SubTask) cachedOrRestored(rows);
+                    if (subTask.getParentEpicId() != epicId) {
+                        attach(loadedEpics.get(epicId), epicSubTasks);
+                        epicSubTasks = new ArrayList<>();
+                        epicId = subTask.getParentEpicId();
+                    }
+                    epicSubTasks.add(subTask);
+                }
+                attach(loadedEpics.get(epicId), epicSubTasks);
+            }
+            return allEpics;
+        });
+    }
+
+    private static void attach(Epic epic, List<SubTask> epicSubTasks) {
+        if (epic != null && !epicSubTasks.isEmpty()) epic.addSubTasksToEpic(epicSubTasks);
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        transaction(() -> {
+            deleteAllOfType(Type.TASK);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAllSubTasks() {
+        transaction(() -> {
+            deleteAllOfType(Type.SUBTASK);
+            for (Task task : cache.values()) {
+                if (task instanceof Epic epic) epic.deleteAllEpicSubTasks();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        transaction(() -> {
+            deleteAllOfType(Type.SUBTASK);
+            deleteAllOfType(Type.EPIC);
+            return null;
+        });
+    }
+
+    private void deleteAllOfType(Type type) throws SQLException {
+        for (Task task : historyManager.getHistory()) {
+            if (task.getType() == type) historyManager.remove(task.getId());
+        }
+        cache.values().removeIf(task -> task.getType() == type);
+        deleteByType.setInt(1, type.ordinal());
+        deleteByType.executeUpdate();
+    }
+
+    @Override
+    public Optional<Task> getTaskById(int id) {
+        return findViewed(id, Type.TASK, Task.class);
+    }
+
+    @Override
+    public Optional<SubTask> getSubTaskById(int id) {
+        return findViewed(id, Type.SUBTASK, SubTask.class);
+    }
+
+    @Override
+    public Optional<Epic> getEpicById(int id) {
+        return findViewed(id, Type.EPIC, Epic.class);
+    }
+
+    private <T extends Task> Optional<T> findViewed(int id, Type type, Class<T> taskClass) {
+        Task task = query(() -> find(id));
+        if (task == null || task.getType() != type) return Optional.empty();
+        historyManager.add(task);
+        return Optional.of(taskClass.cast(task));
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        if (hasTimeConflict(task)) throw new TimeIntersectionException("Задача не обновлена: пересечение по времени");
+        if (task.getType() != Type.TASK) return;
+        transaction(() -> {
+            store(task);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateSubTask(SubTask subTask) {
+        if (hasTimeConflict(subTask))
+            throw new TimeIntersectionException("Задача не обновлена: пересечение по времени");
+        if (subTask.getParentEpicId() == 0 || !batchValidator.epicExists(subTask.getParentEpicId())) {
+            throw new ManagerSaveException("У подзадачи должен быть родительский Epic");
+        }
+        transaction(() -> {
+            store(subTask);
+            return null;
+        });
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        transaction(() -> {
+            store(epic);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteTask(int id) {
+        transaction(() -> {
+            remove(id, Type.TASK);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteSubTask(int id) {
+        transaction(() -> {
+            remove(id, Type.SUBTASK);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteEpic(int id) {
+        transaction(() -> {
+            remove(id, Type.EPIC);
+            return null;
+        });
+    }
+
+    @Override
+    public ArrayList<SubTask> getEpicSubTasks(int id) {
+        return query(() -> {
+            if (cache.get(id) instanceof Epic epic) return epic.getEpicSubTasks();
+            if (typeOf(id) != Type.EPIC) {
+                throw new NoSuchElementException("Эпика с таким id не существует в менеджере");
+            }
+            return selectSubTasks(id);
+        });
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return getPrioritizedTasks(null, null);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        return query(() -> {
+            selectScheduled.setLong(1, from == null ? Long.MIN_VALUE : from.toEpochSecond(ZoneOffset.UTC));
+            selectScheduled.setLong(2, to == null ? Long.MAX_VALUE : to.toEpochSecond(ZoneOffset.UTC));
+            List<Task> scheduled = new ArrayList<>();
+            try (ResultSet rows = selectScheduled.executeQuery()) {
+                while (rows.next()) {
+                    scheduled.add(cachedOrRestored(rows));
+                }
+            }
+            return scheduled;
+        });
+    }
+
+    @Override
+    public Stream<Task> streamPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        // курсор базы нельзя выпускать из менеджера - отдаем окно целиком
+        return getPrioritizedTasks(from, to).stream();
+    }
+
+    @Override
+    public int addNewTask(Task newTask) {
+        if (hasTimeConflict(newTask))
+            throw new TimeIntersectionException("Задача не добавлена: пересечение по времени");
+        return transaction(() -> insert(newTask));
+    }
+
+    @Override
+    public int addNewSubTask(SubTask newSubTask) {
+        if (hasTimeConflict(newSubTask))
+            throw new TimeIntersectionException("Задача не добавлена: пересечение по времени");
+        if (newSubTask.getParentEpicId() == 0 || !batchValidator.epicExists(newSubTask.getParentEpicId())) {
+            throw new ManagerSaveException("Нельзя добавить подзадачу без привязки к родительскому Epic");
+        }
+        return transaction(() -> insert(newSubTask));
+    }
+
+    @Override
+    public int addNewEpic(Epic newEpic) {
+        return transaction(() -> insert(newEpic));
+    }
+
+    @Override
+    public List<Integer> addAll(Collection<? extends Task> newTasks) {
+        List<Operation> operations = new ArrayList<>(newTasks.size());
+        for (Task newTask : newTasks) {
+            operations.add(Operation.add(newTask));
+        }
+        return applyBatch(operations);
+    }
+
+    // Пакет проверяется целиком до первого изменения и записывается одной транзакцией
+    @Override
+    public List<Integer> applyBatch(List<Operation> operations) {
+        batchValidator.validate(operations);
+        return transaction(() -> {
+            List<Integer> ids = new ArrayList<>(operations.size());
+            for (Operation operation : operations) {
+                ids.add(switch (operation.kind()) {
+                    case ADD -> insert(operation.task());
+                    case UPDATE -> {
+                        store(operation.task());
+                        yield operation.task().getId();
+                    }
+                    case DELETE -> {
+                        remove(operation.id(), operation.type());
+                        yield operation.id();
+                    }
+                });
+            }
+            return ids;
+        });
+    }
+
+    private int insert(Task task) throws SQLException {
+        boolean isNew = task.getId() == -1;
+        if (isNew) task.setId(++idCounter);
+        store(task, isNew);
+        return task.getId();
+    }
+
+    private void store(Task task) throws SQLException {
+        store(task, false);
+    }
+
+    // Добавление или замена задачи: строка переписывается, а кэш и эпики в нем сразу видят новую версию.
+    // Эпик получает подзадачи, сохраненные в базе, - присланный объект не может их потерять или подменить.
+    // У задачи с только что выданным id в базе ничего нет, поэтому такие задачи идут в пакет без чтения.
+    private void store(Task task, boolean isNew) throws SQLException {
+        idCounter = Math.max(idCounter, task.getId());
+        Integer previousEpicId = null;
+        if (task instanceof SubTask && !isNew) {
+            flushWrites();
+            selectType.setInt(1, task.getId());
+            try (ResultSet row = selectType.executeQuery()) {
+                if (row.next() && TYPES[row.getInt(1)] == Type.SUBTASK) previousEpicId = row.getInt(2);
+            }
+        }
+        queueWrite(task);
+        if (task.getStartTime().isPresent()) {
+            maxDurationSeconds = Math.max(maxDurationSeconds, task.getDuration().toSeconds());
+        }
+
+        if (task instanceof SubTask subTask) {
+            if (previousEpicId != null && previousEpicId != subTask.getParentEpicId()
+                    && cache.get(previousEpicId) instanceof Epic previousEpic) {
+                previousEpic.deleteSubTaskFromEpic(subTask.getId());
+            }
+            if (cache.get(subTask.getParentEpicId()) instanceof Epic epic) epic.addSubTaskToEpic(subTask);
+        } else if (task instanceof Epic epic) {
+            List<SubTask> storedSubTasks;
+            if (cache.get(epic.getId()) instanceof Epic cachedEpic) {
+                storedSubTasks = cachedEpic.getEpicSubTasks();
+            } else if (isNew) {
+                storedSubTasks = List.of();
+            } else {
+                flushWrites();
+                storedSubTasks = selectSubTasks(epic.getId());
+            }
+            epic.deleteAllEpicSubTasks();
+            if (!storedSubTasks.isEmpty()) epic.addSubTasksToEpic(storedSubTasks);
+        }
+        cache.put(task.getId(), task);
+    }
+
+    private void queueWrite(Task task) throws SQLException {
+        if (pendingIds.containsKey(task.getId())) flushWrites(); // в пакете строка удаляется и вставляется один раз
+        delete.setInt(1, task.getId());
+        delete.addBatch();
+        bind(task);
+        insert.addBatch();
+        pendingIds.put(task.getId(), true);
+        if (pendingIds.size() == BATCH_SIZE) flushWrites();
+    }
+
+    // Перед любым чтением внутри транзакции: запросы должны видеть уже поставленные в пакет строки
+    private void flushWrites() throws SQLException {
+        if (pendingIds.isEmpty()) return;
+        delete.executeBatch();
+        insert.executeBatch();
+        pendingIds.clear();
+    }
+
+    private void remove(int id, Type type) throws SQLException {
+        flushWrites();
+        historyManager.remove(id);
+        selectType.setInt(1, id);
+        int parentEpicId;
+        try (ResultSet row = selectType.executeQuery()) {
+            if (!row.next() || TYPES[row.getInt(1)] != type) return;
+            parentEpicId = row.getInt(2);
+        }
+        if (type == Type.SUBTASK) {
+            if (cache.get(parentEpicId) instanceof Epic epic) epic.deleteSubTaskFromEpic(id);
+        } else if (type == Type.EPIC) {
+            for (int subTaskId : subTaskIds(id)) {
+                historyManager.remove(subTaskId);
+                cache.remove(subTaskId);
+            }
+            deleteByEpic.setInt(1, id);
+            deleteByEpic.executeUpdate();
+        }
+        delete.setInt(1, id);
+        delete.executeUpdate();
+        cache.remove(id);
+    }
+
+    private boolean hasTimeConflict(Task task) {
+        if (task.getStartTime().isEmpty()) return false;
+        return query(() -> findOverlap(task, null));
+    }
+
+    private boolean findOverlap(Task task, IntObjectHashMap<?> ignoredIds) throws SQLException {
+        long start = task.getStartTime().get().toEpochSecond(ZoneOffset.UTC);
+        long end = task.getEndTime().toEpochSecond(ZoneOffset.UTC);
+        selectOverlaps.setLong(1, end);
+        selectOverlaps.setLong(2, start - maxDurationSeconds - 1);
+        selectOverlaps.setLong(3, start);
+        selectOverlaps.setInt(4, task.getId());
+        try (ResultSet rows = selectOverlaps.executeQuery()) {
+            while (rows.next()) {
+                if (ignoredIds == null || !ignoredIds.containsKey(rows.getInt(1))) return true;
+            }
+        }
+        return false;
+    }
+
+    // Задача из кэша или из базы; прочитанная из базы попадает в кэш
+    private Task find(int id) throws SQLException {
+        Task task = cache.get(id);
+        if (task != null) return task;
+        selectById.setInt(1, id);
+        try (ResultSet row = selectById.executeQuery()) {
+            if (!row.next()) return null;
+            task = restore(row);
+        }
+        if (task instanceof Epic epic) attach(epic, selectSubTasks(id));
+        cache.put(id, task);
+        return task;
+    }
+
+    private Type typeOf(int id) throws SQLException {
+        Task cached = cache.get(id);
+        if (cached != null) return cached.getType();
+        selectType.setInt(1, id);
+        try (ResultSet row = selectType.executeQuery()) {
+            return row.next() ? TYPES[row.getInt(1)] : null;
+        }
+    }
+
+    private List<Integer> subTaskIds(int epicId) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        selectIdsByEpic.setInt(1, epicId);
+        try (ResultSet rows = selectIdsByEpic.executeQuery()) {
+            while (rows.next()) {
+                ids.add(rows.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    private ArrayList<SubTask> selectSubTasks(int epicId) throws SQLException {
+        ArrayList<SubTask> epicSubTasks = new ArrayList<>();
+        selectByEpic.setInt(1, epicId);
+        try (ResultSet rows = selectByEpic.executeQuery()) {
+            while (rows.next()) {
+                epicSubTasks.add((SubTask) cachedOrRestored(rows));
+            }
+        }
+        return epicSubTasks;
+    }
+
+    // Полные выборки не вытесняют кэш: задачи, которых в нем нет, возвращаются новыми объектами
+    private <T extends Task> ArrayList<T> selectAll(Type type, Class<T> taskClass) throws SQLException {
+        ArrayList<T> selected = new ArrayList<>();
+        selectByType.setInt(1, type.ordinal());
+        try (ResultSet rows = selectByType.executeQuery()) {
+            while (rows.next()) {
+                selected.add(taskClass.cast(cachedOrRestored(rows)));
+            }
+        }
+        return selected;
+    }
+
+    private Task cachedOrRestored(ResultSet row) throws SQLException {
+        Task cached = cache.get(row.getInt(1));
+        return cached != null ? cached : restore(row);
+    }
+
+    private void bind(Task task) throws SQLException {
+        Type type = task.getType();
+        insert.setInt(1, task.getId());
+        insert.setInt(2, type.ordinal());
+        insert.setString(3, task.getTitle());
+        insert.setString(4, task.getDescription());
+        LocalDateTime startTime = type == Type.EPIC ? null : task.getStartTime().orElse(null);
+        if (type == Type.EPIC) {
+            insert.setNull(5, Types.SMALLINT);
+            insert.setLong(6, 0);
+        } else {
+            insert.setInt(5, task.getStatus().ordinal());
+            insert.setLong(6, task.getDuration().toMinutes());
+        }
+        if (startTime == null) {
+            insert.setNull(7, Types.BIGINT);
+            insert.setNull(8, Types.BIGINT);
+        } else {
+            insert.setLong(7, startTime.toEpochSecond(ZoneOffset.UTC));
+            insert.setLong(8, task.getEndTime().toEpochSecond(ZoneOffset.UTC));
+        }
+        if (type == Type.SUBTASK) {
+            insert.setInt(9, ((SubTask) task).getParentEpicId());
+        } else {
+            insert.setNull(9, Types.INTEGER);
+        }
+    }
+
+    private static Task restore(ResultSet row) throws SQLException {
+        int id = row.getInt(1);
+        Type type = TYPES[row.getInt(2)];
+        String title = row.getString(3);
+        String description = row.getString(4);
+        Task task = switch (type) {
+            case TASK -> new Task(title, description, id);
+            case SUBTASK -> new SubTask(title, description, row.getInt(8), id);
+            case EPIC -> new Epic(title, description, id);
+        };
+        if (type == Type.EPIC) return task;
+
+        task.setStatus(STATUSES[row.getInt(5)]);
+        long durationMinutes = row.getLong(6);
+        if (durationMinutes != 0) task.setDuration(Duration.ofMinutes(durationMinutes));
+        long startTime = row.getLong(7);
+        if (!row.wasNull()) task.setStartTime(LocalDateTime.ofEpochSecond(startTime, 0, ZoneOffset.UTC));
+        return task;
+    }
+
+    private <R> R query(SqlAction<R> action) {
+        try {
+            return action.run();
+        } catch (SQLException e) {
+            throw new ManagerSaveException("Возникла ошибка чтения из базы данных: " + e.getMessage());
+        }
+    }
+
+    // Изменения кэша внутри отмененной транзакции не откатить, поэтому при ошибке кэш сбрасывается
+    private <R> R transaction(SqlAction<R> action) {
+        try {
+            R result = action.run();
+            flushWrites();
+            connection.commit();
+            return result;
+        } catch (SQLException e) {
+            rollback();
+            cache.clear();
+            throw new ManagerSaveException("Возникла ошибка сохранения в базу данных: " + e.getMessage());
+        }
+    }
+
+    private void rollback() {
+        try {
+            pendingIds.clear();
+            delete.clearBatch();
+            insert.clearBatch();
+            connection.rollback();
+        } catch (SQLException ignored) {
+            // исходная ошибка важнее
+        }
+    }
+
+    private interface SqlAction<R> {
+        R run() throws SQLException;
+    }
+}
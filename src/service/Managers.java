@@ -6,72 +6,121 @@ import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
+import model.Epic;
+import model.SubTask;
+import model.Task;
+import model.Type;
 
+import java.io.File;
 import java.io.IOException;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 public class Managers {
+    private static final Gson GSON = createGson(false);
+    private static final Gson EXPANDED_GSON = createGson(true);
 
     public static TaskManager getDefault() {
         return new InMemoryTaskManager();
     }
 
+    public static TaskManager getConcurrent() {
+        return new ConcurrentTaskManager();
+    }
+
+    // Менеджер с автосохранением: существующий файл загружается, новые снимки пишутся в заданном формате
+    public static FileBackedTaskManager getFileBacked(File file, SnapshotFormat format) {
+        if (file.exists()) {
+            return FileBackedTaskManager.loadFromFile(file, PersistenceMode.SNAPSHOT, CompactionPolicy.defaults(),
+                    WritePolicy.fsync(), format);
+        }
+        return new FileBackedTaskManager(file, PersistenceMode.SNAPSHOT, CompactionPolicy.defaults(),
+                WritePolicy.fsync(), format);
+    }
+
+    // Менеджер поверх отображенного в память файла: изменения пишутся на месте, перезапуск не разбирает CSV
+    public static MappedTaskManager getMapped(File file) {
+        return new MappedTaskManager(file);
+    }
+
+    // Менеджер со страничным файлом: сохранение переписывает только страницы измененных задач
+    public static PagedTaskManager getPaged(File file) {
+        return new PagedTaskManager(file);
+    }
+
+    // Менеджер поверх встроенной базы данных; драйвер (H2, SQLite) должен быть в classpath
+    public static JdbcTaskManager getJdbc(String url) {
+        return new JdbcTaskManager(url);
+    }
+
     public static HistoryManager getDefaultHistory() {
         return new InMemoryHistoryManager();
     }
 
+    // Один экземпляр на весь процесс: Gson потокобезопасен, а адаптеры собираются один раз. Задачи пишутся
+    // компактно адаптером без отражения, подзадачи эпика - списком id
     public static Gson getGson() {
+        return GSON;
+    }
+
+    // То же, но подзадачи эпика выводятся целиком - для запросов с ?expand=subtasks
+    public static Gson getExpandedGson() {
+        return EXPANDED_GSON;
+    }
+
+    private static Gson createGson(boolean expandSubTasks) {
+        return new GsonBuilder()
+                .serializeNulls()
+                .registerTypeAdapter(Task.class, new TaskTypeAdapter(Type.TASK, expandSubTasks))
+                .registerTypeAdapter(SubTask.class, new TaskTypeAdapter(Type.SUBTASK, expandSubTasks))
+                .registerTypeAdapter(Epic.class, new TaskTypeAdapter(Type.EPIC, expandSubTasks))
+                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .registerTypeAdapter(Duration.class, new DurationTypeAdapter())
+                .create();
+    }
 
-        class LocalDateTimeAdapter extends TypeAdapter<LocalDateTime> {
-            private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+    static class LocalDateTimeAdapter extends TypeAdapter<LocalDateTime> {
+        private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
 
-            @Override
-            public void write(final JsonWriter jsonWriter, final LocalDateTime localDateTime) throws IOException {
-                if (localDateTime == null) {
-                    jsonWriter.nullValue();
-                } else {
-                    jsonWriter.value(localDateTime.format(formatter));
-                }
+        @Override
+        public void write(final JsonWriter jsonWriter, final LocalDateTime localDateTime) throws IOException {
+            if (localDateTime == null) {
+                jsonWriter.nullValue();
+            } else {
+                jsonWriter.value(localDateTime.format(formatter));
             }
+        }
 
-            @Override
-            public LocalDateTime read(final JsonReader jsonReader) throws IOException {
-                if (jsonReader.peek() == JsonToken.NULL) {
-                    jsonReader.nextNull();
-                    return null;
-                }
-                return LocalDateTime.parse(jsonReader.nextString(), formatter);
+        @Override
+        public LocalDateTime read(final JsonReader jsonReader) throws IOException {
+            if (jsonReader.peek() == JsonToken.NULL) {
+                jsonReader.nextNull();
+                return null;
             }
+            return LocalDateTime.parse(jsonReader.nextString(), formatter);
         }
+    }
 
-        class DurationTypeAdapter extends TypeAdapter<Duration> {
+    static class DurationTypeAdapter extends TypeAdapter<Duration> {
 
-            @Override
-            public void write(JsonWriter jsonWriter, Duration duration) throws IOException {
-                if (duration == null) {
-                    jsonWriter.nullValue();
-                } else {
-                    jsonWriter.value(duration.toString());
-                }
+        @Override
+        public void write(JsonWriter jsonWriter, Duration duration) throws IOException {
+            if (duration == null) {
+                jsonWriter.nullValue();
+            } else {
+                jsonWriter.value(duration.toString());
             }
+        }
 
-            @Override
-            public Duration read(JsonReader jsonReader) throws IOException {
-                if (jsonReader.peek() == null) {
-                    return null;
-                }
-                String durationString = jsonReader.nextString();
-                return Duration.parse(durationString);
+        @Override
+        public Duration read(JsonReader jsonReader) throws IOException {
+            if (jsonReader.peek() == JsonToken.NULL) {
+                jsonReader.nextNull();
+                return null;
             }
+            String durationString = jsonReader.nextString();
+            return Duration.parse(durationString);
         }
-
-        return new GsonBuilder()
-                .serializeNulls()
-                .setPrettyPrinting()
-                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
-                .registerTypeAdapter(Duration.class, new DurationTypeAdapter())
-                .create();
     }
 }
@@ -0,0 +1,484 @@
+package service;
+
+import exeptions.ManagerSaveException;
+import exeptions.TimeIntersectionException;
+import model.Epic;
+import model.SubTask;
+import model.Task;
+import model.Type;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+// Менеджер, чье состояние хранится в отображенном в память файле слотов (см. MappedTaskStore).
+// Каждое изменение пишет только слоты затронутых задач. Объекты задач в куче не накапливаются: в памяти
+// только индексы из чисел (подзадачи эпиков, расписание по времени начала) и ограниченный кэш последних
+// задач (LRU), остальное читается из слота по запросу. Задача из кэша - тот же объект, что вернул или получил
+// менеджер, и эпик в кэше пересчитывается при изменении своих подзадач. Статус и время эпика выводятся из подзадач.
+// При открытии строится только индекс подзадач эпиков. Расписание (около сотни байт кучи на задачу со временем)
+// строится одним проходом по слотам при первом запросе по времени: списке по приоритету или проверке пересечений.
+public class MappedTaskManager implements TaskManager, AutoCloseable {
+    static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private final MappedTaskStore store;
+    private final HistoryManager historyManager = Managers.getDefaultHistory();
+    private final Map<Integer, Task> cache;
+    private final IntObjectHashMap<TreeSet<Integer>> subTaskIdsByEpic = new IntObjectHashMap<>();
+    private TreeSet<ScheduleEntry> schedule; // null - еще не построено
+    private final BatchValidator batchValidator = new BatchValidator() {
+        @Override
+        boolean epicExists(int id) {
+            return store.typeOf(id) == Type.EPIC;
+        }
+
+        @Override
+        void forEachSubTaskId(int epicId, IntConsumer action) {
+            subTaskIds(epicId).forEach(action::accept);
+        }
+
+        @Override
+        boolean overlapsStored(Task task, IntObjectHashMap<?> ignoredIds) {
+            return findOverlap(task, ignoredIds);
+        }
+    };
+    private int idCounter;
+    private long maxDurationSeconds; // не уменьшается: это только граница для поиска пересечений
+
+    public MappedTaskManager(File file) {
+        this(file, DEFAULT_CACHE_SIZE);
+    }
+
+    public MappedTaskManager(File file, int cacheSize) {
+        if (cacheSize < 1) throw new IllegalArgumentException("Некорректный размер кэша: " + cacheSize);
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Task> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        store = new MappedTaskStore(file.toPath());
+        for (int id : store.ids()) {
+            idCounter = Math.max(idCounter, id);
+            index(id);
+        }
+    }
+
+    // Сбрасывает отображенные страницы на диск
+    public void flush() {
+        store.force();
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    // Сколько задач сейчас в кэше
+    int getCachedCount() {
+        return cache.size();
+    }
+
+    boolean isScheduleBuilt() {
+        return schedule != null;
+    }
+
+    @Override
+    public ArrayList<Task> getAllTasks() {
+        return selectAll(Type.TASK, Task.class);
+    }
+
+    @Override
+    public ArrayList<SubTask> getAllSubTasks() {
+        return selectAll(Type.SUBTASK, SubTask.class);
+    }
+
+    @Override
+    public ArrayList<Epic> getAllEpics() {
+        ArrayList<Epic> allEpics = selectAll(Type.EPIC, Epic.class);
+        for (Epic epic : allEpics) {
+            if (cache.get(epic.getId()) != epic) attach(epic, readSubTasks(epic.getId()));
+        }
+        return allEpics;
+    }
+
+    private static void attach(Epic epic, List<SubTask> epicSubTasks) {
+        if (!epicSubTasks.isEmpty()) epic.addSubTasksToEpic(epicSubTasks);
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        deleteAllOfType(Type.TASK);
+    }
+
+    @Override
+    public void deleteAllSubTasks() {
+        deleteAllOfType(Type.SUBTASK);
+        for (Task task : cache.values()) {
+            if (task instanceof Epic epic) epic.deleteAllEpicSubTasks();
+        }
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        deleteAllOfType(Type.SUBTASK);
+        deleteAllOfType(Type.EPIC);
+    }
+
+    private void deleteAllOfType(Type type) {
+        for (Task task : historyManager.getHistory()) {
+            if (task.getType() == type) historyManager.remove(task.getId());
+        }
+        cache.values().removeIf(task -> task.getType() == type);
+        for (int id : idsOfType(type)) {
+            unindex(id);
+            store.remove(id);
+        }
+    }
+
+    @Override
+    public Optional<Task> getTaskById(int id) {
+        return findViewed(id, Type.TASK, Task.class);
+    }
+
+    @Override
+    public Optional<SubTask> getSubTaskById(int id) {
+        return findViewed(id, Type.SUBTASK, SubTask.class);
+    }
+
+    @Override
+    public Optional<Epic> getEpicById(int id) {
+        return findViewed(id, Type.EPIC, Epic.class);
+    }
+
+    private <T extends Task> Optional<T> findViewed(int id, Type type, Class<T> taskClass) {
+        Task task = find(id);
+        if (task == null || task.getType() != type) return Optional.empty();
+        historyManager.add(task);
+        return Optional.of(taskClass.cast(task));
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        if (hasTimeConflict(task)) throw new TimeIntersectionException("Задача не обновлена: пересечение по времени");
+        if (task.getType() != Type.TASK) return;
+        save(task, false);
+    }
+
+    @Override
+    public void updateSubTask(SubTask subTask) {
+        if (hasTimeConflict(subTask))
+            throw new TimeIntersectionException("Задача не обновлена: пересечение по времени");
+        if (subTask.getParentEpicId() == 0 || !batchValidator.epicExists(subTask.getParentEpicId())) {
+            throw new ManagerSaveException("У подзадачи должен быть родительский Epic");
+        }
+        save(subTask, false);
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        save(epic, false);
+    }
+
+    @Override
+    public void deleteTask(int id) {
+        remove(id, Type.TASK);
+    }
+
+    @Override
+    public void deleteSubTask(int id) {
+        remove(id, Type.SUBTASK);
+    }
+
+    @Override
+    public void deleteEpic(int id) {
+        remove(id, Type.EPIC);
+    }
+
+    @Override
+    public ArrayList<SubTask> getEpicSubTasks(int id) {
+        if (cache.get(id) instanceof Epic epic) return epic.getEpicSubTasks();
+        if (store.typeOf(id) != Type.EPIC) {
+            throw new NoSuchElementException("Эпика с таким id не существует в менеджере");
+        }
+        return readSubTasks(id);
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return getPrioritizedTasks(null, null);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        return streamPrioritizedTasks(from, to).toList();
+    }
+
+    @Override
+    public Stream<Task> streamPrioritizedTasks(LocalDateTime from, LocalDateTime to) {
+        return window(from, to).stream().map(entry -> cachedOrRead(entry.id()));
+    }
+
+    // Задачи, начинающиеся в [from, to); null - без границы
+    private NavigableSet<ScheduleEntry> window(LocalDateTime from, LocalDateTime to) {
+        long fromSeconds = from == null ? Long.MIN_VALUE : toSeconds(from);
+        long toSeconds = to == null ? Long.MAX_VALUE : toSeconds(to);
+        return schedule().subSet(ScheduleEntry.first(fromSeconds), true, ScheduleEntry.first(toSeconds), false);
+    }
+
+    @Override
+    public int addNewTask(Task newTask) {
+        if (hasTimeConflict(newTask))
+            throw new TimeIntersectionException("Задача не добавлена: пересечение по времени");
+        return insert(newTask);
+    }
+
+    @Override
+    public int addNewSubTask(SubTask newSubTask) {
+        if (hasTimeConflict(newSubTask))
+            throw new TimeIntersectionException("Задача не добавлена: пересечение по времени");
+        if (newSubTask.getParentEpicId() == 0 || !batchValidator.epicExists(newSubTask.getParentEpicId())) {
+            throw new ManagerSaveException("Нельзя добавить подзадачу без привязки к родительскому Epic");
+        }
+        return insert(newSubTask);
+    }
+
+    @Override
+    public int addNewEpic(Epic newEpic) {
+        return insert(newEpic);
+    }
+
+    @Override
+    public List<Integer> addAll(Collection<? extends Task> newTasks) {
+        List<Operation> operations = new ArrayList<>(newTasks.size());
+        for (Task newTask : newTasks) {
+            operations.add(Operation.add(newTask));
+        }
+        return applyBatch(operations);
+    }
+
+    // Пакет проверяется целиком до первого изменения
+    @Override
+    public List<Integer> applyBatch(List<Operation> operations) {
+        batchValidator.validate(operations);
+        List<Integer> ids = new ArrayList<>(operations.size());
+        for (Operation operation : operations) {
+            ids.add(switch (operation.kind()) {
+                case ADD -> insert(operation.task());
+                case UPDATE -> {
+                    save(operation.task(), false);
+                    yield operation.task().getId();
+                }
+                case DELETE -> {
+                    remove(operation.id(), operation.type());
+                    yield operation.id();
+                }
+            });
+        }
+        return ids;
+    }
+
+    private int insert(Task task) {
+        boolean isNew = task.getId() == -1;
+        if (isNew) task.setId(++idCounter);
+        save(task, isNew);
+        return task.getId();
+    }
+
+    // Добавление или замена задачи: слот пишется заново, а кэш и эпики в нем сразу видят новую версию.
+    // Эпик получает подзадачи, сохраненные в хранилище, - присланный объект не может их потерять или подменить.
+    private void save(Task task, boolean isNew) {
+        idCounter = Math.max(idCounter, task.getId());
+        int previousEpicId = 0;
+        if (!isNew && store.typeOf(task.getId()) == Type.SUBTASK) previousEpicId = store.parentEpicIdOf(task.getId());
+        if (!isNew) unindex(task.getId());
+        store.put(task);
+        index(task.getId());
+
+        if (task instanceof SubTask subTask) {
+            if (previousEpicId != 0 && previousEpicId != subTask.getParentEpicId()
+                    && cache.get(previousEpicId) instanceof Epic previousEpic) {
+                previousEpic.deleteSubTaskFromEpic(subTask.getId());
+            }
+            if (cache.get(subTask.getParentEpicId()) instanceof Epic epic) epic.addSubTaskToEpic(subTask);
+        } else if (task instanceof Epic epic) {
+            List<SubTask> storedSubTasks;
+            if (cache.get(epic.getId()) instanceof Epic cachedEpic) {
+                storedSubTasks = cachedEpic.getEpicSubTasks();
+            } else {
+                storedSubTasks = readSubTasks(epic.getId());
+            }
+            epic.deleteAllEpicSubTasks();
+            attach(epic, storedSubTasks);
+        }
+        cache.put(task.getId(), task);
+    }
+
+    private void remove(int id, Type type) {
+        if (store.typeOf(id) != type) return;
+        historyManager.remove(id);
+        if (type == Type.SUBTASK) {
+            if (cache.get(store.parentEpicIdOf(id)) instanceof Epic epic) epic.deleteSubTaskFromEpic(id);
+        } else if (type == Type.EPIC) {
+            for (int subTaskId : subTaskIds(id)) {
+                historyManager.remove(subTaskId);
+                cache.remove(subTaskId);
+                unindex(subTaskId);
+                store.remove(subTaskId);
+            }
+        }
+        unindex(id);
+        store.remove(id);
+        cache.remove(id);
+    }
+
+    // Индексы строятся по слоту задачи и снимаются по нему же - до того, как слот заменят
+    private void index(int id) {
+        Type type = store.typeOf(id);
+        if (type == Type.EPIC) return;
+        if (type == Type.SUBTASK) {
+            int epicId = store.parentEpicIdOf(id);
+            TreeSet<Integer> epicSubTaskIds = subTaskIdsByEpic.get(epicId);
+            if (epicSubTaskIds == null) {
+                epicSubTaskIds = new TreeSet<>();
+                subTaskIdsByEpic.put(epicId, epicSubTaskIds);
+            }
+            epicSubTaskIds.add(id);
+        }
+        if (schedule != null) addToSchedule(id);
+    }
+
+    private TreeSet<ScheduleEntry> schedule() {
+        if (schedule == null) {
+            schedule = new TreeSet<>();
+            for (int id : store.ids()) {
+                if (store.typeOf(id) != Type.EPIC) addToSchedule(id);
+            }
+        }
+        return schedule;
+    }
+
+    private void addToSchedule(int id) {
+        long start = store.startOf(id);
+        if (start == MappedTaskStore.NO_TIME) return;
+        long end = store.endOf(id);
+        schedule.add(new ScheduleEntry(start, end, id));
+        maxDurationSeconds = Math.max(maxDurationSeconds, end - start);
+    }
+
+    private void unindex(int id) {
+        Type type = store.typeOf(id);
+        if (type == null || type == Type.EPIC) return;
+        if (type == Type.SUBTASK) {
+            int epicId = store.parentEpicIdOf(id);
+            TreeSet<Integer> epicSubTaskIds = subTaskIdsByEpic.get(epicId);
+            if (epicSubTaskIds != null) {
+                epicSubTaskIds.remove(id);
+                if (epicSubTaskIds.isEmpty()) subTaskIdsByEpic.remove(epicId);
+            }
+        }
+        if (schedule == null) return;
+        long start = store.startOf(id);
+        if (start != MappedTaskStore.NO_TIME) schedule.remove(new ScheduleEntry(start, store.endOf(id), id));
+    }
+
+    private boolean hasTimeConflict(Task task) {
+        if (task.getStartTime().isEmpty()) return false;
+        return findOverlap(task, null);
+    }
+
+    // Кандидаты - задачи, начавшиеся до конца новой; раньше start - самая большая длительность начинать не могут
+    private boolean findOverlap(Task task, IntObjectHashMap<?> ignoredIds) {
+        long start = toSeconds(task.getStartTime().get());
+        long end = toSeconds(task.getEndTime());
+        for (ScheduleEntry entry : schedule().headSet(ScheduleEntry.first(end), false).descendingSet()) {
+            if (entry.start() < start - maxDurationSeconds) break;
+            if (entry.end() > start && entry.id() != task.getId()
+                    && (ignoredIds == null || !ignoredIds.containsKey(entry.id()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Задача из кэша или из хранилища; прочитанная из хранилища попадает в кэш
+    private Task find(int id) {
+        Task task = cache.get(id);
+        if (task != null) return task;
+        task = store.read(id);
+        if (task == null) return null;
+        if (task instanceof Epic epic) attach(epic, readSubTasks(id));
+        cache.put(id, task);
+        return task;
+    }
+
+    private List<Integer> subTaskIds(int epicId) {
+        TreeSet<Integer> epicSubTaskIds = subTaskIdsByEpic.get(epicId);
+        return epicSubTaskIds == null ? List.of() : new ArrayList<>(epicSubTaskIds);
+    }
+
+    private ArrayList<SubTask> readSubTasks(int epicId) {
+        ArrayList<SubTask> epicSubTasks = new ArrayList<>();
+        for (int subTaskId : subTaskIds(epicId)) {
+            epicSubTasks.add((SubTask) cachedOrRead(subTaskId));
+        }
+        return epicSubTasks;
+    }
+
+    private int[] idsOfType(Type type) {
+        int[] ids = Arrays.stream(store.ids()).filter(id -> store.typeOf(id) == type).toArray();
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    // Полные выборки не вытесняют кэш: задачи, которых в нем нет, возвращаются новыми объектами
+    private <T extends Task> ArrayList<T> selectAll(Type type, Class<T> taskClass) {
+        int[] ids = idsOfType(type);
+        ArrayList<T> selected = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            selected.add(taskClass.cast(cachedOrRead(id)));
+        }
+        return selected;
+    }
+
+    private Task cachedOrRead(int id) {
+        Task cached = cache.get(id);
+        return cached != null ? cached : store.read(id);
+    }
+
+    private static long toSeconds(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    // Запись расписания: порядок по началу, затем по id
+    private record ScheduleEntry(long start, long end, int id) implements Comparable<ScheduleEntry> {
+
+        // Граница поиска: раньше всех записей с этим началом
+        static ScheduleEntry first(long start) {
+            return new ScheduleEntry(start, start, Integer.MIN_VALUE);
+        }
+
+        @Override
+        public int compareTo(ScheduleEntry other) {
+            int byStart = Long.compare(start, other.start);
+            return byStart != 0 ? byStart : Integer.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package service;
+
+import exeptions.ManagerSaveException;
+import model.Epic;
+import model.Status;
+import model.SubTask;
+import model.Task;
+import model.Type;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+// Хранилище задач в отображенных в память файлах: основной файл - заголовок и слоты фиксированного размера,
+// <file>.strings - куча строк. В памяти держится только индекс id -> слот (два int на задачу в IntIntHashMap),
+// задача читается из слота по запросу.
+// Живой слот никогда не переписывается: новая версия задачи целиком пишется в свободный слот (и в свободное
+// место кучи), затем публикуется одной записью слова версии, и только после этого освобождается прежний слот.
+// Поэтому после падения процесса каждая задача - либо целиком старая, либо целиком новая версия; если живыми
+// остались обе, при открытии побеждает большая версия. От сбоя питания защищает только force().
+class MappedTaskStore implements AutoCloseable {
+    static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final int MAGIC = 0x544B4D53; // "TKMS"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 64;
+    private static final int INITIAL_SLOTS = 1024;
+    private static final int INITIAL_HEAP = 1 << 16;
+
+    // заголовок
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_SLOT_COUNT = 8;
+    private static final int HEADER_HEAP_TOP = 16;
+
+    // поля слота; версия 0 - слот свободен
+    private static final int SLOT_VERSION = 0;
+    private static final int SLOT_TYPE = 8;
+    private static final int SLOT_STATUS = 9;
+    private static final int SLOT_ID = 12;
+    private static final int SLOT_EPIC = 16;
+    private static final int SLOT_TITLE_LENGTH = 20;
+    private static final int SLOT_DURATION = 24;
+    private static final int SLOT_START = 32;
+    private static final int SLOT_TITLE_OFFSET = 40;
+    private static final int SLOT_DESCRIPTION_OFFSET = 48;
+    private static final int SLOT_DESCRIPTION_LENGTH = 56;
+
+    private static final Type[] TYPES = Type.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private final FileChannel slotChannel;
+    private final FileChannel heapChannel;
+    private MappedByteBuffer slots;
+    private MappedByteBuffer heap;
+    private final IntIntHashMap slotById = new IntIntHashMap();
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount; // слоты выше этой границы ни разу не использовались
+    private long heapTop;
+    private long lastVersion;
+
+    MappedTaskStore(Path path) {
+        try {
+            slotChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            heapChannel = FileChannel.open(Path.of(path + ".strings"), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean created = slotChannel.size() == 0;
+            slots = map(slotChannel, Math.max(slotChannel.size(), HEADER_SIZE + (long) INITIAL_SLOTS * SLOT_SIZE));
+            heap = map(heapChannel, Math.max(heapChannel.size(), INITIAL_HEAP));
+            if (created) {
+                slots.putInt(HEADER_MAGIC, MAGIC);
+                slots.putInt(HEADER_VERSION, VERSION);
+            } else if (slots.getInt(HEADER_MAGIC) != MAGIC || slots.getInt(HEADER_VERSION) != VERSION) {
+                throw new ManagerSaveException("Файл не является хранилищем задач: " + path);
+            }
+            slotCount = slots.getInt(HEADER_SLOT_COUNT);
+            heapTop = slots.getLong(HEADER_HEAP_TOP);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка открытия хранилища задач");
+        }
+        indexSlots();
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) throw new ManagerSaveException("Хранилище задач больше 2 ГиБ не поддерживается");
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    // Один проход по слотам без чтения строк: индекс id -> слот и список свободных слотов.
+    // Две живые версии одной задачи остаются после падения между публикацией и освобождением - старшая побеждает.
+    private void indexSlots() {
+        slotById.ensureCapacity(slotCount);
+        for (int slot = 0; slot < slotCount; slot++) {
+            int base = slotBase(slot);
+            long version = slots.getLong(base + SLOT_VERSION);
+            if (version == 0) {
+                pushFree(slot);
+                continue;
+            }
+            lastVersion = Math.max(lastVersion, version);
+            int id = slots.getInt(base + SLOT_ID);
+            int other = slotById.get(id);
+            if (other != IntIntHashMap.NO_VALUE && slots.getLong(slotBase(other) + SLOT_VERSION) > version) {
+                free(slot);
+                continue;
+            }
+            slotById.put(id, slot);
+            if (other != IntIntHashMap.NO_VALUE) free(other);
+        }
+    }
+
+    int size() {
+        return slotById.size();
+    }
+
+    int[] ids() {
+        int[] ids = new int[slotById.size()];
+        int[] count = new int[1];
+        slotById.forEachKey(id -> ids[count[0]++] = id);
+        return ids;
+    }
+
+    // null, если задачи с таким id нет
+    Type typeOf(int id) {
+        int slot = slotById.get(id);
+        return slot == IntIntHashMap.NO_VALUE ? null : TYPES[slots.get(slotBase(slot) + SLOT_TYPE)];
+    }
+
+    int parentEpicIdOf(int id) {
+        return slots.getInt(slotBase(slotById.get(id)) + SLOT_EPIC);
+    }
+
+    // Начало в секундах от эпохи (UTC) или NO_TIME
+    long startOf(int id) {
+        return slots.getLong(slotBase(slotById.get(id)) + SLOT_START);
+    }
+
+    long endOf(int id) {
+        int base = slotBase(slotById.get(id));
+        long start = slots.getLong(base + SLOT_START);
+        return start == NO_TIME ? NO_TIME : start + slots.getLong(base + SLOT_DURATION) * 60;
+    }
+
+    // Новый объект задачи из слота или null; эпик - без подзадач, его статус и время выводятся из них
+    Task read(int id) {
+        int slot = slotById.get(id);
+        if (slot == IntIntHashMap.NO_VALUE) return null;
+        int base = slotBase(slot);
+        Type type = TYPES[slots.get(base + SLOT_TYPE)];
+        String title = readString(slots.getLong(base + SLOT_TITLE_OFFSET), slots.getInt(base + SLOT_TITLE_LENGTH));
+        String description = readString(slots.getLong(base + SLOT_DESCRIPTION_OFFSET),
+                slots.getInt(base + SLOT_DESCRIPTION_LENGTH));
+        Task task = switch (type) {
+            case TASK -> new Task(title, description, id);
+            case SUBTASK -> new SubTask(title, description, slots.getInt(base + SLOT_EPIC), id);
+            case EPIC -> new Epic(title, description, id);
+        };
+        if (type != Type.EPIC) {
+            task.setStatus(STATUSES[slots.get(base + SLOT_STATUS)]);
+            task.setDuration(Duration.ofMinutes(slots.getLong(base + SLOT_DURATION)));
+            long startTime = slots.getLong(base + SLOT_START);
+            if (startTime != NO_TIME) task.setStartTime(LocalDateTime.ofEpochSecond(startTime, 0, ZoneOffset.UTC));
+        }
+        return task;
+    }
+
+    void put(Task task) {
+        int slot = allocateSlot();
+        int base = slotBase(slot);
+        byte[] title = encode(task.getTitle());
+        byte[] description = encode(task.getDescription());
+        // свободный слот помнит место своих строк: на него больше никто не ссылается, поэтому оно переиспользуется
+        writeString(title, base + SLOT_TITLE_OFFSET, base + SLOT_TITLE_LENGTH);
+        writeString(description, base + SLOT_DESCRIPTION_OFFSET, base + SLOT_DESCRIPTION_LENGTH);
+        slots.put(base + SLOT_TYPE, (byte) task.getType().ordinal());
+        slots.put(base + SLOT_STATUS, (byte) task.getStatus().ordinal());
+        slots.putInt(base + SLOT_ID, task.getId());
+        slots.putInt(base + SLOT_EPIC, task instanceof SubTask subTask ? subTask.getParentEpicId() : 0);
+        slots.putLong(base + SLOT_DURATION, task.getDuration().toMinutes());
+        slots.putLong(base + SLOT_START, task.getStartTime()
+                .map(startTime -> startTime.toEpochSecond(ZoneOffset.UTC))
+                .orElse(NO_TIME));
+
+        slots.putLong(base + SLOT_VERSION, ++lastVersion); // публикация новой версии
+        int previous = slotById.put(task.getId(), slot);
+        if (previous != IntIntHashMap.NO_VALUE) free(previous);
+    }
+
+    void remove(int id) {
+        int slot = slotById.remove(id);
+        if (slot != IntIntHashMap.NO_VALUE) free(slot);
+    }
+
+    void force() {
+        slots.force();
+        heap.force();
+    }
+
+    @Override
+    public void close() {
+        force();
+        try {
+            slotChannel.close();
+            heapChannel.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка закрытия хранилища задач");
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) return freeSlots[--freeCount];
+        int slot = slotCount;
+        growSlots(slotBase(slot + 1));
+        slotCount++;
+        slots.putInt(HEADER_SLOT_COUNT, slotCount);
+        return slot;
+    }
+
+    private void free(int slot) {
+        slots.putLong(slotBase(slot) + SLOT_VERSION, 0);
+        pushFree(slot);
+    }
+
+    private void pushFree(int slot) {
+        if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = slot;
+    }
+
+    private static int slotBase(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    // Строка пишется в прежнее место свободного слота, если помещается, иначе дописывается в конец кучи.
+    // Смещение записывается раньше длины: после падения длина не может оказаться больше места по смещению.
+    private void writeString(byte[] bytes, int offsetField, int lengthField) {
+        if (bytes == null) {
+            slots.putInt(lengthField, -1);
+            return;
+        }
+        long offset = slots.getLong(offsetField);
+        if (bytes.length > slots.getInt(lengthField)) {
+            offset = heapTop;
+            growHeap(heapTop + bytes.length);
+            heapTop += bytes.length;
+            slots.putLong(HEADER_HEAP_TOP, heapTop);
+            slots.putLong(offsetField, offset);
+        }
+        heap.put((int) offset, bytes);
+        slots.putInt(lengthField, bytes.length);
+    }
+
+    private String readString(long offset, int length) {
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        heap.get((int) offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Отображение растет вдвое, чтобы перестраивать его редко
+    private void growSlots(long required) {
+        if (required > slots.capacity()) slots = remap(slotChannel, slots, required);
+    }
+
+    private void growHeap(long required) {
+        if (required > heap.capacity()) heap = remap(heapChannel, heap, required);
+    }
+
+    private static MappedByteBuffer remap(FileChannel channel, MappedByteBuffer buffer, long required) {
+        try {
+            return map(channel, Math.min(Integer.MAX_VALUE, Math.max(required, (long) buffer.capacity() * 2)));
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка расширения хранилища задач");
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package service;
+
+import model.Task;
+import model.Type;
+
+// Одна операция пакетного изменения для TaskManager.applyBatch
+public record Operation(Kind kind, Type type, Task task, int id) {
+
+    public static Operation add(Task task) {
+        return new Operation(Kind.ADD, task.getType(), task, task.getId());
+    }
+
+    public static Operation update(Task task) {
+        return new Operation(Kind.UPDATE, task.getType(), task, task.getId());
+    }
+
+    public static Operation delete(Type type, int id) {
+        return new Operation(Kind.DELETE, type, null, id);
+    }
+
+    public enum Kind {
+        ADD,
+        UPDATE,
+        DELETE
+    }
+}
@@ -0,0 +1,36 @@
+package service;
+
+import model.Task;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+// Менеджер со страничным файлом (см. PagedTaskStore): каждое изменение переписывает только страницы
+// затронутых задач, поэтому цена сохранения зависит от размера изменения, а не от числа задач.
+public final class PagedTaskManager extends ChangeTrackingTaskManager implements AutoCloseable {
+    private final PagedTaskStore store;
+
+    public PagedTaskManager(File file) {
+        this.store = new PagedTaskStore(file.toPath());
+        List<Task> restoredTasks = new ArrayList<>();
+        store.load(restoredTasks::add);
+        restoreAll(restoredTasks);
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    @Override
+    protected void writeChanges(Set<Integer> changedIds) {
+        store.write(changedIds, this::currentTask);
+    }
+
+    // Сколько страниц переписало последнее изменение
+    int getLastFlushPages() {
+        return store.getLastFlushPages();
+    }
+}
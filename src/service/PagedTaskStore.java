@@ -0,0 +1,353 @@
+package service;
+
+import exeptions.ManagerSaveException;
+import model.Task;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+
+// Файл из страниц по 8 КиБ: нулевая - заголовок, остальные - записи задач в двоичном формате снимка.
+// Сохранение переписывает только страницы, где лежат измененные задачи; запись, которая не помещается в
+// страницу, занимает несколько подряд идущих страниц. Удаленная запись просто пропадает из своей страницы
+// при ее перезаписи, а опустевшие страницы переиспользуются.
+// Страницы сначала целиком пишутся в журнал <file>.journal и только потом на место, поэтому оборванная
+// запись страницы после сбоя восстанавливается из журнала.
+class PagedTaskStore implements AutoCloseable {
+    static final int PAGE_SIZE = 8192;
+    private static final int MAGIC = 0x544B5047; // "TKPG"
+    private static final int VERSION = 1;
+    // заголовок страницы: CRC32 остальной части страниц, число страниц, число записей, занято байт
+    private static final int PAGE_HEADER = 16;
+
+    private final FileChannel channel;
+    private final FileChannel journal;
+    private final List<Page> pages = new ArrayList<>(); // по номеру страницы; null - заголовок или продолжение
+    private final IntObjectHashMap<Integer> pageById = new IntObjectHashMap<>();
+    private final ArrayDeque<Integer> freePages = new ArrayDeque<>();
+    private final List<Integer> freeSpans = new ArrayList<>();
+    private int fillPage = -1; // сюда добавляются новые записи, пока помещаются
+    private int lastFlushPages;
+
+    PagedTaskStore(Path path) {
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            journal = FileChannel.open(Path.of(path + ".journal"), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            replayJournal();
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE).putInt(MAGIC).putInt(VERSION).putInt(PAGE_SIZE);
+                channel.write(header.clear(), 0);
+                channel.force(true);
+            }
+            ByteBuffer header = read(0, 12);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != PAGE_SIZE) {
+                throw new ManagerSaveException("Файл не является страничным хранилищем задач: " + path);
+            }
+            pages.add(null);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка открытия хранилища задач");
+        }
+    }
+
+    // Один проход по страницам: проверяет их контрольные суммы и отдает задачи
+    void load(Consumer<Task> taskConsumer) {
+        try {
+            long pageCount = channel.size() / PAGE_SIZE;
+            for (int pageNo = 1; pageNo < pageCount; ) {
+                int span = read((long) pageNo * PAGE_SIZE + 4, 4).getInt();
+                if (span < 1 || pageNo + span > pageCount) {
+                    throw new ManagerSaveException("Хранилище задач повреждено: страница " + pageNo);
+                }
+                ByteBuffer image = read((long) pageNo * PAGE_SIZE, span * PAGE_SIZE);
+                Page page = decode(pageNo, image, taskConsumer);
+                pages.add(page);
+                for (int i = 1; i < span; i++) {
+                    pages.add(null);
+                }
+                if (page.count == 0) {
+                    release(pageNo);
+                } else if (span == 1) {
+                    fillPage = pageNo;
+                }
+                pageNo += span;
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка чтения хранилища задач");
+        }
+    }
+
+    // Переносит на диск текущее состояние задач с этими id; lookup возвращает null для удаленных
+    void write(Set<Integer> changedIds, IntFunction<Task> lookup) {
+        IntObjectHashMap<byte[]> encoded = new IntObjectHashMap<>(changedIds.size());
+        TreeMap<Integer, Boolean> dirtyPages = new TreeMap<>(); // по возрастанию номера - запись идет по порядку
+        for (int id : changedIds) {
+            Integer previousPage = pageById.remove(id);
+            if (previousPage != null) {
+                pages.get(previousPage).remove(id);
+                dirtyPages.put(previousPage, true);
+            }
+            Task task = lookup.apply(id);
+            if (task == null) continue;
+            byte[] bytes = encode(task);
+            encoded.put(id, bytes);
+            int pageNo = place(id, bytes.length, previousPage);
+            pageById.put(id, pageNo);
+            dirtyPages.put(pageNo, true);
+        }
+        if (dirtyPages.isEmpty()) return;
+
+        List<ByteBuffer> images = new ArrayList<>(dirtyPages.size());
+        for (int pageNo : dirtyPages.keySet()) {
+            Page page = pages.get(pageNo);
+            images.add(image(page, encoded, lookup));
+            if (page.count == 0) release(pageNo);
+        }
+        try {
+            writeJournal(dirtyPages.keySet(), images);
+            Iterator<ByteBuffer> image = images.iterator();
+            for (int pageNo : dirtyPages.keySet()) {
+                writeFully(channel, image.next(), (long) pageNo * PAGE_SIZE);
+            }
+            channel.force(false);
+            journal.truncate(0);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка сохранения в файл");
+        }
+        lastFlushPages = dirtyPages.size();
+    }
+
+    // Сколько страниц переписало последнее сохранение
+    int getLastFlushPages() {
+        return lastFlushPages;
+    }
+
+    int getPageCount() {
+        return pages.size();
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+            journal.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка закрытия хранилища задач");
+        }
+    }
+
+    private int place(int id, int size, Integer previousPage) {
+        if (previousPage != null && pages.get(previousPage).fits(size)) return add(previousPage, id, size);
+        if (size > PAGE_SIZE - PAGE_HEADER) return placeLarge(id, size);
+        if (fillPage > 0 && pages.get(fillPage).fits(size)) return add(fillPage, id, size);
+        fillPage = freePages.isEmpty() ? allocate(1) : freePages.poll();
+        return add(fillPage, id, size);
+    }
+
+    // Большая запись занимает отдельный ряд страниц и никого к себе не пускает
+    private int placeLarge(int id, int size) {
+        int span = (size + PAGE_HEADER + PAGE_SIZE - 1) / PAGE_SIZE;
+        for (Iterator<Integer> iterator = freeSpans.iterator(); iterator.hasNext(); ) {
+            int pageNo = iterator.next();
+            if (pages.get(pageNo).span >= span) {
+                iterator.remove();
+                return add(pageNo, id, size);
+            }
+        }
+        return add(allocate(span), id, size);
+    }
+
+    private int add(int pageNo, int id, int size) {
+        pages.get(pageNo).add(id, size);
+        return pageNo;
+    }
+
+    private int allocate(int span) {
+        int pageNo = pages.size();
+        pages.add(new Page(span));
+        for (int i = 1; i < span; i++) {
+            pages.add(null);
+        }
+        return pageNo;
+    }
+
+    private void release(int pageNo) {
+        if (pageNo == fillPage) fillPage = -1;
+        if (pages.get(pageNo).span == 1) {
+            freePages.add(pageNo);
+        } else {
+            freeSpans.add(pageNo);
+        }
+    }
+
+    private static byte[] encode(Task task) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try {
+            BinarySnapshotCodec.writeTask(new DataOutputStream(bytes), task);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка сохранения в файл");
+        }
+        return bytes.toByteArray();
+    }
+
+    // Неизмененные записи той же страницы кодируются заново из текущих объектов
+    private static ByteBuffer image(Page page, IntObjectHashMap<byte[]> encoded, IntFunction<Task> lookup) {
+        ByteBuffer image = ByteBuffer.allocate(page.span * PAGE_SIZE);
+        image.position(PAGE_HEADER);
+        for (int i = 0; i < page.count; i++) {
+            byte[] bytes = encoded.get(page.ids[i]);
+            image.put(bytes != null ? bytes : encode(lookup.apply(page.ids[i])));
+        }
+        int used = image.position() - PAGE_HEADER;
+        image.putInt(4, page.span).putInt(8, page.count).putInt(12, used);
+        CRC32 checksum = new CRC32();
+        checksum.update(image.array(), 4, image.capacity() - 4);
+        image.putInt(0, (int) checksum.getValue());
+        return image.clear();
+    }
+
+    // Запоминает страницу каждой записи: по ней write() найдет и уберет прежнюю версию задачи
+    private Page decode(int pageNo, ByteBuffer image, Consumer<Task> taskConsumer) throws IOException {
+        CRC32 checksum = new CRC32();
+        checksum.update(image.array(), 4, image.capacity() - 4);
+        int span = image.getInt(4);
+        int count = image.getInt(8);
+        int used = image.getInt(12);
+        if (image.getInt(0) != (int) checksum.getValue() || count < 0 || used < 0
+                || used > image.capacity() - PAGE_HEADER) {
+            throw new ManagerSaveException("Хранилище задач повреждено: страница " + pageNo);
+        }
+        Page page = new Page(span);
+        ByteArrayInputStream bytes = new ByteArrayInputStream(image.array(), PAGE_HEADER, used);
+        DataInputStream input = new DataInputStream(bytes);
+        for (int i = 0; i < count; i++) {
+            int before = bytes.available();
+            Task task = BinarySnapshotCodec.readTask(input);
+            page.add(task.getId(), before - bytes.available());
+            pageById.put(task.getId(), pageNo);
+            taskConsumer.accept(task);
+        }
+        return page;
+    }
+
+    // Журнал: число страниц, затем номер и образ каждой, в конце CRC32 всего выше
+    private void writeJournal(Set<Integer> pageNumbers, List<ByteBuffer> images) throws IOException {
+        int size = 4 + 4;
+        for (ByteBuffer image : images) {
+            size += 4 + 4 + image.remaining();
+        }
+        ByteBuffer entry = ByteBuffer.allocate(size);
+        entry.putInt(images.size());
+        Iterator<ByteBuffer> image = images.iterator();
+        for (int pageNo : pageNumbers) {
+            ByteBuffer next = image.next();
+            entry.putInt(pageNo).putInt(next.remaining()).put(next.duplicate());
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(entry.array(), 0, entry.position());
+        entry.putInt((int) checksum.getValue());
+        journal.truncate(0);
+        writeFully(journal, entry.flip(), 0);
+        journal.force(false);
+    }
+
+    // Целый журнал значит, что страницы могли записаться не полностью - переписываем их еще раз.
+    // Оборванный журнал значит, что до страниц дело не дошло, и его можно отбросить.
+    private void replayJournal() throws IOException {
+        long size = journal.size();
+        if (size == 0) return;
+        if (size >= 8 && size <= Integer.MAX_VALUE) {
+            ByteBuffer entry = ByteBuffer.allocate((int) size);
+            int read = 0;
+            while (entry.hasRemaining() && read >= 0) {
+                read = journal.read(entry, entry.position());
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(entry.array(), 0, entry.capacity() - 4);
+            if (entry.getInt(entry.capacity() - 4) == (int) checksum.getValue()) {
+                entry.flip();
+                int count = entry.getInt();
+                for (int i = 0; i < count; i++) {
+                    int pageNo = entry.getInt();
+                    int length = entry.getInt();
+                    ByteBuffer image = entry.slice(entry.position(), length);
+                    entry.position(entry.position() + length);
+                    writeFully(channel, image, (long) pageNo * PAGE_SIZE);
+                }
+                channel.force(false);
+            }
+        }
+        journal.truncate(0);
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new ManagerSaveException("Хранилище задач повреждено: файл оборван");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += target.write(buffer, position);
+        }
+    }
+
+    private static class Page {
+        private final int span;
+        private int[] ids = new int[16];
+        private int[] sizes = new int[16];
+        private int count;
+        private int used;
+
+        Page(int span) {
+            this.span = span;
+        }
+
+        boolean fits(int size) {
+            return used + size <= span * PAGE_SIZE - PAGE_HEADER;
+        }
+
+        void add(int id, int size) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                sizes = Arrays.copyOf(sizes, count * 2);
+            }
+            ids[count] = id;
+            sizes[count] = size;
+            count++;
+            used += size;
+        }
+
+        void remove(int id) {
+            for (int i = 0; i < count; i++) {
+                if (ids[i] != id) continue;
+                used -= sizes[i];
+                count--;
+                ids[i] = ids[count];
+                sizes[i] = sizes[count];
+                return;
+            }
+        }
+    }
+}
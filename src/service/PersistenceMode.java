@@ -0,0 +1,7 @@
+package service;
+
+// Способ сохранения FileBackedTaskManager на диск
+public enum PersistenceMode {
+    SNAPSHOT, // после каждого изменения файл переписывается целиком
+    WAL // изменения дописываются в журнал <файл>.wal, снимок пишется только при сбросе журнала
+}
@@ -0,0 +1,193 @@
+package service;
+
+import exeptions.ManagerSaveException;
+import model.Task;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.IntFunction;
+
+// История просмотров, которая переживает перезапуск: каждое изменение дописывается в журнал <file>.history
+// записью фиксированной длины (вид, id, время просмотра в мс), без перезаписи файла. Когда в журнале
+// накапливается намного больше записей, чем задач в истории, он переписывается одной записью на задачу.
+// fsync не делается: после сбоя машины можно потерять последние просмотры, но не задачи.
+public class PersistentHistoryManager implements HistoryManager, AutoCloseable {
+    private static final int MAGIC = 0x544B484C; // "TKHL"
+    private static final int HEADER = 4;
+    private static final int RECORD = 1 + 4 + 8;
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+    private static final int MIN_COMPACTION_RECORDS = 1_024;
+
+    private final InMemoryHistoryManager history = new InMemoryHistoryManager();
+    private final IntObjectHashMap<Long> accessTimes = new IntObjectHashMap<>(); // те же id, что и в истории
+    private final Path path;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD);
+    private FileChannel channel; // открывается при первом изменении или при проигрывании журнала
+    private long logRecords;
+
+    public PersistentHistoryManager(Path path) {
+        this.path = path;
+    }
+
+    // Восстанавливает историю из журнала; lookup возвращает задачу по id или null, если ее уже нет.
+    // Оборванная последняя запись отбрасывается.
+    public void replay(IntFunction<? extends Task> lookup) {
+        try {
+            if (!Files.exists(path) || Files.size(path) < HEADER) {
+                open(true);
+                return;
+            }
+            ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(path));
+            if (content.getInt() != MAGIC) throw new ManagerSaveException("Файл не является журналом истории: " + path);
+            history.clearHistory();
+            accessTimes.clear();
+            logRecords = 0;
+            while (content.remaining() >= RECORD) {
+                byte kind = content.get();
+                int id = content.getInt();
+                long accessTime = content.getLong();
+                switch (kind) {
+                    case ADD -> {
+                        Task task = lookup.apply(id);
+                        if (task != null) {
+                            history.add(task);
+                            accessTimes.put(id, accessTime);
+                        }
+                    }
+                    case REMOVE -> {
+                        history.remove(id);
+                        accessTimes.remove(id);
+                    }
+                    case CLEAR -> {
+                        history.clearHistory();
+                        accessTimes.clear();
+                    }
+                    default -> throw new ManagerSaveException("Журнал истории поврежден: " + path);
+                }
+                logRecords++;
+            }
+            open(false);
+            channel.truncate(HEADER + logRecords * RECORD);
+            compactIfDue();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка чтения истории просмотров");
+        }
+    }
+
+    @Override
+    public void add(Task task) {
+        history.add(task);
+        long accessTime = System.currentTimeMillis();
+        accessTimes.put(task.getId(), accessTime);
+        append(ADD, task.getId(), accessTime);
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return history.getHistory();
+    }
+
+    @Override
+    public void clearHistory() {
+        history.clearHistory();
+        accessTimes.clear();
+        append(CLEAR, 0, 0);
+    }
+
+    // Удаление задачи, которой нет в истории, в журнал не попадает
+    @Override
+    public void remove(int id) {
+        if (accessTimes.remove(id) == null) return;
+        history.remove(id);
+        append(REMOVE, id, 0);
+    }
+
+    // Когда задача из истории последний раз просматривалась, мс от эпохи; null, если ее нет в истории
+    public Long getAccessTime(int id) {
+        return accessTimes.get(id);
+    }
+
+    long getLogRecords() {
+        return logRecords;
+    }
+
+    @Override
+    public void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+            channel = null;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка закрытия истории просмотров");
+        }
+    }
+
+    private void append(byte kind, int id, long accessTime) {
+        try {
+            if (channel == null) open(true); // журнал без replay относится к прежнему состоянию
+            record.clear().put(kind).putInt(id).putLong(accessTime).flip();
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            logRecords++;
+            compactIfDue();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка записи истории просмотров");
+        }
+    }
+
+    private void open(boolean truncate) throws IOException {
+        if (channel != null) channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (truncate) {
+            channel.truncate(0);
+            writeFully(ByteBuffer.allocate(HEADER).putInt(MAGIC).flip());
+            logRecords = 0;
+        }
+        channel.position(channel.size());
+    }
+
+    // Переписывает журнал по текущей истории: нужно, когда файл задач начат заново и старый журнал к нему
+    // не относится
+    void rewrite() {
+        try {
+            compact();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка записи истории просмотров");
+        }
+    }
+
+    private void compactIfDue() throws IOException {
+        if (logRecords >= Math.max(MIN_COMPACTION_RECORDS, 4L * accessTimes.size())) compact();
+    }
+
+    // Журнал переписывается во временный файл и подменяет старый, так что при сбое остается один из них целиком
+    private void compact() throws IOException {
+        List<Task> current = history.getHistory();
+        ByteBuffer content = ByteBuffer.allocate(HEADER + current.size() * RECORD).putInt(MAGIC);
+        for (Task task : current) {
+            content.put(ADD).putInt(task.getId()).putLong(accessTimes.get(task.getId()));
+        }
+        Path temporary = Path.of(path + ".tmp");
+        Files.write(temporary, content.array());
+        if (channel != null) channel.close();
+        channel = null;
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open(false);
+        logRecords = current.size();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package service;
+
+// Формат файла снимка. При чтении формат определяется по содержимому, поэтому CSV годится для импорта и экспорта.
+public enum SnapshotFormat {
+    CSV,
+    BINARY
+}
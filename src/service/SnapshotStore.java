@@ -0,0 +1,442 @@
+package service;
+
+import exeptions.ManagerSaveException;
+import model.Task;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Файлы снимка: основной, предыдущее поколение (.prev) с журналом, который превратил его в основной (.prev.wal),
+// и новый снимок (.next), который пишется целиком и только потом атомарно подменяет основной.
+// Последняя строка снимка - контрольная сумма CRC32 всего, что выше нее; у двоичного снимка это последние 4 байта.
+// Формат и сжатие пишутся те, что заданы, а читается любой снимок - по первым байтам файла.
+// Контрольная сумма считается по несжатому содержимому.
+class SnapshotStore {
+    static final String HEADER = "id,type,name,status,description,duration,startTime,epic";
+    private static final String CHECKSUM_PREFIX = "#checksum,";
+    private static final int MIN_CHUNK = 256 << 10;
+    private static final int MAX_CHUNK = 32 << 20;
+
+    private final Path path;
+    private final Path nextPath;
+    private final Path previousPath;
+    private final Path previousLogPath;
+    private final boolean force;
+    private final SnapshotFormat format;
+    private final Compression compression;
+
+    SnapshotStore(Path path, boolean force, SnapshotFormat format, Compression compression) {
+        this.path = path;
+        this.nextPath = Path.of(path + ".next");
+        this.previousPath = Path.of(path + ".prev");
+        this.previousLogPath = Path.of(path + ".prev.wal");
+        this.force = force;
+        this.format = format;
+        this.compression = compression;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    Path getPreviousPath() {
+        return previousPath;
+    }
+
+    Path getPreviousLogPath() {
+        return previousLogPath;
+    }
+
+    // absorbedLog - журнал, изменения которого уже вошли в state; он остается рядом с предыдущим поколением.
+    // Если сбой случится до замены основного файла, recover() по наличию absorbedLog решит, нужен ли .next.
+    void install(Collection<? extends Task> state, Path absorbedLog) {
+        if (Files.isDirectory(path)) throw new ManagerSaveException("Возникла ошибка сохранения в файл");
+        write(nextPath, state);
+        try {
+            if (absorbedLog != null && Files.exists(absorbedLog)) {
+                Files.move(absorbedLog, previousLogPath, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.deleteIfExists(previousLogPath);
+            }
+            promoteNext();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка сохранения в файл");
+        }
+    }
+
+    // .next при живом rotatedLog мог оборваться и не нужен, иначе он полный и осталось его установить.
+    // .next всегда пишется с контрольной суммой, поэтому без нее он считается оборванным, а не старым форматом.
+    void recover(Path rotatedLog) {
+        if (!Files.exists(nextPath)) return;
+        try {
+            if (Files.exists(rotatedLog) || !isIntact(nextPath)) {
+                Files.delete(nextPath);
+            } else {
+                promoteNext();
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка восстановления снимка");
+        }
+    }
+
+    private void promoteNext() throws IOException {
+        if (Files.exists(path)) {
+            Files.move(path, previousPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(nextPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (force) forceDirectory();
+    }
+
+    // Переименование надежно только после сброса каталога; не на всех ОС каталог можно открыть
+    private void forceDirectory() {
+        Path directory = path.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+    void write(Path target, Collection<? extends Task> state) {
+        write(target, state, format, compression);
+    }
+
+    void write(Path target, Collection<? extends Task> state, SnapshotFormat format, Compression compression) {
+        CRC32 checksum = new CRC32();
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream file = Channels.newOutputStream(channel);
+            DeflateBlocks.Output compressed = compression.isEnabled()
+                    ? new DeflateBlocks.Output(new BufferedOutputStream(file, 1 << 16), compression.level())
+                    : null;
+            OutputStream output = compressed != null ? compressed : file;
+            if (format == SnapshotFormat.BINARY) {
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(
+                        new CheckedOutputStream(output, checksum), 1 << 16));
+                BinarySnapshotCodec.write(data, state);
+                data.flush();
+                new DataOutputStream(output).writeInt((int) checksum.getValue());
+            } else {
+                writeCsv(output, checksum, state);
+            }
+            if (compressed != null) compressed.finish();
+            if (force) channel.force(true);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка сохранения в файл");
+        }
+    }
+
+    private static void writeCsv(OutputStream output, CRC32 checksum, Collection<? extends Task> state)
+            throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new CheckedOutputStream(output, checksum), StandardCharsets.UTF_8), 1 << 16);
+        writer.write(HEADER);
+        writer.write('\n');
+        // одна строка и один буфер символов на весь снимок вместо новой строки на каждую задачу
+        StringBuilder row = new StringBuilder(256);
+        char[] chars = new char[256];
+        for (Task task : state) {
+            row.setLength(0);
+            TaskManagerUtils.appendTo(row, task);
+            row.append('\n');
+            if (row.length() > chars.length) chars = new char[Math.max(row.length(), chars.length * 2)];
+            row.getChars(0, row.length(), chars, 0);
+            writer.write(chars, 0, row.length());
+        }
+        writer.flush();
+        output.write((CHECKSUM_PREFIX + Long.toHexString(checksum.getValue()) + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Читает снимок за один проход, отдавая задачи по мере чтения; контрольная сумма считается тут же.
+    // Целостность известна только в конце, поэтому до возврата из метода задачи нельзя применять к менеджеру.
+    // Файлы без контрольной суммы (старый формат) принимаются как есть.
+    void read(Path source, Consumer<Task> taskConsumer) {
+        read(source, taskConsumer, false);
+    }
+
+    private void read(Path source, Consumer<Task> taskConsumer, boolean requireChecksum) {
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(source), 1 << 16)) {
+            InputStream input = file;
+            if (DeflateBlocks.isMagic(peekMagic(file))) {
+                input = new BufferedInputStream(new DeflateBlocks.Input(file), 1 << 16);
+            }
+            if (BinarySnapshotCodec.isMagic(peekMagic(input))) {
+                readBinary(input, taskConsumer);
+            } else {
+                readCsv(input, taskConsumer, requireChecksum);
+            }
+        } catch (EOFException e) {
+            throw new ManagerSaveException("Снимок поврежден: файл оборван");
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка чтения из файла");
+        }
+    }
+
+    // Первые байты потока без их потребления; у обоих форматов с магией она одной длины
+    private static byte[] peekMagic(InputStream input) throws IOException {
+        byte[] prefix = new byte[BinarySnapshotCodec.MAGIC.length];
+        input.mark(prefix.length);
+        int prefixLength = input.readNBytes(prefix, 0, prefix.length);
+        input.reset();
+        return prefixLength == prefix.length ? prefix : new byte[0];
+    }
+
+    // Параллельное чтение CSV: тело файла делится на диапазоны по границам строк, диапазоны разбираются в pool,
+    // а этот поток тем временем считает контрольную сумму. Задачи возвращаются в порядке файла, поэтому результат
+    // тот же, что у read(). Двоичные, сжатые, маленькие и нестандартные файлы читаются последовательно.
+    List<Task> readParallel(Path source, ForkJoinPool pool) {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long bodyStart = size < 2L * MIN_CHUNK ? -1 : headerEnd(channel);
+            if (bodyStart < 0) return readSequential(source);
+
+            long contentEnd = trailerStart(channel, size);
+            String trailer = contentEnd == size ? null : readString(channel, contentEnd, (int) (size - contentEnd));
+            long chunkSize = (size - bodyStart) / (pool.getParallelism() * 4L);
+            chunkSize = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, chunkSize));
+            List<ForkJoinTask<List<Task>>> chunks = new ArrayList<>();
+            for (long start = bodyStart; start < contentEnd; ) {
+                long end = nextLineStart(channel, Math.min(start + chunkSize, contentEnd), contentEnd);
+                long chunkStart = start;
+                chunks.add(pool.submit(() -> parseChunk(channel, chunkStart, end)));
+                start = end;
+            }
+
+            boolean intact = trailer == null || checksumMatches(channel, contentEnd, trailer);
+            List<Task> restoredTasks = new ArrayList<>();
+            RuntimeException failure = null;
+            for (ForkJoinTask<List<Task>> chunk : chunks) {
+                try {
+                    restoredTasks.addAll(chunk.join()); // ждем все диапазоны, пока канал еще открыт
+                } catch (RuntimeException e) {
+                    if (failure == null) failure = e;
+                }
+            }
+            if (!intact) throw new ManagerSaveException("Снимок поврежден: не совпала контрольная сумма");
+            if (failure instanceof ManagerSaveException) throw failure;
+            if (failure != null) throw new ManagerSaveException("Возникла ошибка чтения из файла");
+            return restoredTasks;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка чтения из файла");
+        }
+    }
+
+    private List<Task> readSequential(Path source) {
+        List<Task> restoredTasks = new ArrayList<>();
+        read(source, restoredTasks::add);
+        return restoredTasks;
+    }
+
+    // Конец строки заголовка или -1, если первая строка не заголовок CSV
+    private static long headerEnd(FileChannel channel) throws IOException {
+        String head = readString(channel, 0, (int) Math.min(channel.size(), 4096));
+        int newline = head.indexOf('\n');
+        if (!head.startsWith("id,type,") || newline < 0) return -1;
+        return head.substring(0, newline + 1).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    // Начало последней строки, если это контрольная сумма, иначе size
+    private static long trailerStart(FileChannel channel, long size) throws IOException {
+        int tailLength = (int) Math.min(size, 64);
+        byte[] tail = readBytes(channel, size - tailLength, tailLength);
+        int end = tailLength;
+        while (end > 0 && (tail[end - 1] == '\n' || tail[end - 1] == '\r')) end--;
+        int lineStart = end;
+        while (lineStart > 0 && tail[lineStart - 1] != '\n') lineStart--;
+        if (lineStart == 0 && tailLength < size) return size; // строка длиннее хвоста - это не контрольная сумма
+        String lastLine = new String(tail, lineStart, end - lineStart, StandardCharsets.UTF_8);
+        return lastLine.startsWith(CHECKSUM_PREFIX) ? size - tailLength + lineStart : size;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long limit) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < limit) {
+            buffer.clear();
+            int read = channel.read(buffer, position - 1);
+            if (read <= 0) return limit;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') return Math.min(position + i, limit);
+            }
+            position += read;
+        }
+        return limit;
+    }
+
+    private static List<Task> parseChunk(FileChannel channel, long start, long end) {
+        byte[] bytes;
+        try {
+            bytes = readBytes(channel, start, (int) (end - start));
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка чтения из файла");
+        }
+        List<Task> parsed = new ArrayList<>(bytes.length / 64);
+        int lineStart = 0;
+        for (int i = 0; i <= bytes.length; i++) {
+            if (i < bytes.length && bytes[i] != '\n') continue;
+            String line = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8);
+            lineStart = i + 1;
+            if (line.isBlank()) continue;
+            try {
+                parsed.add(TaskManagerUtils.restoreFromString(line));
+            } catch (RuntimeException e) {
+                throw new ManagerSaveException("Снимок поврежден: " + line);
+            }
+        }
+        return parsed;
+    }
+
+    // CRC32 всего, что выше строки контрольной суммы; окнами, чтобы не упираться в предел отображения в 2 ГиБ
+    private static boolean checksumMatches(FileChannel channel, long contentEnd, String trailer) throws IOException {
+        CRC32 checksum = new CRC32();
+        for (long position = 0; position < contentEnd; position += 1 << 30) {
+            long length = Math.min(1 << 30, contentEnd - position);
+            checksum.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+        }
+        try {
+            return Long.parseLong(trailer.strip().substring(CHECKSUM_PREFIX.length()), 16) == checksum.getValue();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String readString(FileChannel channel, long position, int length) throws IOException {
+        return new String(readBytes(channel, position, length), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) break;
+        }
+        return buffer.array();
+    }
+
+    // DataInputStream не буферизует, поэтому в контрольную сумму попадают ровно прочитанные кодеком байты
+    private static void readBinary(InputStream input, Consumer<Task> taskConsumer) throws IOException {
+        CRC32 checksum = new CRC32();
+        DataInputStream data = new DataInputStream(new CheckedInputStream(input, checksum));
+        data.skipNBytes(BinarySnapshotCodec.MAGIC.length);
+        try {
+            BinarySnapshotCodec.read(data, taskConsumer);
+        } catch (IndexOutOfBoundsException | IllegalArgumentException | ArithmeticException | DateTimeException e) {
+            throw new ManagerSaveException("Снимок поврежден: " + e.getMessage());
+        }
+        long actual = checksum.getValue();
+        DataInputStream trailer = new DataInputStream(input);
+        if ((trailer.readInt() & 0xFFFFFFFFL) != actual || input.read() != -1) {
+            throw new ManagerSaveException("Снимок поврежден: не совпала контрольная сумма");
+        }
+    }
+
+    private static void readCsv(InputStream input, Consumer<Task> taskConsumer, boolean requireChecksum)
+            throws IOException {
+        SnapshotReader reader = new SnapshotReader(row -> {
+            try {
+                taskConsumer.accept(TaskManagerUtils.restoreFromString(row));
+            } catch (ManagerSaveException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw new ManagerSaveException("Снимок поврежден: " + row);
+            }
+        });
+        byte[] buffer = new byte[1 << 16];
+        ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+        int read;
+        while ((read = input.read(buffer)) > 0) {
+            int lineStart = 0;
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] != '\n') continue;
+                if (partialLine.size() == 0) {
+                    reader.accept(buffer, lineStart, i - lineStart);
+                } else {
+                    partialLine.write(buffer, lineStart, i - lineStart);
+                    reader.accept(partialLine.toByteArray(), 0, partialLine.size());
+                    partialLine.reset();
+                }
+                lineStart = i + 1;
+            }
+            partialLine.write(buffer, lineStart, read - lineStart);
+        }
+        if (partialLine.size() > 0) reader.accept(partialLine.toByteArray(), 0, partialLine.size());
+        reader.verify(requireChecksum);
+    }
+
+    private boolean isIntact(Path source) {
+        try {
+            read(source, task -> {
+            }, true);
+            return true;
+        } catch (ManagerSaveException e) {
+            return false;
+        }
+    }
+
+    private static class SnapshotReader {
+        private final Consumer<String> rowConsumer;
+        private final CRC32 checksum = new CRC32();
+        private boolean headerSeen;
+        private String trailer;
+
+        SnapshotReader(Consumer<String> rowConsumer) {
+            this.rowConsumer = rowConsumer;
+        }
+
+        void accept(byte[] bytes, int offset, int length) {
+            if (trailer != null) throw new ManagerSaveException("Снимок поврежден: данные после контрольной суммы");
+            String line = new String(bytes, offset, length, StandardCharsets.UTF_8);
+            if (line.startsWith(CHECKSUM_PREFIX)) {
+                trailer = line.strip();
+                return;
+            }
+            checksum.update(bytes, offset, length);
+            checksum.update('\n');
+            if (line.isBlank()) return;
+            if (!headerSeen) {
+                // у файла старого формата проверить можно только заголовок
+                if (!line.startsWith("id,type,")) throw new ManagerSaveException("Снимок поврежден: нет заголовка");
+                headerSeen = true;
+                return;
+            }
+            rowConsumer.accept(line);
+        }
+
+        void verify(boolean requireChecksum) {
+            if (trailer == null && requireChecksum) throw new ManagerSaveException("Снимок поврежден: нет контрольной суммы");
+            if (trailer == null) return;
+            try {
+                long expected = Long.parseLong(trailer.substring(CHECKSUM_PREFIX.length()), 16);
+                if (expected == checksum.getValue()) return;
+            } catch (NumberFormatException ignored) {
+            }
+            throw new ManagerSaveException("Снимок поврежден: не совпала контрольная сумма");
+        }
+    }
+}
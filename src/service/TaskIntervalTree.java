@@ -0,0 +1,283 @@
+package service;
+
+import model.Task;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// Сбалансированное (AVL) дерево интервалов [startTime, endTime) задач, упорядоченное по (startTime, id).
+// Каждый узел хранит максимальный endTime своего поддерева, поэтому поиск пересечения - O(log n) и без аллокаций.
+public class TaskIntervalTree implements Iterable<Task> {
+    private final IntObjectHashMap<Node> nodesById = new IntObjectHashMap<>();
+    private Node root;
+
+    public void add(Task task) {
+        remove(task.getId()); // при обновлении задачи старый интервал мог измениться
+        if (task.getStartTime().isEmpty()) return;
+        Node node = new Node(task, task.getStartTime().get(), task.getEndTime());
+        root = insert(root, node);
+        nodesById.put(node.id, node);
+    }
+
+    // Массовое добавление: в пустое дерево задачи ставятся одной сортировкой и сборкой сбалансированного
+    // дерева за O(n) вместо n вставок с поворотами. Из повторов одного id остается последний.
+    public void addAll(Collection<? extends Task> newTasks) {
+        if (!isEmpty()) {
+            newTasks.forEach(this::add);
+            return;
+        }
+        IntObjectHashMap<Node> latest = new IntObjectHashMap<>(newTasks.size());
+        for (Task task : newTasks) {
+            if (task.getStartTime().isEmpty()) {
+                latest.remove(task.getId());
+            } else {
+                latest.put(task.getId(), new Node(task, task.getStartTime().get(), task.getEndTime()));
+            }
+        }
+        Node[] nodes = latest.values().toArray(new Node[0]);
+        Arrays.parallelSort(nodes, Comparator.comparing((Node node) -> node.start).thenComparingInt(node -> node.id));
+        root = build(nodes, 0, nodes.length);
+        for (Node node : nodes) {
+            nodesById.put(node.id, node);
+        }
+    }
+
+    private static Node build(Node[] nodes, int from, int to) {
+        if (from >= to) return null;
+        int middle = (from + to) >>> 1;
+        Node node = nodes[middle];
+        node.left = build(nodes, from, middle);
+        node.right = build(nodes, middle + 1, to);
+        update(node);
+        return node;
+    }
+
+    public void remove(Task task) {
+        remove(task.getId());
+    }
+
+    public void remove(int id) {
+        Node node = nodesById.remove(id);
+        if (node != null) root = delete(root, node.start, node.id);
+    }
+
+    public boolean contains(int id) {
+        return nodesById.containsKey(id);
+    }
+
+    public int size() {
+        return nodesById.size();
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public void clear() {
+        root = null;
+        nodesById.clear();
+    }
+
+    // Возвращает любую задачу, кроме excludeId, интервал которой строго пересекается с [start, end), или null
+    public Task findOverlap(LocalDateTime start, LocalDateTime end, int excludeId) {
+        return findOverlap(start, end, excludeId, null);
+    }
+
+    // То же, но дополнительно пропускает задачи с id из ignoredIds (например, удаляемые тем же пакетом)
+    public Task findOverlap(LocalDateTime start, LocalDateTime end, int excludeId, IntObjectHashMap<?> ignoredIds) {
+        Node node = findOverlap(root, start, end, excludeId, ignoredIds);
+        return node == null ? null : node.task;
+    }
+
+    public List<Task> toList() {
+        ArrayList<Task> result = new ArrayList<>(size());
+        for (Task task : this) {
+            result.add(task);
+        }
+        return result;
+    }
+
+    // Задачи со временем начала в [from, to); null в границе означает отсутствие ограничения
+    public List<Task> toList(LocalDateTime from, LocalDateTime to) {
+        ArrayList<Task> result = new ArrayList<>();
+        iterator(from, to).forEachRemaining(result::add);
+        return result;
+    }
+
+    @Override
+    public Iterator<Task> iterator() {
+        return new InOrderIterator(root, null, null);
+    }
+
+    // Спуск к первой задаче диапазона за O(log n), дальше O(1) амортизированно на каждую задачу
+    public Iterator<Task> iterator(LocalDateTime from, LocalDateTime to) {
+        return new InOrderIterator(root, from, to);
+    }
+
+    private static Node findOverlap(Node node, LocalDateTime start, LocalDateTime end, int excludeId,
+                                    IntObjectHashMap<?> ignoredIds) {
+        while (node != null && node.maxEnd.isAfter(start)) {
+            Node found = findOverlap(node.left, start, end, excludeId, ignoredIds);
+            if (found != null) return found;
+            // у этого узла и всего правого поддерева начало не раньше end - пересечений дальше нет
+            if (!node.start.isBefore(end)) return null;
+            if (node.end.isAfter(start) && node.id != excludeId
+                    && (ignoredIds == null || !ignoredIds.containsKey(node.id))) return node;
+            node = node.right;
+        }
+        return null;
+    }
+
+    private static int compare(LocalDateTime start1, int id1, LocalDateTime start2, int id2) {
+        int result = start1.compareTo(start2);
+        return result != 0 ? result : Integer.compare(id1, id2);
+    }
+
+    private static Node insert(Node node, Node newNode) {
+        if (node == null) return newNode;
+        if (compare(newNode.start, newNode.id, node.start, node.id) < 0) {
+            node.left = insert(node.left, newNode);
+        } else {
+            node.right = insert(node.right, newNode);
+        }
+        return balance(node);
+    }
+
+    private static Node delete(Node node, LocalDateTime start, int id) {
+        if (node == null) return null;
+        int cmp = compare(start, id, node.start, node.id);
+        if (cmp < 0) {
+            node.left = delete(node.left, start, id);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, start, id);
+        } else {
+            if (node.left == null) return node.right;
+            if (node.right == null) return node.left;
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = deleteMin(node.right);
+            successor.left = node.left;
+            node = successor;
+        }
+        return balance(node);
+    }
+
+    private static Node deleteMin(Node node) {
+        if (node.left == null) return node.right;
+        node.left = deleteMin(node.left);
+        return balance(node);
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static void update(Node node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        LocalDateTime maxEnd = node.end;
+        if (node.left != null && node.left.maxEnd.isAfter(maxEnd)) maxEnd = node.left.maxEnd;
+        if (node.right != null && node.right.maxEnd.isAfter(maxEnd)) maxEnd = node.right.maxEnd;
+        node.maxEnd = maxEnd;
+    }
+
+    private static Node balance(Node node) {
+        update(node);
+        int factor = height(node.left) - height(node.right);
+        if (factor > 1) {
+            if (height(node.left.left) < height(node.left.right)) node.left = rotateLeft(node.left);
+            return rotateRight(node);
+        }
+        if (factor < -1) {
+            if (height(node.right.right) < height(node.right.left)) node.right = rotateRight(node.right);
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node newRoot = node.left;
+        node.left = newRoot.right;
+        newRoot.right = node;
+        update(node);
+        update(newRoot);
+        return newRoot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node newRoot = node.right;
+        node.right = newRoot.left;
+        newRoot.left = node;
+        update(node);
+        update(newRoot);
+        return newRoot;
+    }
+
+    private static class Node {
+        private final Task task;
+        private final int id;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private LocalDateTime maxEnd;
+        private int height = 1;
+        private Node left;
+        private Node right;
+
+        Node(Task task, LocalDateTime start, LocalDateTime end) {
+            this.task = task;
+            this.id = task.getId();
+            this.start = start;
+            this.end = end;
+            this.maxEnd = end;
+        }
+    }
+
+    private static class InOrderIterator implements Iterator<Task> {
+        private final ArrayDeque<Node> stack = new ArrayDeque<>();
+        private final LocalDateTime to;
+
+        InOrderIterator(Node root, LocalDateTime from, LocalDateTime to) {
+            this.to = to;
+            if (from == null) {
+                pushLeft(root);
+                return;
+            }
+            // в стеке остаются только узлы с началом не раньше from - это путь к нижней границе диапазона
+            for (Node node = root; node != null; ) {
+                if (node.start.isBefore(from)) {
+                    node = node.right;
+                } else {
+                    stack.push(node);
+                    node = node.left;
+                }
+            }
+        }
+
+        private void pushLeft(Node node) {
+            for (; node != null; node = node.left) {
+                stack.push(node);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty() && (to == null || stack.peek().start.isBefore(to));
+        }
+
+        @Override
+        public Task next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Node node = stack.pop();
+            pushLeft(node.right);
+            return node.task;
+        }
+    }
+}
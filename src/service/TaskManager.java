@@ -4,9 +4,12 @@ import model.Epic;
 import model.SubTask;
 import model.Task;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface TaskManager {
     ArrayList<Task> getAllTasks();
@@ -43,6 +46,10 @@ public interface TaskManager {
 
     int addNewEpic(Epic newEpic);
 
+    List<Integer> addAll(Collection<? extends Task> newTasks);
+
+    List<Integer> applyBatch(List<Operation> operations);
+
 
     void updateTask(Task task);
 
@@ -56,4 +63,8 @@ public interface TaskManager {
     List<Task> getHistory();
 
     List<Task> getPrioritizedTasks();
+
+    List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to);
+
+    Stream<Task> streamPrioritizedTasks(LocalDateTime from, LocalDateTime to);
 }
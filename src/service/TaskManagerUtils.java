@@ -5,61 +5,265 @@ import model.*;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Optional;
 
+// Строка CSV: id,type,name,status,description,duration,startTime,epic.
+// Название и описание с запятой, кавычкой, обратной косой или переводом строки берутся в кавычки: кавычка внутри
+// удваивается, а \, перевод строки и возврат каретки пишутся как \\, \n и \r - одна задача всегда занимает одну строку.
+// Без кавычек null означает отсутствие значения, поэтому строка "null" тоже пишется в кавычках.
 public class TaskManagerUtils {
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+    private static final Type[] TYPES = Type.values();
+    private static final Status[] STATUSES = Status.values();
 
     public static String convertToString(Task task) {
-        int epicId = -1;
+        StringBuilder out = new StringBuilder(96);
+        appendTo(out, task);
+        return out.toString();
+    }
+
+    // Пишет строку задачи в переданный буфер - при сохранении один буфер переиспользуется для всех строк
+    public static void appendTo(StringBuilder out, Task task) {
         Type type = task.getType();
-        if (type == Type.SUBTASK) {
-            epicId = ((SubTask) task).getParentEpicId();
+        out.append(task.getId()).append(',')
+                .append(type.name()).append(',');
+        appendField(out, task.getTitle());
+        out.append(',').append(task.getStatus().name()).append(',');
+        appendField(out, task.getDescription());
+        out.append(',').append(task.getDuration().toMinutes()).append(',');
+        LocalDateTime startTime = task.getStartTime().orElse(null);
+        if (startTime == null) {
+            out.append("null");
+        } else {
+            appendDateTime(out, startTime);
         }
-        Optional<LocalDateTime> startTimeOptional = task.getStartTime();
-
-
-        return String.format("%d,%s,%s,%s,%s,%d,%s,%s",
-                task.getId(),
-                type,
-                task.getTitle(),
-                task.getStatus(),
-                task.getDescription(),
-                task.getDuration().toMinutes(),
-                startTimeOptional.map(localDateTime -> localDateTime.format(formatter)).orElse("null"),
-                type == Type.SUBTASK ? epicId : "");
+        out.append(',');
+        if (type == Type.SUBTASK) out.append(((SubTask) task).getParentEpicId());
     }
 
     public static Task restoreFromString(String value) {
-        String[] data = value.trim().split(",");
+        return restoreFromString(value, 0);
+    }
+
+    // Разбор строки, начиная с позиции from, без split и промежуточных подстрок для чисел, перечислений и дат
+    public static Task restoreFromString(String value, int from) {
+        int end = value.length();
+        while (from < end && value.charAt(from) <= ' ') from++;
+        while (end > from && value.charAt(end - 1) <= ' ') end--;
+        Cursor cursor = new Cursor(value, from, end);
 
-        int id = Integer.parseInt(data[0]);
-        Type type = Type.valueOf(data[1]);
-        String title = data[2];
-        Status status = Status.valueOf(data[3]);
-        String description = data[4];
-        Duration duration = Duration.ofMinutes(Integer.parseInt(data[5]));
-        LocalDateTime startTime = data[6].equals("null") ? null : LocalDateTime.parse(data[6], formatter);
+        int id = cursor.nextInt();
+        Type type = cursor.nextEnum(TYPES);
+        String title = cursor.nextString();
+        Status status = cursor.nextEnum(STATUSES);
+        String description = cursor.nextString();
+        Duration duration = Duration.ofMinutes(cursor.nextInt());
+        LocalDateTime startTime = cursor.nextDateTime();
 
         return switch (type) {
             case TASK -> {
                 Task restoredTask = new Task(title, description, id);
                 restoredTask.setStatus(status);
                 if (startTime != null) restoredTask.setStartTime(startTime);
-                if (duration != Duration.ZERO) restoredTask.setDuration(duration);
+                if (!duration.isZero()) restoredTask.setDuration(duration);
                 yield restoredTask;
             }
             case EPIC -> new Epic(title, description, id);
             case SUBTASK -> {
-                int parentEpicId = Integer.parseInt(data[7]);
+                int parentEpicId = cursor.nextInt();
                 SubTask restoredSubTask = new SubTask(title, description, parentEpicId, id);
                 restoredSubTask.setStatus(status);
                 if (startTime != null) restoredSubTask.setStartTime(startTime);
-                if (duration != Duration.ZERO) restoredSubTask.setDuration(duration);
+                if (!duration.isZero()) restoredSubTask.setDuration(duration);
                 yield restoredSubTask;
             }
         };
     }
 
+    private static void appendField(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        if (!needsQuotes(value)) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\"\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                default -> out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private static boolean needsQuotes(String value) {
+        if (value.equals("null")) return true;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\\' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+
+    private static void appendDateTime(StringBuilder out, LocalDateTime dateTime) {
+        int year = dateTime.getYear();
+        if (year < 0 || year > 9999) {
+            out.append(dateTime.format(formatter));
+            return;
+        }
+        appendTwoDigits(out, dateTime.getDayOfMonth());
+        out.append('.');
+        appendTwoDigits(out, dateTime.getMonthValue());
+        out.append('.');
+        appendTwoDigits(out, year / 100);
+        appendTwoDigits(out, year % 100);
+        out.append(' ');
+        appendTwoDigits(out, dateTime.getHour());
+        out.append(':');
+        appendTwoDigits(out, dateTime.getMinute());
+    }
+
+    private static void appendTwoDigits(StringBuilder out, int value) {
+        out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    // Разбор "dd.MM.yyyy HH:mm" без DateTimeFormatter: при загрузке больших файлов это заметная доля времени.
+    // Все, что не похоже на этот шаблон, разбирает форматтер - он же и сообщит об ошибке.
+    private static LocalDateTime parseDateTime(String value, int from, int to) {
+        if (to - from != 16 || value.charAt(from + 2) != '.' || value.charAt(from + 5) != '.'
+                || value.charAt(from + 10) != ' ' || value.charAt(from + 13) != ':') {
+            return LocalDateTime.parse(value.substring(from, to), formatter);
+        }
+        int day = digits(value, from, from + 2);
+        int month = digits(value, from + 3, from + 5);
+        int year = digits(value, from + 6, from + 10);
+        int hour = digits(value, from + 11, from + 13);
+        int minute = digits(value, from + 14, from + 16);
+        if ((day | month | year | hour | minute) < 0) return LocalDateTime.parse(value.substring(from, to), formatter);
+        return LocalDateTime.of(year, month, day, hour, minute);
+    }
+
+    private static int digits(String value, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    // Последовательный проход по полям строки; каждое поле читается на месте
+    private static class Cursor {
+        private final String line;
+        private final int end;
+        private int position;
+
+        Cursor(String line, int from, int end) {
+            this.line = line;
+            this.position = from;
+            this.end = end;
+        }
+
+        int nextInt() {
+            int fieldEnd = fieldEnd();
+            int i = position;
+            boolean negative = i < fieldEnd && line.charAt(i) == '-';
+            if (negative) i++;
+            if (i == fieldEnd) throw new IllegalArgumentException("Ожидалось число: " + line);
+            long result = 0;
+            for (; i < fieldEnd; i++) {
+                int digit = line.charAt(i) - '0';
+                if (digit < 0 || digit > 9 || result > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Ожидалось число: " + line);
+                }
+                result = result * 10 + digit;
+            }
+            if (negative) result = -result;
+            if (result > Integer.MAX_VALUE || result < Integer.MIN_VALUE) {
+                throw new IllegalArgumentException("Ожидалось число: " + line);
+            }
+            skip(fieldEnd);
+            return (int) result;
+        }
+
+        <E extends Enum<E>> E nextEnum(E[] values) {
+            int fieldEnd = fieldEnd();
+            int length = fieldEnd - position;
+            for (E value : values) {
+                String name = value.name();
+                if (name.length() == length && line.regionMatches(position, name, 0, length)) {
+                    skip(fieldEnd);
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестное значение: " + line.substring(position, fieldEnd));
+        }
+
+        LocalDateTime nextDateTime() {
+            int fieldEnd = fieldEnd();
+            LocalDateTime result = isNull(fieldEnd) ? null : parseDateTime(line, position, fieldEnd);
+            skip(fieldEnd);
+            return result;
+        }
+
+        String nextString() {
+            if (position < end && line.charAt(position) == '"') return nextQuoted();
+            int fieldEnd = fieldEnd();
+            String result = isNull(fieldEnd) ? null : line.substring(position, fieldEnd);
+            skip(fieldEnd);
+            return result;
+        }
+
+        private String nextQuoted() {
+            StringBuilder result = new StringBuilder();
+            int i = position + 1;
+            while (true) {
+                if (i >= end) throw new IllegalArgumentException("Незакрытая кавычка: " + line);
+                char c = line.charAt(i++);
+                if (c == '"') {
+                    if (i < end && line.charAt(i) == '"') {
+                        result.append('"');
+                        i++;
+                        continue;
+                    }
+                    break;
+                }
+                if (c == '\\' && i < end) {
+                    char escaped = line.charAt(i++);
+                    result.append(switch (escaped) {
+                        case 'n' -> '\n';
+                        case 'r' -> '\r';
+                        default -> escaped;
+                    });
+                    continue;
+                }
+                result.append(c);
+            }
+            if (i < end && line.charAt(i) != ',') throw new IllegalArgumentException("Данные после кавычки: " + line);
+            skip(i);
+            return result.toString();
+        }
 
+        private boolean isNull(int fieldEnd) {
+            return fieldEnd - position == 4 && line.startsWith("null", position);
+        }
+
+        // Конец поля - запятая или конец строки; недостающее поле - ошибка
+        private int fieldEnd() {
+            if (position > end) throw new IllegalArgumentException("Не хватает полей: " + line);
+            int comma = line.indexOf(',', position);
+            return comma < 0 || comma > end ? end : comma;
+        }
+
+        private void skip(int fieldEnd) {
+            position = fieldEnd + 1;
+        }
+    }
 }
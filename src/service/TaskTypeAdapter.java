@@ -0,0 +1,139 @@
+package service;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import model.Epic;
+import model.Status;
+import model.SubTask;
+import model.Task;
+import model.Type;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+// Сериализация задач без отражения: поля пишутся в постоянном порядке
+// id, title, status, description, duration, startTime, затем parentEpicId у подзадачи и endTime, subTasks у эпика.
+// Подзадачи эпика выводятся списком id, а при expandSubTasks - целиком, массивом объектов. При чтении
+// неизвестные поля пропускаются; subTasks принимается в обоих видах и в прежнем виде объекта "id": подзадача.
+class TaskTypeAdapter extends TypeAdapter<Task> {
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+    private static final TaskTypeAdapter SUBTASK_READER = new TaskTypeAdapter(Type.SUBTASK, false);
+
+    private final Type type; // какой класс создается при чтении
+    private final boolean expandSubTasks;
+
+    TaskTypeAdapter(Type type, boolean expandSubTasks) {
+        this.type = type;
+        this.expandSubTasks = expandSubTasks;
+    }
+
+    @Override
+    public void write(JsonWriter out, Task task) throws IOException {
+        if (task == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(task.getId());
+        out.name("title").value(task.getTitle());
+        out.name("status").value(task.getStatus() == null ? null : task.getStatus().name());
+        out.name("description").value(task.getDescription());
+        out.name("duration").value(task.getDuration() == null ? null : task.getDuration().toString());
+        writeDateTime(out.name("startTime"), task.getStartTime().orElse(null));
+        if (task instanceof SubTask subTask) {
+            out.name("parentEpicId").value(subTask.getParentEpicId());
+        } else if (task instanceof Epic epic) {
+            writeDateTime(out.name("endTime"), epic.getEndTime());
+            out.name("subTasks").beginArray();
+            for (SubTask subTask : epic.getEpicSubTasks()) {
+                if (expandSubTasks) write(out, subTask);
+                else out.value(subTask.getId());
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Task read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        int id = -1;
+        String title = null;
+        String description = null;
+        Status status = null;
+        Duration duration = Duration.ZERO;
+        LocalDateTime startTime = null;
+        LocalDateTime endTime = null;
+        int parentEpicId = 0;
+        List<SubTask> subTasks = List.of();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id" -> id = in.nextInt();
+                case "title" -> title = in.nextString();
+                case "description" -> description = in.nextString();
+                case "status" -> status = Status.valueOf(in.nextString());
+                case "duration" -> duration = Duration.parse(in.nextString());
+                case "startTime" -> startTime = LocalDateTime.parse(in.nextString(), DATE_TIME_FORMATTER);
+                case "endTime" -> endTime = LocalDateTime.parse(in.nextString(), DATE_TIME_FORMATTER);
+                case "parentEpicId" -> parentEpicId = in.nextInt();
+                case "subTasks" -> {
+                    if (type == Type.EPIC) subTasks = readSubTasks(in);
+                    else in.skipValue();
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        Task task = switch (type) {
+            case TASK -> new Task(title, description, id);
+            case SUBTASK -> new SubTask(title, description, parentEpicId, id);
+            case EPIC -> new Epic(title, description, id);
+        };
+        if (status != null) task.setStatus(status);
+        task.setDuration(duration);
+        task.setStartTime(startTime);
+        if (task instanceof Epic epic) {
+            epic.setEndTime(endTime);
+            if (!subTasks.isEmpty()) epic.addSubTasksToEpic(subTasks);
+        }
+        return task;
+    }
+
+    private static void writeDateTime(JsonWriter out, LocalDateTime dateTime) throws IOException {
+        if (dateTime == null) out.nullValue();
+        else out.value(dateTime.format(DATE_TIME_FORMATTER));
+    }
+
+    // Список id не несет подзадач - эпик получит их от менеджера; полные подзадачи прикрепляются к эпику
+    private static List<SubTask> readSubTasks(JsonReader in) throws IOException {
+        List<SubTask> subTasks = new ArrayList<>();
+        boolean isArray = in.peek() == JsonToken.BEGIN_ARRAY;
+        if (isArray) in.beginArray();
+        else in.beginObject();
+        while (in.hasNext()) {
+            if (!isArray) in.nextName();
+            if (in.peek() == JsonToken.BEGIN_OBJECT) subTasks.add((SubTask) SUBTASK_READER.read(in));
+            else in.skipValue();
+        }
+        if (isArray) in.endArray();
+        else in.endObject();
+        return subTasks;
+    }
+}
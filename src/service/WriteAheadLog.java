@@ -0,0 +1,198 @@
+package service;
+
+import exeptions.ManagerSaveException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+// Журнал изменений: одна строка на изменение, файл только дописывается в конец.
+// Строка - CRC32 записи в 8 шестнадцатеричных цифрах, пробел и сама запись.
+// Счетчики читаются потоком менеджера, а при групповой записи меняются потоком записи.
+class WriteAheadLog implements AutoCloseable {
+    private final Path path;
+    private FileChannel channel;
+    private volatile long bytes;
+    private volatile int records;
+
+    WriteAheadLog(Path path) {
+        this.path = path;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    boolean exists() {
+        return Files.exists(path);
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    int getRecords() {
+        return records;
+    }
+
+    // Пачка записей уходит одним системным вызовом, force - дождаться физической записи на диск
+    void append(List<String> newRecords, boolean force) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(newRecords.size() * 64);
+        CRC32 crc = new CRC32();
+        for (String record : newRecords) {
+            byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+            crc.reset();
+            crc.update(bytes);
+            long checksum = crc.getValue();
+            for (int shift = 28; shift >= 0; shift -= 4) {
+                buffer.write(Character.forDigit((int) (checksum >>> shift) & 0xF, 16));
+            }
+            buffer.write(' ');
+            buffer.writeBytes(bytes);
+            buffer.write('\n');
+        }
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            }
+            ByteBuffer content = ByteBuffer.wrap(buffer.toByteArray());
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            if (force) channel.force(false);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка записи в журнал изменений");
+        }
+        bytes += buffer.size();
+        records += newRecords.size();
+    }
+
+    // Последняя строка могла оборваться при аварийной остановке: она применяется, только если дописана
+    // до перевода строки и сходится CRC. Ошибка разбора или применения в середине журнала означает,
+    // что он поврежден. Обрывок после последней целой записи отрезается - иначе следующая запись
+    // допишется прямо к нему и испортит обе
+    void replay(Function<String, Runnable> decoder) {
+        Replayed replayed = replayRecords(path, decoder);
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            if (file.size() > replayed.end()) {
+                file.truncate(replayed.end());
+                file.force(false);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка записи в журнал изменений");
+        }
+        records = replayed.records();
+        bytes = replayed.end();
+    }
+
+    static int replay(Path source, Function<String, Runnable> decoder) {
+        return replayRecords(source, decoder).records();
+    }
+
+    // end - байт после последней примененной записи
+    private static Replayed replayRecords(Path source, Function<String, Runnable> decoder) {
+        int replayed = 0;
+        long end = 0;
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(source))) {
+            byte[] line = nextLine(input);
+            while (line != null) {
+                byte[] next = nextLine(input);
+                boolean last = next == null;
+                int length = line.length;
+                if (line[length - 1] != '\n') break; // строка без перевода строки бывает только последней
+                int textLength = length > 1 && line[length - 2] == '\r' ? length - 2 : length - 1;
+                String text = new String(line, 0, textLength, StandardCharsets.UTF_8);
+                String record = checkedRecord(text);
+                try {
+                    if (record == null) throw new IllegalArgumentException("Не сходится CRC");
+                    decoder.apply(record).run();
+                } catch (RuntimeException e) {
+                    if (last) break;
+                    throw new ManagerSaveException("Журнал изменений поврежден: " + text);
+                }
+                replayed++;
+                end += length;
+                line = next;
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка чтения журнала изменений");
+        }
+        return new Replayed(replayed, end);
+    }
+
+    // Строка вместе с переводом строки, если он есть; null в конце файла
+    private static byte[] nextLine(InputStream input) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int next;
+        while ((next = input.read()) != -1) {
+            line.write(next);
+            if (next == '\n') break;
+        }
+        return line.size() == 0 ? null : line.toByteArray();
+    }
+
+    // Запись без CRC, если строка в прежнем формате без префикса; null, если CRC не сходится
+    private static String checkedRecord(String line) {
+        if (line.length() < 9 || line.charAt(8) != ' ') return line;
+        long expected;
+        try {
+            expected = Long.parseLong(line, 0, 8, 16);
+        } catch (NumberFormatException e) {
+            return line;
+        }
+        String record = line.substring(9);
+        CRC32 crc = new CRC32();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue() == expected ? record : null;
+    }
+
+    // Текущий журнал переименовывается целиком, новые записи пойдут в пустой файл
+    void rotate(Path target) {
+        close();
+        try {
+            Files.move(path, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка ротации журнала изменений");
+        }
+        bytes = 0;
+        records = 0;
+    }
+
+    void reset() {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка удаления журнала изменений");
+        }
+        bytes = 0;
+        records = 0;
+    }
+
+    private record Replayed(int records, long end) {
+    }
+
+    @Override
+    public void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Возникла ошибка закрытия журнала изменений");
+        } finally {
+            channel = null;
+        }
+    }
+}
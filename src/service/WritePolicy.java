@@ -0,0 +1,26 @@
+package service;
+
+import java.time.Duration;
+
+// Как записи журнала WAL попадают на диск. Для фоновой записи изменения копятся и сбрасываются одной пачкой
+// не реже раза в flushInterval или по набору maxBatchRecords записей.
+public record WritePolicy(Durability durability, Duration flushInterval, int maxBatchRecords) {
+
+    public static WritePolicy fsync() {
+        return new WritePolicy(Durability.FSYNC, Duration.ZERO, 1);
+    }
+
+    public static WritePolicy batched(Duration flushInterval, int maxBatchRecords) {
+        return new WritePolicy(Durability.BATCHED, flushInterval, maxBatchRecords);
+    }
+
+    public static WritePolicy none(Duration flushInterval, int maxBatchRecords) {
+        return new WritePolicy(Durability.NONE, flushInterval, maxBatchRecords);
+    }
+
+    public enum Durability {
+        NONE, // фоновая запись без fsync: при сбое ОС теряются изменения, не дошедшие до диска
+        BATCHED, // фоновая запись, один fsync на пачку изменений
+        FSYNC // запись и fsync до возврата из метода менеджера
+    }
+}
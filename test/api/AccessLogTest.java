@@ -0,0 +1,116 @@
+package api;
+
+import model.Task;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.Managers;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccessLogTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRecordsAreWrittenInCompactFormat() throws IOException {
+        Path file = dir.resolve("access.log");
+        AccessLog log = new AccessLog(AccessLogConfig.of(file), false);
+        assertTrue(log.record(Endpoint.GET_TASK_BY_ID, 7, 200, 0, 245, 312_000));
+        assertTrue(log.record(Endpoint.GET_TASKS, Router.NO_ID, 200, 0, 2, 1_500));
+        assertEquals(2, log.drain(), "в файл должны попасть обе записи");
+        log.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).endsWith(" GET_TASK_BY_ID 7 200 0 245 312"), "неверная строка журнала: " + lines.get(0));
+        assertTrue(lines.get(1).endsWith(" GET_TASKS - 200 0 2 1"), "неверная строка журнала: " + lines.get(1));
+    }
+
+    @Test
+    void testFullBufferDropsRecordsInsteadOfBlocking() throws IOException {
+        Path file = dir.resolve("access.log");
+        AccessLog log = new AccessLog(new AccessLogConfig(file, 4, 1, 1 << 20, 1), false);
+        int accepted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (log.record(Endpoint.GET_TASK_BY_ID, i, 200, 0, 10, 1_000)) accepted++;
+        }
+        assertEquals(4, accepted, "в буфер помещается 4 записи");
+        assertEquals(6, log.getDropped(), "остальные записи должны быть отброшены");
+
+        assertEquals(4, log.drain());
+        assertTrue(log.record(Endpoint.GET_TASK_BY_ID, 10, 200, 0, 10, 1_000), "после разбора буфер снова свободен");
+        log.close();
+        assertEquals(5, Files.readAllLines(file).size());
+    }
+
+    @Test
+    void testSamplingKeepsErrors() throws IOException {
+        Path file = dir.resolve("access.log");
+        AccessLog log = new AccessLog(AccessLogConfig.of(file).withSampleEvery(Integer.MAX_VALUE), false);
+        for (int i = 0; i < 100; i++) {
+            log.record(Endpoint.GET_TASKS, Router.NO_ID, 200, 0, 2, 1_000);
+            log.record(Endpoint.UNKNOWN, Router.NO_ID, 404, 0, 100, 1_000);
+        }
+        log.close();
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(100, lines.size(), "при выборке в журнал попадают только ошибки");
+        assertTrue(lines.stream().allMatch(line -> line.contains(" 404 ")));
+    }
+
+    @Test
+    void testFileIsRotated() throws IOException {
+        Path file = dir.resolve("access.log");
+        AccessLog log = new AccessLog(new AccessLogConfig(file, 16, 1, 200, 2), false);
+        for (int i = 0; i < 100; i++) {
+            log.record(Endpoint.GET_TASK_BY_ID, i, 200, 0, 245, 312_000);
+            log.drain();
+        }
+        log.close();
+
+        assertEquals(100, log.getWritten());
+        assertTrue(Files.size(file) <= 200, "текущий файл не должен превышать лимит");
+        assertTrue(Files.exists(dir.resolve("access.log.1")) && Files.exists(dir.resolve("access.log.2")));
+        assertFalse(Files.exists(dir.resolve("access.log.3")), "хранится не больше 2 старых файлов");
+        assertTrue(Files.readAllLines(file).getLast().contains(" GET_TASK_BY_ID 99 "), "последняя запись в текущем файле");
+    }
+
+    @Test
+    void testServerWritesAccessLog() throws IOException, InterruptedException {
+        Path file = dir.resolve("access.log");
+        HttpTaskServer taskServer = new HttpTaskServer(Managers.getDefault(), HttpServerConfig.virtualThreads(0, 0),
+                AccessLogConfig.of(file));
+        int id = taskServer.getManager().addNewTask(new Task("Задача", "Описание"));
+        taskServer.startServer();
+        HttpClient client = HttpClient.newHttpClient();
+        String base = "http://localhost:" + taskServer.getPort();
+        try {
+            client.send(HttpRequest.newBuilder(URI.create(base + "/tasks/" + id)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            client.send(HttpRequest.newBuilder(URI.create(base + "/tasks/fwefwfw")).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+        } finally {
+            taskServer.stopServer();
+        }
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size(), "на каждый запрос одна строка");
+        // запись делается после отправки ответа, поэтому порядок строк не гарантирован
+        String hit = lines.stream().filter(line -> line.contains(" GET_TASK_BY_ID ")).findFirst().orElseThrow();
+        String miss = lines.stream().filter(line -> line.contains(" UNKNOWN ")).findFirst().orElseThrow();
+        String[] found = hit.split(" ");
+        assertEquals("GET_TASK_BY_ID", found[1]);
+        assertEquals(String.valueOf(id), found[2]);
+        assertEquals("200", found[3]);
+        assertTrue(Long.parseLong(found[5]) > 0, "размер ответа должен учитываться");
+        assertTrue(miss.contains(" UNKNOWN - 404 "), "неверная строка журнала: " + miss);
+    }
+}
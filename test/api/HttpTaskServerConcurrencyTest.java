@@ -0,0 +1,96 @@
+package api;
+
+import model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import service.ConcurrentTaskManager;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpTaskServerConcurrencyTest {
+    private static final int CLIENTS = 8;
+
+    private final SlowManager manager = new SlowManager();
+    private HttpTaskServer taskServer;
+
+    @AfterEach
+    void shutDown() {
+        if (taskServer != null) taskServer.stopServer();
+    }
+
+    // Каждое чтение списка задач занимает 200 мс и отмечает, сколько запросов обрабатывается одновременно
+    private static class SlowManager extends ConcurrentTaskManager {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger peak = new AtomicInteger();
+
+        @Override
+        public ArrayList<Task> getAllTasks() {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return super.getAllTasks();
+        }
+    }
+
+    private void sendConcurrently(HttpServerConfig config) throws IOException {
+        taskServer = new HttpTaskServer(manager, config);
+        taskServer.startServer();
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + taskServer.getPort() + "/tasks"))
+                .GET().build();
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(200, response.join().statusCode());
+        }
+    }
+
+    @Test
+    void testDispatcherHandlesRequestsOneByOne() throws IOException {
+        sendConcurrently(new HttpServerConfig(0, 0, HttpServerConfig.ExecutorType.DISPATCHER, 1, 0));
+        assertEquals(1, manager.peak.get(), "Без исполнителя запросы обрабатываются по одному");
+    }
+
+    @Test
+    void testVirtualThreadsHandleRequestsInParallel() throws IOException {
+        sendConcurrently(HttpServerConfig.virtualThreads(0, 0));
+        assertTrue(manager.peak.get() > 1, "Медленный запрос не должен задерживать остальные");
+    }
+
+    @Test
+    void testFixedPoolHandlesRequestsInParallel() throws IOException {
+        sendConcurrently(HttpServerConfig.fixedPool(0, 4));
+        assertTrue(manager.peak.get() > 1 && manager.peak.get() <= 4, "Не больше потоков пула: " + manager.peak.get());
+    }
+
+    @Test
+    void testMaxConcurrentRequestsIsEnforced() throws IOException {
+        sendConcurrently(new HttpServerConfig(0, 64, HttpServerConfig.ExecutorType.WORK_STEALING, 8, 2));
+        assertTrue(manager.peak.get() <= 2, "Одновременно обрабатывается не больше 2 запросов: " + manager.peak.get());
+    }
+
+    @Test
+    void testInvalidConfigIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new HttpServerConfig(-1, 0, HttpServerConfig.ExecutorType.VIRTUAL, 1, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new HttpServerConfig(0, 0, HttpServerConfig.ExecutorType.FIXED, 0, 0));
+    }
+}
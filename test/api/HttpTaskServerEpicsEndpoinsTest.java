@@ -267,4 +267,38 @@ public class HttpTaskServerEpicsEndpoinsTest {
         JsonObject jsonObject = jsonElement.getAsJsonObject();
         assertEquals("Запрашиваемые данные не найдены", jsonObject.get("message").getAsString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testEpicSubTasksAreExpandedOnRequest() throws IOException, InterruptedException {
+        int epicId = manager.addNewEpic(new Epic("Test Epic", "Testing epic"));
+        int subTaskId = manager.addNewSubTask(new SubTask("Test Subtask", "Testing subTask", epicId));
+        HttpClient client = HttpClient.newHttpClient();
+
+        HttpResponse<String> compact = client.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/epics/" + epicId)).GET().build(), HttpResponse.BodyHandlers.ofString());
+        JsonElement ids = JsonParser.parseString(compact.body()).getAsJsonObject().get("subTasks");
+        assertEquals(subTaskId, ids.getAsJsonArray().get(0).getAsInt(), "по умолчанию подзадачи - список id");
+
+        HttpResponse<String> expanded = client.send(HttpRequest.newBuilder()
+                        .uri(URI.create("http://localhost:8080/epics?expand=subtasks")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        JsonObject subTask = JsonParser.parseString(expanded.body()).getAsJsonArray().get(0).getAsJsonObject()
+                .getAsJsonArray("subTasks").get(0).getAsJsonObject();
+        assertEquals("Test Subtask", subTask.get("title").getAsString(), "с expand=subtasks подзадачи выводятся целиком");
+    }
+
+    @Test
+    public void testUpdatedEpicKeepsSubTasks() throws IOException, InterruptedException {
+        int epicId = manager.addNewEpic(new Epic("Test Epic", "Testing epic"));
+        manager.addNewSubTask(new SubTask("Test Subtask", "Testing subTask", epicId));
+        Epic updatedEpic = new Epic("Updated Epic", "Testing updated Epic", epicId);
+
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/epics/" + epicId))
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(updatedEpic))).build();
+        assertEquals(200, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        assertEquals("Updated Epic", manager.getEpicById(epicId).orElseThrow().getTitle());
+        assertEquals(1, manager.getEpicSubTasks(epicId).size(), "подзадачи эпика не должны теряться при обновлении");
+    }
+}
@@ -0,0 +1,110 @@
+package api;
+
+import model.Task;
+import service.ConcurrentTaskManager;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Нагрузка на сервер в каждом режиме исполнителя: 64 клиента шлют запросы без пауз, каждый десятый запрос
+// медленный (по 5 мс в менеджере, как запись снимка на диск). Печатает p50, p99 и пропускную способность.
+// Запуск: java -cp <классы main и test> api.HttpTaskServerLoadTest [запросов на клиента]
+public class HttpTaskServerLoadTest {
+    private static final int CLIENTS = 64;
+    private static final int TASKS = 100;
+
+    public static void main(String[] args) throws Exception {
+        int requestsPerClient = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("Клиентов: %d, запросов на клиента: %d, ядер: %d%n", CLIENTS, requestsPerClient, cores);
+        List<HttpServerConfig> configs = List.of(
+                new HttpServerConfig(0, CLIENTS, HttpServerConfig.ExecutorType.DISPATCHER, 1, 0),
+                new HttpServerConfig(0, CLIENTS, HttpServerConfig.ExecutorType.FIXED, 16, 0),
+                new HttpServerConfig(0, CLIENTS, HttpServerConfig.ExecutorType.WORK_STEALING, 16, 0),
+                new HttpServerConfig(0, CLIENTS, HttpServerConfig.ExecutorType.VIRTUAL, 1, 0),
+                new HttpServerConfig(0, CLIENTS, HttpServerConfig.ExecutorType.VIRTUAL, 1, 16));
+        System.out.printf("%-14s %6s %10s %10s %10s %12s%n", "Режим", "Лимит", "p50, мс", "p99, мс", "max, мс",
+                "Запросов/с");
+        for (HttpServerConfig config : configs) {
+            run(config, requestsPerClient);
+        }
+    }
+
+    private static void run(HttpServerConfig config, int requestsPerClient) throws Exception {
+        HttpTaskServer taskServer = new HttpTaskServer(new SlowWriteManager(), config);
+        fill(taskServer);
+        taskServer.startServer();
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newFixedThreadPool(4)).build();
+        String base = "http://localhost:" + taskServer.getPort();
+        long[] latencies = new long[CLIENTS * requestsPerClient];
+        long start = System.nanoTime();
+        try (ExecutorService clients = Executors.newFixedThreadPool(CLIENTS)) {
+            Future<?>[] futures = new Future<?>[CLIENTS];
+            for (int c = 0; c < CLIENTS; c++) {
+                int clientNo = c;
+                futures[c] = clients.submit(() -> {
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        int id = 1 + (clientNo * requestsPerClient + i) % TASKS;
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/tasks/" + id)).GET().build();
+                        long sent = System.nanoTime();
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        latencies[clientNo * requestsPerClient + i] = System.nanoTime() - sent;
+                        if (response.statusCode() != 200) throw new IllegalStateException("Ответ " + response.statusCode());
+                    }
+                    return null;
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            taskServer.stopServer();
+            client.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Arrays.sort(latencies);
+        System.out.printf("%-14s %6s %10.1f %10.1f %10.1f %12.0f%n", config.executorType(),
+                config.maxConcurrentRequests() == 0 ? "-" : config.maxConcurrentRequests(),
+                percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6,
+                latencies.length / seconds);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+    }
+
+    private static void fill(HttpTaskServer taskServer) {
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+        for (int i = 0; i < TASKS; i++) {
+            Task task = new Task("Задача " + i, "Описание");
+            task.setStartTime(base.plusHours(i));
+            task.setDuration(Duration.ofMinutes(30));
+            taskServer.getManager().addNewTask(task);
+        }
+    }
+
+    // Каждое десятое чтение задачи ждет 5 мс - так выглядит менеджер, который иногда пишет на диск
+    private static class SlowWriteManager extends ConcurrentTaskManager {
+        @Override
+        public Optional<Task> getTaskById(int id) {
+            if (id % 10 == 0) {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.getTaskById(id);
+        }
+    }
+}
@@ -21,6 +21,7 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -132,6 +133,43 @@ public class HttpTaskServerTest {
         assertEquals(gson.toJson(manager.getPrioritizedTasks()), response.body(), "Приоритетные задачи из менеджера не совпадает с полученным по сети");
     }
 
+    @Test
+    public void testGetPrioritizedInTimeWindow() throws IOException, InterruptedException {
+        Task task1 = new Task("Test 1", "Testing task 1");
+        task1.setDuration(Duration.ofMinutes(5));
+        task1.setStartTime(LocalDateTime.of(2022, 10, 10, 10, 10));
+        manager.addNewTask(task1);
+
+        Task task2 = new Task("Test 2", "Testing task 2");
+        task2.setDuration(Duration.ofMinutes(5));
+        task2.setStartTime(LocalDateTime.of(2022, 10, 11, 10, 10));
+        manager.addNewTask(task2);
+
+        HttpClient client = HttpClient.newHttpClient();
+        URI url = URI.create("http://localhost:8080/prioritized?from=2022-10-11T00:00&to=2022-10-12T00:00");
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(url)
+                .GET()
+                .build();
+
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertEquals(gson.toJson(List.of(task2)), response.body(), "В ответ должны попасть только задачи из окна");
+    }
+
+    @Test
+    public void shouldReturn400CodeWhenPrioritizedWindowIsIncorrect() throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        URI url = URI.create("http://localhost:8080/prioritized?from=yesterday");
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(url)
+                .GET()
+                .build();
+
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, response.statusCode(), "неверный статус-код");
+    }
+
     @Test
     public void shouldReturn404CodeWhenUnknownhistoryEndpoint() throws IOException, InterruptedException {
         HttpClient client = HttpClient.newHttpClient();
@@ -169,4 +207,38 @@ public class HttpTaskServerTest {
         JsonObject jsonObject = jsonElement.getAsJsonObject();
         assertEquals("Такого эндпоинта не существует", jsonObject.get("message").getAsString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testListResponsesAreStreamedAsGsonWouldPrintThem() throws IOException, InterruptedException {
+        int epicId = manager.addNewEpic(new Epic("Эпик \"кавычки\"", "Описание <html>"));
+        for (int i = 0; i < 200; i++) {
+            Task task = new Task("Задача " + i, "Описание " + i);
+            if (i % 2 == 0) {
+                task.setDuration(Duration.ofMinutes(5));
+                task.setStartTime(LocalDateTime.of(2024, 1, 1, 0, 0).plusHours(i));
+            }
+            manager.addNewTask(task);
+            manager.addNewSubTask(new SubTask("Подзадача " + i, "Описание", epicId));
+        }
+        manager.getEpicById(epicId);
+
+        HttpClient client = HttpClient.newHttpClient();
+        assertStreamed(client, "/tasks", gson.toJson(manager.getAllTasks()));
+        assertStreamed(client, "/subtasks", gson.toJson(manager.getAllSubTasks()));
+        assertStreamed(client, "/epics", gson.toJson(manager.getAllEpics()));
+        assertStreamed(client, "/epics/" + epicId + "/subtasks", gson.toJson(manager.getEpicSubTasks(epicId)));
+        assertStreamed(client, "/history", gson.toJson(manager.getHistory()));
+        assertStreamed(client, "/prioritized", gson.toJson(manager.getPrioritizedTasks()));
+    }
+
+    private void assertStreamed(HttpClient client, String path, String expectedJson)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).GET().build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode(), "неверный статус-код для " + path);
+        assertEquals("chunked", response.headers().firstValue("Transfer-Encoding").orElse(null),
+                "список должен передаваться кусками: " + path);
+        assertEquals(expectedJson, response.body(), "тело ответа должно совпадать с gson.toJson: " + path);
+    }
+}
@@ -0,0 +1,77 @@
+package api;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.sun.management.ThreadMXBean;
+import model.Task;
+import service.Managers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Ответ со списком задач: прежний путь (строка gson.toJson, затем массив байт с фиксированной длиной) против
+// потоковой записи, как в BaseHttpHandler.sendJson. Тело пишется в пустой поток, так что меряется только
+// сериализация: время, выделенная память и сколько байт целиком держится в памяти до отправки.
+// Запуск: java -Xmx2g -cp <классы main и test> api.JsonStreamingBenchmark [задач]
+public class JsonStreamingBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Gson gson = Managers.getGson();
+        List<Task> tasks = generate(count);
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        System.out.printf("Задач: %,d%n", count);
+        System.out.printf("%-10s %10s %16s %18s%n", "Вариант", "мс", "Выделено, МБ", "Целиком в памяти, МБ");
+
+        for (int mode = 0; mode < 2; mode++) {
+            long bestNanos = Long.MAX_VALUE;
+            long bestBytes = Long.MAX_VALUE;
+            long retained = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long allocated = threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                OutputStream body = OutputStream.nullOutputStream();
+                if (mode == 0) {
+                    String json = gson.toJson(tasks);
+                    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+                    body.write(bytes);
+                    // строка хранит кириллицу в UTF-16, по 2 байта на символ
+                    retained = json.length() * 2L + bytes.length;
+                } else {
+                    try (JsonWriter writer = gson.newJsonWriter(new BufferedWriter(
+                            new OutputStreamWriter(body, StandardCharsets.UTF_8), 8192))) {
+                        gson.toJson(tasks, tasks.getClass(), writer);
+                    }
+                    retained = 8192 * 2 + 8192;
+                }
+                bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+                bestBytes = Math.min(bestBytes, threads.getCurrentThreadAllocatedBytes() - allocated);
+            }
+            System.out.printf("%-10s %10.1f %16.1f %18.3f%n", mode == 0 ? "toJson" : "stream", bestNanos / 1e6,
+                    bestBytes / 1_048_576.0, retained / 1_048_576.0);
+        }
+    }
+
+    private static List<Task> generate(int count) {
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+        List<Task> tasks = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            Task task = new Task("Задача " + id, "Описание задачи " + id, id);
+            if (id % 2 == 0) {
+                task.setDuration(Duration.ofMinutes(30));
+                task.setStartTime(base.plusHours(id));
+            }
+            tasks.add(task);
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,120 @@
+package api;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.Optional;
+import java.util.function.IntUnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Время и выделение памяти на разбор одного запроса: прежняя маршрутизация (регулярное выражение,
+// собираемое на каждый запрос, и Optional с идентификатором) против Router.
+// Запуск: java -cp <классы main и test> api.RouterBenchmark [запросов в раунде]
+public class RouterBenchmark {
+    private static final int ROUNDS = 5;
+    private static volatile long blackhole; // не дает JIT выбросить результат маршрутизации
+    private static final String[][] REQUESTS = {
+            {"tasks", "GET", "/tasks"},
+            {"tasks", "GET", "/tasks/123"},
+            {"tasks", "POST", "/tasks/123"},
+            {"subtasks", "DELETE", "/subtasks/98765"},
+            {"epics", "GET", "/epics/42/subtasks"},
+            {"epics", "GET", "/epics/fwefwfw"},
+    };
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        Router router = Router.standard();
+        for (String[] request : REQUESTS) {
+            Endpoint legacy = legacyRoute(request[0], request[2], request[1]).endpoint();
+            Endpoint routed = Router.endpoint(router.route(request[1], request[2]));
+            if (legacy != routed) throw new IllegalStateException("Маршруты разошлись: " + request[2]);
+        }
+        System.out.printf("Запросов в раунде: %,d%n", count);
+        System.out.printf("%-10s %10s %14s%n", "Вариант", "нс/запрос", "байт/запрос");
+        measure("regex", count, i -> {
+            String[] request = REQUESTS[i % REQUESTS.length];
+            return legacyRoute(request[0], request[2], request[1]).endpoint().ordinal();
+        });
+        measure("Router", count, i -> {
+            String[] request = REQUESTS[i % REQUESTS.length];
+            return (int) (router.route(request[1], request[2]) >>> 32);
+        });
+    }
+
+    private static void measure(String name, int count, IntUnaryOperator action) {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bestNanos = Long.MAX_VALUE;
+        long bestBytes = Long.MAX_VALUE;
+        long sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long bytes = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                sink += action.applyAsInt(i);
+            }
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            bestBytes = Math.min(bestBytes, threads.getCurrentThreadAllocatedBytes() - bytes);
+        }
+        blackhole = sink;
+        System.out.printf("%-10s %10.1f %14.1f%n", name, (double) bestNanos / count, (double) bestBytes / count);
+    }
+
+    // Маршрутизация в том виде, в каком она была в BaseHttpHandler до Router
+    private static LegacyEndpointData legacyRoute(String root, String requestPath, String requestMethod) {
+        String patternString = String.format("^/%s(/(\\d+))?(/subtasks)?$", root);
+        Pattern pattern = Pattern.compile(patternString);
+        Matcher matcher = pattern.matcher(requestPath);
+
+        if (matcher.find()) {
+            String id = matcher.group(2);
+            boolean epicSubtasks = matcher.group(3) != null;
+
+            switch (root) {
+                case "tasks" -> {
+                    if (id == null && requestMethod.equals("GET"))
+                        return new LegacyEndpointData(Endpoint.GET_TASKS, Optional.empty());
+                    if (id == null && requestMethod.equals("POST"))
+                        return new LegacyEndpointData(Endpoint.CREATE_TASK, Optional.empty());
+                    if (id != null && requestMethod.equals("GET"))
+                        return new LegacyEndpointData(Endpoint.GET_TASK_BY_ID, Optional.of(Integer.parseInt(id)));
+                    if (id != null && requestMethod.equals("POST"))
+                        return new LegacyEndpointData(Endpoint.UPDATE_TASK, Optional.of(Integer.parseInt(id)));
+                    if (id != null && requestMethod.equals("DELETE"))
+                        return new LegacyEndpointData(Endpoint.DELETE_TASK, Optional.of(Integer.parseInt(id)));
+                }
+                case "subtasks" -> {
+                    if (id == null && requestMethod.equals("GET"))
+                        return new LegacyEndpointData(Endpoint.GET_SUBTASKS, Optional.empty());
+                    if (id == null && requestMethod.equals("POST"))
+                        return new LegacyEndpointData(Endpoint.CREATE_SUBTASK, Optional.empty());
+                    if (id != null && requestMethod.equals("GET"))
+                        return new LegacyEndpointData(Endpoint.GET_SUBTASK_BY_ID, Optional.of(Integer.parseInt(id)));
+                    if (id != null && requestMethod.equals("POST"))
+                        return new LegacyEndpointData(Endpoint.UPDATE_SUBTASK, Optional.of(Integer.parseInt(id)));
+                    if (id != null && requestMethod.equals("DELETE"))
+                        return new LegacyEndpointData(Endpoint.DELETE_SUBTASK, Optional.of(Integer.parseInt(id)));
+                }
+                case "epics" -> {
+                    if (id == null && requestMethod.equals("GET"))
+                        return new LegacyEndpointData(Endpoint.GET_EPICS, Optional.empty());
+                    if (id == null && requestMethod.equals("POST"))
+                        return new LegacyEndpointData(Endpoint.CREATE_EPIC, Optional.empty());
+                    if (id != null && requestMethod.equals("GET") && !epicSubtasks)
+                        return new LegacyEndpointData(Endpoint.GET_EPIC_BY_ID, Optional.of(Integer.parseInt(id)));
+                    if (id != null && requestMethod.equals("GET"))
+                        return new LegacyEndpointData(Endpoint.GET_EPIC_SUBTASKS, Optional.of(Integer.parseInt(id)));
+                    if (id != null && requestMethod.equals("POST"))
+                        return new LegacyEndpointData(Endpoint.UPDATE_EPIC, Optional.of(Integer.parseInt(id)));
+                    if (id != null && requestMethod.equals("DELETE"))
+                        return new LegacyEndpointData(Endpoint.DELETE_EPIC, Optional.of(Integer.parseInt(id)));
+                }
+            }
+        }
+        return new LegacyEndpointData(Endpoint.UNKNOWN, Optional.empty());
+    }
+
+    private record LegacyEndpointData(Endpoint endpoint, Optional<Integer> idOptional) {
+    }
+}
@@ -0,0 +1,70 @@
+package api;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouterTest {
+    private final Router router = Router.standard();
+
+    private void assertRoute(Endpoint expectedEndpoint, int expectedId, String method, String path) {
+        long route = router.route(method, path);
+        assertEquals(expectedEndpoint, Router.endpoint(route), "неверный эндпоинт для " + method + " " + path);
+        assertEquals(expectedId, Router.id(route), "неверный параметр пути для " + method + " " + path);
+    }
+
+    @Test
+    void testRoutesEveryEndpoint() {
+        assertRoute(Endpoint.GET_TASKS, Router.NO_ID, "GET", "/tasks");
+        assertRoute(Endpoint.CREATE_TASK, Router.NO_ID, "POST", "/tasks");
+        assertRoute(Endpoint.GET_TASK_BY_ID, 7, "GET", "/tasks/7");
+        assertRoute(Endpoint.UPDATE_TASK, 7, "POST", "/tasks/7");
+        assertRoute(Endpoint.DELETE_TASK, 7, "DELETE", "/tasks/7");
+        assertRoute(Endpoint.GET_SUBTASKS, Router.NO_ID, "GET", "/subtasks");
+        assertRoute(Endpoint.GET_SUBTASK_BY_ID, 0, "GET", "/subtasks/0");
+        assertRoute(Endpoint.DELETE_SUBTASK, 12, "DELETE", "/subtasks/12");
+        assertRoute(Endpoint.GET_EPICS, Router.NO_ID, "GET", "/epics");
+        assertRoute(Endpoint.GET_EPIC_BY_ID, 3, "GET", "/epics/3");
+        assertRoute(Endpoint.GET_EPIC_SUBTASKS, 3, "GET", "/epics/3/subtasks");
+        assertRoute(Endpoint.UPDATE_EPIC, Integer.MAX_VALUE, "POST", "/epics/" + Integer.MAX_VALUE);
+        assertRoute(Endpoint.GET_HISTORY, Router.NO_ID, "GET", "/history");
+        assertRoute(Endpoint.GET_PRIORITIZED, Router.NO_ID, "GET", "/prioritized");
+    }
+
+    @Test
+    void testUnknownRequestsAreNotRouted() {
+        assertRoute(Endpoint.UNKNOWN, Router.NO_ID, "GET", "/tasks/fwefwfw");
+        assertRoute(Endpoint.UNKNOWN, Router.NO_ID, "GET", "/tasks/");
+        assertRoute(Endpoint.UNKNOWN, Router.NO_ID, "GET", "/tasks//1");
+        assertRoute(Endpoint.UNKNOWN, Router.NO_ID, "GET", "/tasks/-1");
+        assertRoute(Endpoint.UNKNOWN, Router.NO_ID, "GET", "/tasks/2147483648");
+        assertRoute(Endpoint.UNKNOWN, Router.NO_ID, "GET", "/tasks/1/subtasks");
+        assertRoute(Endpoint.UNKNOWN, Router.NO_ID, "GET", "/tasksx");
+        assertRoute(Endpoint.UNKNOWN, Router.NO_ID, "DELETE", "/tasks");
+        assertRoute(Endpoint.UNKNOWN, Router.NO_ID, "PUT", "/tasks/1");
+        assertRoute(Endpoint.UNKNOWN, Router.NO_ID, "TRACE", "/tasks");
+        assertRoute(Endpoint.UNKNOWN, Router.NO_ID, "POST", "/history");
+        assertRoute(Endpoint.UNKNOWN, Router.NO_ID, "GET", "/");
+        assertRoute(Endpoint.UNKNOWN, Router.NO_ID, "GET", "");
+    }
+
+    @Test
+    void testNestedRoutesCanBeAdded() {
+        Router nested = new Router()
+                .add("GET", "/epics/{id}/subtasks/done", Endpoint.GET_EPIC_SUBTASKS)
+                .add("GET", "/epics/{id}", Endpoint.GET_EPIC_BY_ID);
+        assertEquals(Endpoint.GET_EPIC_SUBTASKS, Router.endpoint(nested.route("GET", "/epics/5/subtasks/done")));
+        assertEquals(5, Router.id(nested.route("GET", "/epics/5/subtasks/done")));
+        assertEquals(Endpoint.UNKNOWN, Router.endpoint(nested.route("GET", "/epics/5/subtasks")),
+                "промежуточный узел без эндпоинта не должен находиться");
+    }
+
+    @Test
+    void testInvalidRoutesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Router.standard().add("GET", "/tasks", Endpoint.GET_TASKS),
+                "повторный маршрут должен отклоняться");
+        assertThrows(IllegalArgumentException.class, () -> new Router().add("GET", "/a/{id}/b/{id}", Endpoint.UNKNOWN));
+        assertThrows(IllegalArgumentException.class, () -> new Router().add("GET", "/tasks/", Endpoint.GET_TASKS));
+        assertThrows(IllegalArgumentException.class, () -> new Router().add("TRACE", "/tasks", Endpoint.GET_TASKS));
+    }
+}
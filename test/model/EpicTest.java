@@ -3,6 +3,9 @@ package model;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class EpicTest {
@@ -25,6 +28,15 @@ class EpicTest {
         epic1.addSubTaskToEpic(subTask2);
     }
 
+    @Test
+    public void shouldContainOnlyOwnSubTasks() {
+        assertTrue(epic1.containsSubTask(subTask1.getId()));
+        assertFalse(epic2.containsSubTask(subTask1.getId()));
+        epic1.deleteSubTaskFromEpic(subTask1.getId());
+        assertFalse(epic1.containsSubTask(subTask1.getId()));
+        assertTrue(epic1.containsSubTask(subTask2.getId()));
+    }
+
     @Test
     public void statusOfNewEpicShouldBeNEW() {
         assertEquals(Status.NEW, epic2.getStatus());
@@ -100,4 +112,48 @@ class EpicTest {
         assertTrue(epic2.getEpicSubTasks().contains(subTask1));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void shouldRecalculateTimesWhenSubTaskVersionReplaced() {
+        subTask1.setStartTime(LocalDateTime.of(2025, 1, 1, 9, 0));
+        subTask1.setDuration(Duration.ofHours(1));
+        epic1.addSubTaskToEpic(subTask1);
+        subTask2.setStartTime(LocalDateTime.of(2025, 1, 1, 12, 0));
+        subTask2.setDuration(Duration.ofHours(2));
+        epic1.addSubTaskToEpic(subTask2);
+
+        assertEquals(LocalDateTime.of(2025, 1, 1, 9, 0), epic1.getStartTime().orElseThrow());
+        assertEquals(LocalDateTime.of(2025, 1, 1, 14, 0), epic1.getEndTime());
+        assertEquals(Duration.ofHours(3), epic1.getDuration());
+
+        // новая версия той же подзадачи должна заменить вклад старой, а не добавиться к нему
+        SubTask updatedSubTask1 = new SubTask("Подзадача 1", "описание подзадачи1", epic1.getId(), 3);
+        updatedSubTask1.setStatus(Status.DONE);
+        updatedSubTask1.setStartTime(LocalDateTime.of(2025, 1, 1, 15, 0));
+        updatedSubTask1.setDuration(Duration.ofMinutes(30));
+        epic1.addSubTaskToEpic(updatedSubTask1);
+
+        assertEquals(2, epic1.getSubTasksCount());
+        assertEquals(Status.IN_PROGRESS, epic1.getStatus());
+        assertEquals(LocalDateTime.of(2025, 1, 1, 12, 0), epic1.getStartTime().orElseThrow());
+        assertEquals(LocalDateTime.of(2025, 1, 1, 15, 30), epic1.getEndTime());
+        assertEquals(Duration.ofMinutes(150), epic1.getDuration());
+    }
+
+    @Test
+    public void shouldResetStatusAndTimesWhenLastSubTaskDeleted() {
+        subTask1.setStatus(Status.DONE);
+        subTask1.setStartTime(LocalDateTime.of(2025, 1, 1, 9, 0));
+        subTask1.setDuration(Duration.ofHours(1));
+        epic1.addSubTaskToEpic(subTask1);
+        epic1.deleteSubTaskFromEpic(subTask2.getId());
+        assertEquals(Status.DONE, epic1.getStatus());
+
+        epic1.deleteSubTaskFromEpic(subTask1.getId());
+
+        assertEquals(Status.NEW, epic1.getStatus());
+        assertEquals(Duration.ZERO, epic1.getDuration());
+        assertTrue(epic1.getStartTime().isEmpty());
+        assertNull(epic1.getEndTime());
+    }
+
+}
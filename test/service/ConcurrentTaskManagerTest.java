@@ -0,0 +1,190 @@
+package service;
+
+import model.Epic;
+import model.Status;
+import model.SubTask;
+import model.Task;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentTaskManagerTest extends TaskManagerTest<ConcurrentTaskManager> {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 2_000;
+
+    @Override
+    protected ConcurrentTaskManager getManager() {
+        return new ConcurrentTaskManager();
+    }
+
+    @Test
+    void shouldKeepInvariantsUnderConcurrentWrites() throws Exception {
+        List<Integer> sharedEpicIds = List.of(epic1Id, epic2Id);
+        ConcurrentLinkedQueue<Integer> createdTaskIds = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<Integer> createdSubTaskIds = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<Integer> deletedSubTaskIds = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int threadNumber = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(threadNumber);
+                // у каждого потока свой год, чтобы задачи разных потоков не пересекались по времени
+                LocalDateTime slot = LocalDateTime.of(2030 + threadNumber, 1, 1, 0, 0);
+                List<SubTask> ownSubTasks = new ArrayList<>();
+                start.await();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    switch (random.nextInt(5)) {
+                        case 0 -> {
+                            Task task = new Task("Задача", "Описание");
+                            task.setStartTime(slot.plusHours(i));
+                            task.setDuration(Duration.ofMinutes(30));
+                            createdTaskIds.add(manager.addNewTask(task));
+                        }
+                        case 1 -> {
+                            SubTask subTask = new SubTask("Подзадача", "Описание",
+                                    sharedEpicIds.get(random.nextInt(sharedEpicIds.size())));
+                            subTask.setStartTime(slot.plusHours(i));
+                            subTask.setDuration(Duration.ofMinutes(random.nextInt(60)));
+                            createdSubTaskIds.add(manager.addNewSubTask(subTask));
+                            ownSubTasks.add(subTask);
+                        }
+                        case 2 -> {
+                            if (ownSubTasks.isEmpty()) continue;
+                            // переданный в менеджер объект менять нельзя - изменяется полученная копия
+                            SubTask subTask = manager.getSubTaskById(
+                                    ownSubTasks.get(random.nextInt(ownSubTasks.size())).getId()).orElseThrow();
+                            subTask.setStatus(Status.values()[random.nextInt(Status.values().length)]);
+                            manager.updateSubTask(subTask);
+                        }
+                        case 3 -> {
+                            if (ownSubTasks.isEmpty()) continue;
+                            SubTask subTask = ownSubTasks.remove(random.nextInt(ownSubTasks.size()));
+                            manager.deleteSubTask(subTask.getId());
+                            deletedSubTaskIds.add(subTask.getId());
+                        }
+                        default -> {
+                            manager.getPrioritizedTasks();
+                            manager.getEpicSubTasks(sharedEpicIds.get(random.nextInt(sharedEpicIds.size())));
+                            manager.getEpicById(epic1Id);
+                            if (i % 20 == 0) manager.verifyIntegrity(); // обходит все таблицы, пока другие пишут
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Set<Integer> allIds = new HashSet<>(createdTaskIds);
+        allIds.addAll(createdSubTaskIds);
+        assertEquals(createdTaskIds.size() + createdSubTaskIds.size(), allIds.size(), "id не должны повторяться");
+        assertEquals(createdTaskIds.size() + 2, manager.getAllTasks().size(), "Задачи не должны теряться");
+        assertEquals(createdSubTaskIds.size() - deletedSubTaskIds.size() + 2, manager.getAllSubTasks().size(),
+                "Подзадачи не должны теряться");
+
+        for (Epic epic : manager.getAllEpics()) {
+            assertEpicConsistentWithSubTasks(epic, manager.getEpicSubTasks(epic.getId()));
+        }
+        assertDoesNotThrow(manager::verifyIntegrity);
+    }
+
+    @Test
+    void readsByIdDuringDeletesShouldNotLeaveDeletedTasksInHistory() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            ids.add(manager.addNewTask(new Task("Задача " + i, "Описание")));
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> {
+            start.await();
+            ids.forEach(manager::deleteTask);
+            return null;
+        }));
+        for (int t = 1; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int id : ids) {
+                    manager.getTaskById(id).ifPresent(task -> assertEquals(id, task.getId(), "Чужая задача по id"));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Set<Integer> deletedIds = new HashSet<>(ids);
+        assertTrue(manager.getHistory().stream().noneMatch(task -> deletedIds.contains(task.getId())),
+                "Удаленные задачи не должны оставаться в истории");
+    }
+
+    @Test
+    void shouldReturnCopiesThatDoNotChangeWithManager() {
+        Task task = manager.getTaskById(task1Id).orElseThrow();
+        task.setTitle("Изменена снаружи");
+        assertNotEquals("Изменена снаружи", manager.getTaskById(task1Id).orElseThrow().getTitle(),
+                "Изменение полученной задачи не должно попадать в менеджер без updateTask");
+        assertNotSame(manager.getAllTasks().getFirst(), manager.getAllTasks().getFirst());
+
+        Epic epic = manager.getEpicById(epic1Id).orElseThrow();
+        int subTasksCount = epic.getSubTasksCount();
+        Status status = epic.getStatus();
+        SubTask subTask = new SubTask("Новая", "Описание", epic1Id);
+        subTask.setStatus(Status.DONE);
+        manager.addNewSubTask(subTask);
+        assertEquals(subTasksCount, epic.getSubTasksCount(), "Полученный эпик не должен меняться вместе с менеджером");
+        assertEquals(status, epic.getStatus());
+        assertEquals(subTasksCount + 1, manager.getEpicById(epic1Id).orElseThrow().getSubTasksCount());
+        assertEquals(manager.getEpicSubTasks(epic1Id).size(), manager.getEpicById(epic1Id).orElseThrow()
+                .getEpicSubTasks().size(), "Копия эпика содержит копии всех подзадач");
+    }
+
+    private static void assertEpicConsistentWithSubTasks(Epic epic, List<SubTask> subTasks) {
+        Status expectedStatus = Status.IN_PROGRESS;
+        if (subTasks.isEmpty() || subTasks.stream().allMatch(subTask -> subTask.getStatus() == Status.NEW)) {
+            expectedStatus = Status.NEW;
+        } else if (subTasks.stream().allMatch(subTask -> subTask.getStatus() == Status.DONE)) {
+            expectedStatus = Status.DONE;
+        }
+        assertEquals(expectedStatus, epic.getStatus(), "Статус эпика не соответствует подзадачам");
+
+        Duration expectedDuration = subTasks.stream()
+                .filter(subTask -> subTask.getStartTime().isPresent())
+                .map(SubTask::getDuration)
+                .reduce(Duration.ZERO, Duration::plus);
+        assertEquals(expectedDuration, epic.getDuration(), "Длительность эпика не соответствует подзадачам");
+
+        LocalDateTime expectedStart = subTasks.stream()
+                .map(subTask -> subTask.getStartTime().orElse(null))
+                .filter(Objects::nonNull)
+                .min(LocalDateTime::compareTo)
+                .orElse(null);
+        assertEquals(expectedStart, epic.getStartTime().orElse(null), "Начало эпика не соответствует подзадачам");
+    }
+}
@@ -0,0 +1,82 @@
+package service;
+
+import model.Status;
+import model.Type;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Supplier;
+
+// Загрузка снимка на миллион строк: эпики, задачи и подзадачи, у половины задано время.
+// Сравнивает последовательную загрузку с параллельной (ForkJoinPool.commonPool()).
+// Запуск: java -Xmx2g -cp <классы main и test> service.FileBackedTaskManagerLoadBenchmark [строк]
+public class FileBackedTaskManagerLoadBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int SUBTASKS_PER_EPIC = 50;
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path file = Files.createTempFile("tasks", ".csv");
+        try {
+            writeRows(file, rows);
+            System.out.printf("Строк: %,d, размер файла: %,d байт%n", rows, Files.size(file));
+
+            System.out.printf("Ядер: %d%n", Runtime.getRuntime().availableProcessors());
+            long sequential = measure("Последовательно", rows, () -> FileBackedTaskManager.loadFromFile(file.toFile()));
+            long parallel = measure("Параллельно", rows, () -> FileBackedTaskManager.loadFromFileParallel(file.toFile()));
+            System.out.printf("Ускорение: %.2fx%n", (double) sequential / parallel);
+        } finally {
+            deleteSnapshotFiles(file.toFile());
+        }
+    }
+
+    // Возвращает лучшее время из раундов, в нс
+    private static long measure(String name, int rows, Supplier<FileBackedTaskManager> load) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            FileBackedTaskManager manager = load.get();
+            long elapsed = System.nanoTime() - start;
+            best = Math.min(best, elapsed);
+            int loaded = manager.getAllTasks().size() + manager.getAllSubTasks().size()
+                    + manager.getAllEpics().size();
+            System.out.printf("%s, раунд %d: %d мс, %.2f мкс на строку%s%n", name, round + 1, elapsed / 1_000_000,
+                    elapsed / 1_000.0 / rows, loaded == rows ? "" : " - загружено " + loaded + " строк!");
+        }
+        return best;
+    }
+
+    // Строки пишутся напрямую, чтобы не держать в памяти второй набор задач. Подзадачи идут раньше своих
+    // эпиков, а время у задач с временем не пересекается: каждая занимает свой час.
+    private static void writeRows(Path file, int rows) throws IOException {
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("id,type,name,status,description,duration,startTime,epic\n");
+            int id = 0;
+            while (id < rows) {
+                int epicId = Math.min(id + SUBTASKS_PER_EPIC + 1, rows);
+                while (++id < epicId) {
+                    Type type = id % 2 == 0 ? Type.SUBTASK : Type.TASK;
+                    String startTime = id % 4 < 2 ? base.plusHours(id).format(formatter) : "null";
+                    writer.write(id + "," + type + ",Задача " + id + "," + Status.values()[id % 3]
+                            + ",Описание," + 30 + "," + startTime + "," + (type == Type.SUBTASK ? epicId : "")
+                            + "\n");
+                }
+                writer.write(epicId + ",EPIC,Эпик " + epicId + ",NEW,Описание,0,null,\n");
+            }
+        }
+    }
+
+    private static void deleteSnapshotFiles(File file) throws IOException {
+        for (String suffix : new String[]{"", ".prev", ".next", ".wal", ".wal.old", ".prev.wal"}) {
+            Files.deleteIfExists(Path.of(file.getPath() + suffix));
+        }
+    }
+}
@@ -5,17 +5,25 @@ import model.Epic;
 import model.Status;
 import model.SubTask;
 import model.Task;
+import model.Type;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -193,4 +201,674 @@ class FileBackedTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
         });
     }
 
-}
\ No newline at end of file
+    @Test
+    void testSaveAndLoadAfterBatch() {
+        Task taskA = new Task("Пакетная задача", "Описание");
+        SubTask subTask3 = new SubTask("Пакетная подзадача", "Описание", epic2Id);
+
+        manager.applyBatch(List.of(Operation.add(taskA), Operation.add(subTask3), Operation.delete(Type.TASK, task1Id)));
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(testFile);
+        assertEquals(List.of(task2Id, taskA.getId()), loadedManager.getAllTasks().stream().map(Task::getId).toList());
+        assertEquals(1, loadedManager.getEpicSubTasks(epic2Id).size());
+        assertEquals("Пакетная подзадача", loadedManager.getEpicSubTasks(epic2Id).getFirst().getTitle());
+    }
+
+    @Test
+    void testWalAppendsChangesAndReplaysThemOnLoad() throws IOException {
+        File walBackedFile = tempDir.resolve("wal.csv").toFile();
+        FileBackedTaskManager walManager = new FileBackedTaskManager(walBackedFile, PersistenceMode.WAL);
+        Task task = new Task("Задача", "Описание");
+        int taskId = walManager.addNewTask(task);
+        Epic epic = new Epic("Эпик", "Описание");
+        int epicId = walManager.addNewEpic(epic);
+        String snapshot = Files.readString(walBackedFile.toPath());
+
+        SubTask subTask = new SubTask("Подзадача", "Описание", epicId);
+        subTask.setStartTime(LocalDateTime.of(2025, 9, 9, 10, 0));
+        subTask.setDuration(Duration.ofMinutes(45));
+        int subTaskId = walManager.addNewSubTask(subTask);
+        subTask.setStatus(Status.DONE);
+        walManager.updateSubTask(subTask);
+        epic.setTitle("Обновленный эпик");
+        walManager.updateEpic(epic);
+        walManager.deleteTask(taskId);
+        walManager.applyBatch(List.of(Operation.add(new Task("Пакетная задача", "Описание"))));
+        walManager.close();
+
+        assertEquals(snapshot, Files.readString(walBackedFile.toPath()), "В режиме WAL снимок не должен переписываться");
+        assertEquals(6, Files.readAllLines(Path.of(walBackedFile.getPath() + ".wal")).size(),
+                "На каждое изменение должна дописываться одна запись");
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(walBackedFile, PersistenceMode.WAL);
+        assertTrue(loadedManager.getTaskById(taskId).isEmpty(), "Удаленная задача не должна восстановиться");
+        assertEquals(1, loadedManager.getAllTasks().size());
+        Epic loadedEpic = loadedManager.getEpicById(epicId).orElseThrow();
+        assertEquals("Обновленный эпик", loadedEpic.getTitle());
+        assertEquals(Status.DONE, loadedEpic.getStatus(), "Статус эпика должен пересчитаться по подзадачам");
+        assertEquals(List.of(subTaskId), loadedManager.getEpicSubTasks(epicId).stream().map(Task::getId).toList());
+        assertEquals(List.of(subTaskId), loadedManager.getPrioritizedTasks().stream().map(Task::getId).toList());
+        assertEquals(subTaskId + 2, loadedManager.addNewTask(new Task("Новая", "Описание")),
+                "Счетчик id должен учитывать записи журнала");
+        loadedManager.close();
+    }
+
+    @Test
+    void testWalSkipsTornLastRecordAndClearRecords() throws IOException {
+        File walBackedFile = tempDir.resolve("torn.csv").toFile();
+        FileBackedTaskManager walManager = new FileBackedTaskManager(walBackedFile, PersistenceMode.WAL);
+        walManager.addNewTask(new Task("Задача 1", "Описание"));
+        walManager.addNewTask(new Task("Задача 2", "Описание"));
+        walManager.deleteAllTasks();
+        walManager.addNewTask(new Task("Задача 3", "Описание"));
+        walManager.close();
+        Files.writeString(Path.of(walBackedFile.getPath() + ".wal"), "U,5,TASK,Обор", StandardOpenOption.APPEND);
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(walBackedFile, PersistenceMode.WAL);
+        assertEquals(List.of("Задача 3"), loadedManager.getAllTasks().stream().map(Task::getTitle).toList(),
+                "Оборванная последняя запись должна пропускаться");
+        loadedManager.close();
+    }
+
+    @Test
+    void testWalSkipsLastRecordTornInsideNumber() throws IOException {
+        File walBackedFile = tempDir.resolve("torn-number.csv").toFile();
+        Path walFile = Path.of(walBackedFile.getPath() + ".wal");
+        FileBackedTaskManager walManager = new FileBackedTaskManager(walBackedFile, PersistenceMode.WAL);
+        int epicId = walManager.addNewEpic(new Epic("Эпик", "Описание"));
+        walManager.addNewSubTask(new SubTask("Подзадача", "Описание", epicId));
+        walManager.close();
+        // обрыв внутри последнего числа записи подзадачи: строка еще разбирается, но без перевода строки
+        // и с неверной CRC применяться не должна
+        byte[] wal = Files.readAllBytes(walFile);
+        Files.write(walFile, Arrays.copyOf(wal, wal.length - 2));
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(walBackedFile, PersistenceMode.WAL);
+        assertTrue(loadedManager.getAllSubTasks().isEmpty(), "Оборванная запись подзадачи не должна проигрываться");
+        assertEquals(1, loadedManager.getAllEpics().size());
+        loadedManager.close();
+    }
+
+    @Test
+    void testWalAppendsAfterTornTailSurviveReload() throws IOException {
+        File walBackedFile = tempDir.resolve("torn-append.csv").toFile();
+        Path walFile = Path.of(walBackedFile.getPath() + ".wal");
+        FileBackedTaskManager walManager = new FileBackedTaskManager(walBackedFile, PersistenceMode.WAL);
+        walManager.addNewTask(new Task("Задача 1", "Описание"));
+        walManager.addNewTask(new Task("Задача 2", "Описание"));
+        walManager.addNewTask(new Task("Задача 3", "Описание"));
+        walManager.close();
+        byte[] wal = Files.readAllBytes(walFile);
+        Files.write(walFile, Arrays.copyOf(wal, wal.length - 5));
+
+        walManager = FileBackedTaskManager.loadFromFile(walBackedFile, PersistenceMode.WAL);
+        assertEquals(2, walManager.getAllTasks().size());
+        int firstId = walManager.addNewTask(new Task("После обрыва 1", "Описание"));
+        int secondId = walManager.addNewTask(new Task("После обрыва 2", "Описание"));
+        walManager.close();
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(walBackedFile, PersistenceMode.WAL);
+        assertEquals(4, loadedManager.getAllTasks().size(), "Записи после обрывка не должны теряться");
+        assertTrue(loadedManager.getTaskById(firstId).isPresent());
+        assertTrue(loadedManager.getTaskById(secondId).isPresent());
+        assertTrue(loadedManager.addNewTask(new Task("Новая", "Описание")) > secondId, "id не должны выдаваться повторно");
+        loadedManager.close();
+    }
+
+    @Test
+    void testCorruptedWalRecordInTheMiddleFailsLoad() throws IOException {
+        File walBackedFile = tempDir.resolve("crc.csv").toFile();
+        Path walFile = Path.of(walBackedFile.getPath() + ".wal");
+        FileBackedTaskManager walManager = new FileBackedTaskManager(walBackedFile, PersistenceMode.WAL);
+        walManager.addNewTask(new Task("Задача 1", "Описание"));
+        walManager.addNewTask(new Task("Задача 2", "Описание"));
+        walManager.addNewTask(new Task("Задача 3", "Описание"));
+        walManager.close();
+        List<String> lines = new ArrayList<>(Files.readAllLines(walFile));
+        assertTrue(lines.size() > 1 && lines.get(0).contains("Задача 2"));
+        lines.set(0, lines.get(0).replace("Задача 2", "Задача 9"));
+        Files.write(walFile, lines);
+
+        assertThrows(ManagerSaveException.class,
+                () -> FileBackedTaskManager.loadFromFile(walBackedFile, PersistenceMode.WAL),
+                "Запись с неверной CRC в середине журнала означает повреждение");
+    }
+
+    @Test
+    void testWalReplaysBatchWithTransientTimeOverlap() {
+        File walBackedFile = tempDir.resolve("overlap.csv").toFile();
+        FileBackedTaskManager walManager = new FileBackedTaskManager(walBackedFile, PersistenceMode.WAL);
+        Task x = new Task("x", "Описание");
+        x.setStartTime(LocalDateTime.of(2025, 9, 9, 10, 0));
+        x.setDuration(Duration.ofMinutes(30));
+        int xId = walManager.addNewTask(x);
+        Task z = new Task("z", "Описание");
+        z.setStartTime(LocalDateTime.of(2025, 9, 9, 10, 0));
+        z.setDuration(Duration.ofMinutes(30));
+        // в пакете z занимает время x, которая удаляется тем же пакетом
+        walManager.applyBatch(List.of(Operation.add(z), Operation.delete(Type.TASK, xId)));
+        walManager.close();
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(walBackedFile, PersistenceMode.WAL);
+        assertEquals(List.of("z"), loadedManager.getPrioritizedTasks().stream().map(Task::getTitle).toList(),
+                "Журнал должен проигрываться без повторной проверки пересечений");
+        loadedManager.close();
+    }
+
+    @Test
+    void testSnapshotLoadFoldsWalIntoSnapshot() {
+        File walBackedFile = tempDir.resolve("fold.csv").toFile();
+        FileBackedTaskManager walManager = new FileBackedTaskManager(walBackedFile, PersistenceMode.WAL);
+        walManager.addNewTask(new Task("Задача 1", "Описание"));
+        walManager.addNewTask(new Task("Задача 2", "Описание"));
+        walManager.close();
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(walBackedFile);
+        assertEquals(2, loadedManager.getAllTasks().size());
+        assertFalse(Files.exists(Path.of(walBackedFile.getPath() + ".wal")),
+                "В режиме SNAPSHOT журнал должен переноситься в снимок");
+        assertEquals(2, FileBackedTaskManager.loadFromFile(walBackedFile).getAllTasks().size());
+    }
+
+    @Test
+    void testWalCompactsByRecordCountAndLoadsOnlyLogTail() throws IOException {
+        File walBackedFile = tempDir.resolve("compact.csv").toFile();
+        Path walFile = Path.of(walBackedFile.getPath() + ".wal");
+        CompactionPolicy policy = new CompactionPolicy(Long.MAX_VALUE, 5, null);
+        FileBackedTaskManager walManager = new FileBackedTaskManager(walBackedFile, PersistenceMode.WAL, policy);
+        int epicId = walManager.addNewEpic(new Epic("Эпик", "Описание"));
+        for (int i = 0; i < 12; i++) {
+            SubTask subTask = new SubTask("Подзадача " + i, "Описание", epicId);
+            subTask.setStartTime(LocalDateTime.of(2025, 9, 9, 0, 0).plusHours(i));
+            subTask.setDuration(Duration.ofMinutes(30));
+            walManager.addNewSubTask(subTask);
+            if (i % 3 == 0) {
+                subTask.setStatus(Status.DONE);
+                walManager.updateSubTask(subTask);
+            }
+        }
+        walManager.close();
+
+        // 16 изменений после первого снимка; пока идет фоновое сжатие, журнал может немного превысить порог,
+        // а если сжатие запустило последнее изменение, нового журнала еще нет
+        int tailSize = Files.exists(walFile) ? Files.readAllLines(walFile).size() : 0;
+        assertTrue(tailSize < 16, "После сжатия в журнале должен остаться только хвост");
+        assertFalse(Files.exists(Path.of(walBackedFile.getPath() + ".wal.old")),
+                "Поглощенный снимком журнал должен удаляться");
+        assertTrue(Files.readAllLines(walBackedFile.toPath()).size() > 1, "Сжатие должно записать снимок");
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(walBackedFile, PersistenceMode.WAL);
+        assertEquals(walManager.getAllSubTasks().stream().map(TaskManagerUtils::convertToString).toList(),
+                loadedManager.getAllSubTasks().stream().map(TaskManagerUtils::convertToString).toList());
+        assertEquals(TaskManagerUtils.convertToString(walManager.getEpicById(epicId).orElseThrow()),
+                TaskManagerUtils.convertToString(loadedManager.getEpicById(epicId).orElseThrow()));
+        loadedManager.close();
+    }
+
+    @Test
+    void testWalCompactionDoesNotSeeChangesMadeAfterRotation() throws IOException {
+        File walBackedFile = tempDir.resolve("frozen.csv").toFile();
+        FileBackedTaskManager walManager = new FileBackedTaskManager(walBackedFile, PersistenceMode.WAL);
+        Task task = new Task("До сжатия", "Описание");
+        walManager.addNewTask(task);
+        walManager.addNewTask(new Task("Вторая", "Описание"));
+
+        var compaction = walManager.compact();
+        task.setTitle("После сжатия");
+        walManager.updateTask(task);
+        compaction.join();
+
+        assertTrue(Files.readString(walBackedFile.toPath()).contains("До сжатия"),
+                "Снимок должен содержать состояние на момент ротации журнала");
+        walManager.close();
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(walBackedFile, PersistenceMode.WAL);
+        assertEquals("После сжатия", loadedManager.getTaskById(task.getId()).orElseThrow().getTitle(),
+                "Изменения после ротации должны восстановиться из журнала");
+        loadedManager.close();
+    }
+
+    @Test
+    void testLoadRecoversInterruptedCompaction() throws IOException {
+        File walBackedFile = tempDir.resolve("crash.csv").toFile();
+        Path walFile = Path.of(walBackedFile.getPath() + ".wal");
+        Path rotatedLog = Path.of(walBackedFile.getPath() + ".wal.old");
+        Path nextSnapshot = Path.of(walBackedFile.getPath() + ".next");
+        String header = "id,type,name,status,description,duration,startTime,epic";
+        Files.write(walBackedFile.toPath(), List.of(header, "1,TASK,Задача 1,NEW,Описание,0,null,"));
+
+        // сбой во время записи .next: недописанный снимок отбрасывается, журналы проигрываются поверх старого
+        Files.writeString(nextSnapshot, header + "\n2,TASK,Обор");
+        Files.write(rotatedLog, List.of("U,2,TASK,Задача 2,NEW,Описание,0,null,"));
+        Files.write(walFile, List.of("D,TASK,1"));
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(walBackedFile, PersistenceMode.WAL);
+        assertEquals(List.of("Задача 2"), loadedManager.getAllTasks().stream().map(Task::getTitle).toList());
+        assertFalse(Files.exists(rotatedLog), "Незавершенное сжатие должно быть доведено до конца");
+        loadedManager.close();
+
+        // сбой после удаления .wal.old: .next уже полный и заменяет основной файл
+        Files.writeString(nextSnapshot, withChecksum(header + "\n3,TASK,Задача 3,NEW,Описание,0,null,\n"));
+        Files.write(walFile, List.of("U,4,TASK,Задача 4,NEW,Описание,0,null,"));
+        loadedManager = FileBackedTaskManager.loadFromFile(walBackedFile, PersistenceMode.WAL);
+        assertEquals(List.of("Задача 3", "Задача 4"), loadedManager.getAllTasks().stream().map(Task::getTitle).toList());
+        loadedManager.close();
+    }
+
+    @Test
+    void testTruncatedNextSnapshotIsNotPromoted() throws IOException {
+        File walBackedFile = tempDir.resolve("truncated.csv").toFile();
+        Path nextSnapshot = Path.of(walBackedFile.getPath() + ".next");
+        String header = "id,type,name,status,description,duration,startTime,epic";
+        Files.writeString(walBackedFile.toPath(), withChecksum(header + "\n1,TASK,Задача 1,NEW,Описание,0,null,\n"));
+
+        // .next оборван ровно перед строкой контрольной суммы: без нее он не отличается от полного старого снимка
+        String next = withChecksum(header + "\n2,TASK,Задача 2,NEW,Описание,0,null,\n");
+        Files.writeString(nextSnapshot, next.substring(0, next.indexOf("#checksum,")));
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(walBackedFile, PersistenceMode.WAL);
+        assertEquals(List.of("Задача 1"), loadedManager.getAllTasks().stream().map(Task::getTitle).toList(),
+                "Оборванный .next не должен заменять основной снимок");
+        assertFalse(Files.exists(nextSnapshot), "Оборванный .next должен быть удален");
+        loadedManager.close();
+
+        // пустой .next тоже отбрасывается
+        Files.writeString(nextSnapshot, "");
+        loadedManager = FileBackedTaskManager.loadFromFile(walBackedFile, PersistenceMode.WAL);
+        assertEquals(List.of("Задача 1"), loadedManager.getAllTasks().stream().map(Task::getTitle).toList());
+        assertFalse(Files.exists(nextSnapshot));
+        loadedManager.close();
+    }
+
+    private static String withChecksum(String content) {
+        CRC32 checksum = new CRC32();
+        checksum.update(content.getBytes(StandardCharsets.UTF_8));
+        return content + "#checksum," + Long.toHexString(checksum.getValue()) + "\n";
+    }
+
+    @Test
+    void testBatchedWritesCoalesceAndBecomeDurable() throws IOException {
+        File walBackedFile = tempDir.resolve("batched.csv").toFile();
+        Path walFile = Path.of(walBackedFile.getPath() + ".wal");
+        WritePolicy writePolicy = WritePolicy.batched(Duration.ofHours(1), 1_000);
+        FileBackedTaskManager walManager = new FileBackedTaskManager(walBackedFile, PersistenceMode.WAL,
+                CompactionPolicy.disabled(), writePolicy);
+        walManager.addNewTask(new Task("Первая", "Описание"));
+        for (int i = 0; i < 10; i++) {
+            walManager.addNewTask(new Task("Задача " + i, "Описание"));
+        }
+
+        assertEquals(10, walManager.getPendingRecords(), "До сброса изменения должны ждать в очереди");
+        assertFalse(Files.exists(walFile), "Пачка не должна записываться раньше интервала");
+        assertTrue(walManager.getPersistenceLag().compareTo(Duration.ZERO) > 0);
+
+        walManager.compact().join(); // сжатие сначала сбрасывает очередь
+        assertEquals(0, walManager.getPendingRecords());
+        assertEquals(Duration.ZERO, walManager.getPersistenceLag());
+        walManager.addNewTask(new Task("После сжатия", "Описание"));
+        walManager.close();
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(walBackedFile, PersistenceMode.WAL);
+        assertEquals(12, loadedManager.getAllTasks().size(), "При закрытии очередь должна дописываться в журнал");
+        loadedManager.close();
+    }
+
+    @Test
+    void testWhenDurableCompletesAfterGroupFlush() {
+        File walBackedFile = tempDir.resolve("durable.csv").toFile();
+        WritePolicy writePolicy = WritePolicy.none(Duration.ofMillis(5), 1_000);
+        FileBackedTaskManager walManager = new FileBackedTaskManager(walBackedFile, PersistenceMode.WAL,
+                CompactionPolicy.disabled(), writePolicy);
+        walManager.addNewTask(new Task("Первая", "Описание"));
+        for (int i = 0; i < 100; i++) {
+            walManager.addNewTask(new Task("Задача " + i, "Описание"));
+        }
+        walManager.whenDurable().join();
+
+        assertEquals(0, walManager.getPendingRecords());
+        assertEquals(101, FileBackedTaskManager.loadFromFile(walBackedFile, PersistenceMode.WAL).getAllTasks().size(),
+                "После подтверждения все изменения должны быть в журнале");
+        walManager.close();
+    }
+
+    @Test
+    void testSnapshotIsChecksummedAndCorruptionFallsBackToPreviousGeneration() throws IOException {
+        List<String> lines = Files.readAllLines(testFile.toPath());
+        assertTrue(lines.getLast().startsWith("#checksum,"), "Снимок должен заканчиваться контрольной суммой");
+        assertFalse(Files.exists(Path.of(testFile.getPath() + ".next")), "Временный снимок не должен оставаться");
+
+        manager.deleteTask(task1Id);
+        byte[] content = Files.readAllBytes(testFile.toPath());
+        content[content.length / 2] ^= 1;
+        Files.write(testFile.toPath(), content);
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(testFile);
+        assertEquals(List.of(task1Id, task2Id), loadedManager.getAllTasks().stream().map(Task::getId).toList(),
+                "При повреждении снимка должно загрузиться предыдущее поколение");
+        assertEquals(2, FileBackedTaskManager.loadFromFile(testFile).getAllTasks().size(),
+                "Поврежденный снимок должен быть перезаписан восстановленным");
+    }
+
+    @Test
+    void testCorruptedWalSnapshotFallsBackToPreviousGenerationAndAbsorbedLog() throws IOException {
+        File walBackedFile = tempDir.resolve("generations.csv").toFile();
+        FileBackedTaskManager walManager = new FileBackedTaskManager(walBackedFile, PersistenceMode.WAL);
+        walManager.addNewTask(new Task("Задача 1", "Описание"));
+        walManager.addNewTask(new Task("Задача 2", "Описание"));
+        walManager.compact().join();
+        walManager.addNewTask(new Task("Задача 3", "Описание"));
+        walManager.close();
+
+        Files.writeString(walBackedFile.toPath(), "мусор");
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(walBackedFile, PersistenceMode.WAL);
+        assertEquals(List.of("Задача 1", "Задача 2", "Задача 3"),
+                loadedManager.getAllTasks().stream().map(Task::getTitle).toList(),
+                "Предыдущее поколение вместе с поглощенным журналом должно дать полное состояние");
+        loadedManager.close();
+    }
+
+    @Test
+    void loadFromFile_shouldAttachSubTasksListedBeforeTheirEpic() throws IOException {
+        List<String> testData = List.of(
+                "id,type,name,status,description,duration,startTime,epic",
+                "3,SUBTASK,SubTask 1,DONE,Sub description 1,60,07.09.2025 10:00,2",
+                "4,SUBTASK,SubTask 2,NEW,Sub description 2,30,07.09.2025 12:00,2",
+                "2,EPIC,Epic 1,NEW,Epic description 1,0,null,",
+                "1,TASK,Task 1,NEW,Description 1,15,07.09.2025 11:00,"
+        );
+        Files.write(testFile.toPath(), testData);
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(testFile);
+
+        Epic epic = loadedManager.getEpicById(2).orElseThrow();
+        assertEquals(2, epic.getSubTasksCount(), "Подзадачи должны привязаться к эпику из строки ниже");
+        assertEquals(Status.IN_PROGRESS, epic.getStatus());
+        assertEquals(Duration.ofMinutes(90), epic.getDuration());
+        assertEquals(List.of(3, 1, 4), loadedManager.getPrioritizedTasks().stream().map(Task::getId).toList());
+    }
+
+    @Test
+    void loadFromFile_shouldRejectSubTaskWithoutEpic() throws IOException {
+        List<String> testData = List.of(
+                "id,type,name,status,description,duration,startTime,epic",
+                "3,SUBTASK,SubTask 1,NEW,Sub description 1,60,null,2"
+        );
+        Files.write(testFile.toPath(), testData);
+
+        assertThrows(ManagerSaveException.class, () -> FileBackedTaskManager.loadFromFile(testFile));
+    }
+
+    @Test
+    void testBinarySnapshotRoundTripsAllFields() {
+        File binaryFile = tempDir.resolve("tasks.bin").toFile();
+        FileBackedTaskManager manager = Managers.getFileBacked(binaryFile, SnapshotFormat.BINARY);
+        Task task = new Task("Задача, с запятой", null);
+        task.setStatus(Status.IN_PROGRESS);
+        task.setStartTime(LocalDateTime.of(1969, 12, 31, 23, 15));
+        task.setDuration(Duration.ofMinutes(45));
+        int taskId = manager.addNewTask(task);
+        int epicId = manager.addNewEpic(new Epic("Эпик", "Описание эпика"));
+        SubTask subTask = new SubTask("Подзадача", "Описание подзадачи", epicId);
+        subTask.setStatus(Status.DONE);
+        subTask.setStartTime(LocalDateTime.of(2025, 9, 7, 10, 0));
+        subTask.setDuration(Duration.ofMinutes(90));
+        int subTaskId = manager.addNewSubTask(subTask);
+
+        FileBackedTaskManager loadedManager = Managers.getFileBacked(binaryFile, SnapshotFormat.BINARY);
+        Task loadedTask = loadedManager.getTaskById(taskId).orElseThrow();
+        assertEquals("Задача, с запятой", loadedTask.getTitle());
+        assertNull(loadedTask.getDescription(), "null в описании должен сохраниться как null");
+        assertEquals(Status.IN_PROGRESS, loadedTask.getStatus());
+        assertEquals(LocalDateTime.of(1969, 12, 31, 23, 15), loadedTask.getStartTime().orElseThrow());
+        assertEquals(Duration.ofMinutes(45), loadedTask.getDuration());
+        SubTask loadedSubTask = loadedManager.getSubTaskById(subTaskId).orElseThrow();
+        assertEquals(epicId, loadedSubTask.getParentEpicId());
+        assertEquals(Status.DONE, loadedManager.getEpicById(epicId).orElseThrow().getStatus(),
+                "Статус эпика должен вычисляться из загруженных подзадач");
+    }
+
+    @Test
+    void testBinarySnapshotIsSmallerAndExportsToCsv() throws IOException {
+        File binaryFile = tempDir.resolve("tasks.bin").toFile();
+        FileBackedTaskManager manager = Managers.getFileBacked(binaryFile, SnapshotFormat.BINARY);
+        for (int i = 0; i < 100; i++) {
+            Task task = new Task("Задача " + i, "Описание " + i);
+            task.setStartTime(LocalDateTime.of(2025, 1, 1, 0, 0).plusHours(i));
+            task.setDuration(Duration.ofMinutes(30));
+            manager.addNewTask(task);
+        }
+        File csvFile = tempDir.resolve("export.csv").toFile();
+        manager.exportTo(csvFile, SnapshotFormat.CSV);
+
+        assertTrue(binaryFile.length() < csvFile.length(), "Двоичный снимок должен быть компактнее CSV");
+        assertEquals(SnapshotStore.HEADER, Files.readAllLines(csvFile.toPath()).getFirst(),
+                "Экспорт должен быть обычным CSV");
+        assertEquals(manager.getAllTasks(), FileBackedTaskManager.loadFromFile(csvFile).getAllTasks(),
+                "CSV-экспорт должен загружаться как обычный снимок");
+    }
+
+    @Test
+    void testCsvSnapshotCanBeImportedIntoBinaryStore() {
+        FileBackedTaskManager csvManager = new FileBackedTaskManager(testFile);
+        csvManager.addNewTask(new Task("Задача", "Описание"));
+
+        FileBackedTaskManager binaryManager = Managers.getFileBacked(testFile, SnapshotFormat.BINARY);
+        binaryManager.addNewTask(new Task("Задача 2", "Описание"));
+
+        assertEquals(List.of("Задача", "Задача 2"),
+                FileBackedTaskManager.loadFromFile(testFile).getAllTasks().stream().map(Task::getTitle).toList(),
+                "После импорта CSV следующий снимок должен записаться в двоичном виде и читаться");
+    }
+
+    @Test
+    void testCorruptedBinarySnapshotFallsBackToPreviousGeneration() throws IOException {
+        File binaryFile = tempDir.resolve("tasks.bin").toFile();
+        FileBackedTaskManager manager = Managers.getFileBacked(binaryFile, SnapshotFormat.BINARY);
+        manager.addNewTask(new Task("Задача 1", "Описание"));
+        manager.addNewTask(new Task("Задача 2", "Описание"));
+
+        byte[] content = Files.readAllBytes(binaryFile.toPath());
+        content[content.length - 6] ^= 1;
+        Files.write(binaryFile.toPath(), content);
+
+        assertEquals(List.of("Задача 1"), FileBackedTaskManager.loadFromFile(binaryFile).getAllTasks().stream()
+                .map(Task::getTitle).toList(), "Поврежденный двоичный снимок должен замениться предыдущим поколением");
+    }
+
+    @Test
+    void testBinarySnapshotWithImpossibleStringLengthFallsBackToPreviousGeneration() throws IOException {
+        File binaryFile = tempDir.resolve("tasks.bin").toFile();
+        FileBackedTaskManager manager = Managers.getFileBacked(binaryFile, SnapshotFormat.BINARY);
+        manager.addNewTask(new Task("Задача 1", "Описание"));
+        manager.addNewTask(new Task("Задача 2", "Описание"));
+        byte[] content = Files.readAllBytes(binaryFile.toPath());
+        Path prevFile = Path.of(binaryFile.getPath() + ".prev");
+        byte[] previous = Files.readAllBytes(prevFile);
+        // у последней записи за длиной описания идут 16 байт "Описание" и 4 байта контрольной суммы
+        int lengthPosition = content.length - 4 - 16 - 1;
+        assertEquals(17, content[lengthPosition]);
+
+        for (long length : new long[]{(1L << 31) + 1, Integer.MAX_VALUE - 16L, 1L << 62, -1L}) {
+            ByteArrayOutputStream corrupted = new ByteArrayOutputStream();
+            corrupted.write(content, 0, lengthPosition);
+            for (long value = length; ; value >>>= 7) {
+                if ((value & ~0x7FL) == 0) {
+                    corrupted.write((int) value);
+                    break;
+                }
+                corrupted.write((int) ((value & 0x7F) | 0x80));
+            }
+            corrupted.write(content, lengthPosition + 1, content.length - lengthPosition - 1);
+            Files.write(binaryFile.toPath(), corrupted.toByteArray());
+            Files.write(prevFile, previous);
+
+            assertEquals(List.of("Задача 1"), FileBackedTaskManager.loadFromFile(binaryFile).getAllTasks().stream()
+                    .map(Task::getTitle).toList(), "Неверная длина строки " + length + " - это повреждение снимка");
+        }
+    }
+
+    // Достаточно строк, чтобы файл разбился на несколько диапазонов; подзадачи идут раньше своих эпиков
+    private static List<String> largeSnapshot(int rows) {
+        List<String> lines = new ArrayList<>(rows + 1);
+        lines.add(SnapshotStore.HEADER);
+        for (int id = 1; id <= rows; id++) {
+            if (id % 10 == 0) {
+                lines.add(id + ",EPIC,Эпик " + id + ",NEW,Описание,0,null,");
+            } else if (id % 2 == 0) {
+                lines.add(id + ",SUBTASK,Подзадача " + id + ",DONE,\"Описание, с запятой\",30,"
+                        + String.format("01.01.2025 %02d:%02d", id / 60 % 24, id % 60) + "," + (id / 10 * 10 + 10));
+            } else {
+                lines.add(id + ",TASK,Задача " + id + ",IN_PROGRESS,Описание,0,null,");
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    void testParallelLoadMatchesSequentialLoad() throws IOException {
+        // интервалы подзадач пересекаются между сутками - при восстановлении это не проверяется
+        Files.write(testFile.toPath(), largeSnapshot(30_000));
+
+        FileBackedTaskManager sequential = FileBackedTaskManager.loadFromFile(testFile);
+        FileBackedTaskManager parallel = FileBackedTaskManager.loadFromFileParallel(testFile, new ForkJoinPool(4));
+
+        for (Type type : Type.values()) {
+            List<Task> expected = switch (type) {
+                case TASK -> new ArrayList<>(sequential.getAllTasks());
+                case SUBTASK -> new ArrayList<>(sequential.getAllSubTasks());
+                case EPIC -> new ArrayList<>(sequential.getAllEpics());
+            };
+            List<Task> actual = switch (type) {
+                case TASK -> new ArrayList<>(parallel.getAllTasks());
+                case SUBTASK -> new ArrayList<>(parallel.getAllSubTasks());
+                case EPIC -> new ArrayList<>(parallel.getAllEpics());
+            };
+            assertEquals(expected.stream().map(TaskManagerUtils::convertToString).toList(),
+                    actual.stream().map(TaskManagerUtils::convertToString).toList(), "Состояние " + type);
+        }
+        assertEquals(sequential.getPrioritizedTasks(), parallel.getPrioritizedTasks());
+        assertEquals(sequential.addNewTask(new Task("Новая", "")), parallel.addNewTask(new Task("Новая", "")),
+                "Счетчик id должен совпадать");
+    }
+
+    @Test
+    void testParallelLoadVerifiesChecksum() throws IOException {
+        Files.write(testFile.toPath(), largeSnapshot(30_000));
+        FileBackedTaskManager manager = FileBackedTaskManager.loadFromFile(testFile);
+        manager.deleteTask(1); // перезаписывает снимок с контрольной суммой
+
+        byte[] content = Files.readAllBytes(testFile.toPath());
+        int position = content.length / 2;
+        while (!(content[position] == ',' && content[position + 1] == '3' && content[position + 2] == '0')) position++;
+        content[position + 2] = '1'; // длительность 30 -> 31: строка остается разборчивой, расходится только сумма
+        Files.write(testFile.toPath(), content);
+        Files.delete(Path.of(testFile.getPath() + ".prev"));
+
+        ManagerSaveException exception = assertThrows(ManagerSaveException.class,
+                () -> FileBackedTaskManager.loadFromFileParallel(testFile, new ForkJoinPool(4)));
+        assertTrue(exception.getMessage().contains("контрольная сумма"), exception.getMessage());
+    }
+
+    @Test
+    void testHistoryIsRestoredAfterLoad() {
+        manager.getTaskById(task2Id);
+        manager.getSubTaskById(subTask1Id);
+        manager.getEpicById(epic1Id);
+        manager.getTaskById(task2Id);
+        manager.deleteSubTask(subTask1Id);
+        ((FileBackedTaskManager) manager).close();
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(testFile);
+        assertEquals(List.of(epic1Id, task2Id), loadedManager.getHistory().stream().map(Task::getId).toList(),
+                "История должна восстановиться в порядке просмотров и без удаленных задач");
+        assertSame(loadedManager.getTaskById(task2Id).orElseThrow(), loadedManager.getHistory().get(1),
+                "История должна ссылаться на загруженные задачи");
+    }
+
+    @Test
+    void testViewsAppendToHistoryLogWithoutRewritingSnapshot() throws IOException {
+        byte[] snapshot = Files.readAllBytes(testFile.toPath());
+        Path historyLog = Path.of(testFile.getPath() + ".history");
+        manager.getTaskById(task1Id);
+        long logSize = Files.size(historyLog);
+
+        manager.getTaskById(task2Id);
+        manager.getEpicById(epic2Id);
+        assertEquals(logSize + 2 * 13, Files.size(historyLog), "Просмотр должен дописывать одну короткую запись");
+        assertArrayEquals(snapshot, Files.readAllBytes(testFile.toPath()), "Просмотр не должен переписывать снимок");
+    }
+
+    @Test
+    void testHistoryLogIsCompacted() throws IOException {
+        for (int i = 0; i < 10_000; i++) {
+            manager.getTaskById(i % 2 == 0 ? task1Id : task2Id);
+        }
+        manager.getEpicById(epic1Id);
+        assertTrue(Files.size(Path.of(testFile.getPath() + ".history")) < 2_000 * 13,
+                "Журнал истории должен сжиматься, а не расти с каждым просмотром");
+
+        FileBackedTaskManager loadedManager = FileBackedTaskManager.loadFromFile(testFile);
+        assertEquals(List.of(task1Id, task2Id, epic1Id), loadedManager.getHistory().stream().map(Task::getId).toList());
+    }
+
+    @Test
+    void testNewManagerDoesNotInheritHistoryOfReplacedFile() {
+        manager.getTaskById(task1Id);
+        ((FileBackedTaskManager) manager).close();
+
+        FileBackedTaskManager freshManager = new FileBackedTaskManager(testFile);
+        freshManager.addNewTask(new Task("Новая", "Описание"));
+        freshManager.close();
+        assertTrue(FileBackedTaskManager.loadFromFile(testFile).getHistory().isEmpty(),
+                "История прежнего файла не относится к новым задачам");
+    }
+
+    @Test
+    void testCompressedSnapshotsRoundTripAndAreSmaller() throws IOException {
+        Files.write(testFile.toPath(), largeSnapshot(30_000));
+        FileBackedTaskManager source = FileBackedTaskManager.loadFromFile(testFile);
+        long plainSize = Files.size(testFile.toPath());
+
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            File compressedFile = tempDir.resolve("tasks-" + format + ".z").toFile();
+            source.exportTo(compressedFile, format, Compression.fast());
+            assertTrue(compressedFile.length() * 4 < plainSize,
+                    "Сжатый снимок " + format + " должен быть в разы меньше CSV: " + compressedFile.length());
+
+            FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(compressedFile);
+            assertEquals(source.getAllSubTasks(), loaded.getAllSubTasks());
+            assertEquals(source.getPrioritizedTasks(), loaded.getPrioritizedTasks());
+            assertEquals(source.getAllTasks(), FileBackedTaskManager.loadFromFileParallel(compressedFile).getAllTasks(),
+                    "Сжатый снимок должен читаться и при параллельной загрузке");
+        }
+    }
+
+    @Test
+    void testManagerWritesCompressedSnapshotsWithConfiguredLevel() {
+        File compressedFile = tempDir.resolve("tasks.z").toFile();
+        FileBackedTaskManager manager = new FileBackedTaskManager(compressedFile, PersistenceMode.SNAPSHOT,
+                CompactionPolicy.defaults(), WritePolicy.fsync(), SnapshotFormat.CSV, Compression.deflate(9));
+        manager.addNewTask(new Task("Задача, с запятой", "Описание"));
+        manager.addNewEpic(new Epic("Эпик", "Описание"));
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(compressedFile);
+        assertEquals("Задача, с запятой", loaded.getAllTasks().getFirst().getTitle());
+        assertEquals(1, loaded.getAllEpics().size());
+    }
+
+    @Test
+    void testCorruptedOrTruncatedCompressedSnapshotIsDetected() throws IOException {
+        Files.write(testFile.toPath(), largeSnapshot(30_000));
+        File compressedFile = tempDir.resolve("tasks.z").toFile();
+        FileBackedTaskManager.loadFromFile(testFile).exportTo(compressedFile, SnapshotFormat.BINARY, Compression.fast());
+        byte[] content = Files.readAllBytes(compressedFile.toPath());
+
+        byte[] corrupted = content.clone();
+        corrupted[content.length / 2] ^= 0x55;
+        Files.write(compressedFile.toPath(), corrupted);
+        assertThrows(ManagerSaveException.class, () -> FileBackedTaskManager.loadFromFile(compressedFile));
+
+        Files.write(compressedFile.toPath(), Arrays.copyOf(content, content.length - 10));
+        ManagerSaveException exception = assertThrows(ManagerSaveException.class,
+                () -> FileBackedTaskManager.loadFromFile(compressedFile));
+        assertTrue(exception.getMessage().contains("оборван"), exception.getMessage());
+    }
+
+}
@@ -0,0 +1,93 @@
+package service;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import model.Epic;
+import model.Status;
+import model.SubTask;
+import model.Task;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Сериализация списка задач: прежний Gson (отражение, pretty printing, подзадачи внутри каждого эпика)
+// против общего Gson с TaskTypeAdapter. Печатает размер ответа, скорость записи и чтения списка подзадач.
+// Запуск: java -Xmx2g -cp <классы main и test> service.GsonAdaptersBenchmark [задач]
+public class GsonAdaptersBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int SUBTASKS_PER_EPIC = 20;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        List<Task> tasks = generate(count);
+        List<SubTask> subTasks = new ArrayList<>();
+        for (Task task : tasks) {
+            if (task instanceof SubTask subTask) subTasks.add(subTask);
+        }
+        Gson reflective = new GsonBuilder()
+                .serializeNulls()
+                .setPrettyPrinting()
+                .registerTypeAdapter(LocalDateTime.class, new Managers.LocalDateTimeAdapter())
+                .registerTypeAdapter(Duration.class, new Managers.DurationTypeAdapter())
+                .create();
+        System.out.printf("Задач: %,d%n", tasks.size());
+        System.out.printf("%-10s %14s %16s %18s%n", "Вариант", "Размер, байт", "Запись, задач/с", "Чтение, задач/с");
+        run("reflection", reflective, tasks, subTasks);
+        run("adapters", Managers.getGson(), tasks, subTasks);
+    }
+
+    private static void run(String name, Gson gson, List<Task> tasks, List<SubTask> subTasks) {
+        String[] json = new String[1];
+        long write = best(() -> json[0] = gson.toJson(tasks));
+        String subTasksJson = gson.toJson(subTasks);
+        List<SubTask> readBack = new ArrayList<>();
+        long read = best(() -> {
+            readBack.clear();
+            readBack.addAll(gson.fromJson(subTasksJson, new TypeToken<List<SubTask>>() {
+            }.getType()));
+            return null;
+        });
+        if (readBack.size() != subTasks.size()) throw new IllegalStateException("Прочитано " + readBack.size());
+        System.out.printf("%-10s %,14d %,16.0f %,18.0f%n", name, json[0].getBytes(StandardCharsets.UTF_8).length,
+                tasks.size() / (write / 1e9), subTasks.size() / (read / 1e9));
+    }
+
+    // Лучшее время из раундов, в нс
+    private static long best(Supplier<?> action) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            action.get();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    // Эпики с подзадачами и отдельные задачи, у половины задано время
+    private static List<Task> generate(int count) {
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+        List<Task> state = new ArrayList<>(count);
+        int id = 0;
+        while (id < count) {
+            int epicId = Math.min(id + SUBTASKS_PER_EPIC + 1, count);
+            Epic epic = new Epic("Эпик " + epicId, "Описание", epicId);
+            while (++id < epicId) {
+                Task task = id % 2 == 0
+                        ? new SubTask("Задача " + id, "Описание", epicId, id)
+                        : new Task("Задача " + id, "Описание", id);
+                task.setStatus(Status.values()[id % 3]);
+                task.setDuration(Duration.ofMinutes(30));
+                if (id % 4 < 2) task.setStartTime(base.plusHours(id));
+                if (task instanceof SubTask subTask) epic.addSubTaskToEpic(subTask);
+                state.add(task);
+            }
+            state.add(epic);
+        }
+        return state;
+    }
+}
@@ -1,7 +1,20 @@
 package service;
 
+import exeptions.ManagerSaveException;
+import exeptions.TimeIntersectionException;
+import model.Epic;
+import model.Status;
+import model.SubTask;
 import model.Task;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 
 class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
@@ -19,4 +32,107 @@ class InMemoryTaskManagerTest extends TaskManagerTest<InMemoryTaskManager> {
         taskB = new Task("Task 2", "Description 2");
     }
 
-}
\ No newline at end of file
+    private static Task scheduled(Task task, LocalDateTime startTime, long minutes) {
+        task.setStartTime(startTime);
+        task.setDuration(Duration.ofMinutes(minutes));
+        return task;
+    }
+
+    @Test
+    void testRestoredFromMatchesManagerBuiltOneByOne() {
+        List<Task> state = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.of(2025, 3, 1, 0, 0);
+        // подзадачи идут раньше своих эпиков, как может случиться в выгрузке другого менеджера
+        for (int i = 0; i < 300; i++) {
+            SubTask subTask = new SubTask("Подзадача " + i, "Описание", 1_000 + i % 10, i + 1);
+            subTask.setStatus(i % 3 == 0 ? Status.DONE : Status.NEW);
+            state.add(scheduled(subTask, start.plusHours(i), 30));
+        }
+        for (int i = 0; i < 10; i++) {
+            state.add(new Epic("Эпик " + i, "Описание", 1_000 + i));
+        }
+        state.add(scheduled(new Task("Задача", "Описание", 2_000), start.minusDays(1), 60));
+
+        InMemoryTaskManager restored = InMemoryTaskManager.restoredFrom(state);
+        restored.verifyIntegrity();
+
+        assertEquals(301, restored.getPrioritizedTasks().size());
+        assertEquals(2_000, restored.getPrioritizedTasks().get(0).getId());
+        Epic epic = restored.getEpicById(1_003).orElseThrow();
+        assertEquals(30, epic.getSubTasksCount());
+        assertEquals(Status.IN_PROGRESS, epic.getStatus());
+        assertEquals(Duration.ofMinutes(30 * 30), epic.getDuration());
+        assertEquals(start.plusHours(3), epic.getStartTime().orElseThrow());
+        assertEquals(start.plusHours(293).plusMinutes(30), epic.getEndTime());
+        assertEquals(2_001, restored.addNewTask(new Task("Новая", "Описание")), "Счетчик id должен продолжиться");
+    }
+
+    @Test
+    void testRestoredFromRejectsSubTaskWithoutEpic() {
+        List<Task> state = List.of(new Epic("Эпик", "Описание", 1), new SubTask("Подзадача", "Описание", 5, 2));
+        assertThrows(ManagerSaveException.class, () -> InMemoryTaskManager.restoredFrom(state));
+    }
+
+    @Test
+    void testVerifyIntegrityFindsOverlapsSkippedByTrustedRestore() {
+        LocalDateTime start = LocalDateTime.of(2025, 3, 1, 10, 0);
+        List<Task> state = List.of(
+                scheduled(new Task("Длинная", "Описание", 1), start, 240),
+                scheduled(new Task("Короткая", "Описание", 2), start.plusMinutes(30), 10),
+                scheduled(new Task("Внутри длинной", "Описание", 3), start.plusHours(2), 10));
+        InMemoryTaskManager restored = InMemoryTaskManager.restoredFrom(state);
+
+        TimeIntersectionException exception = assertThrows(TimeIntersectionException.class, restored::verifyIntegrity);
+        assertTrue(exception.getMessage().contains("1 и 2"), exception.getMessage());
+
+        restored.deleteTask(2);
+        assertThrows(TimeIntersectionException.class, restored::verifyIntegrity,
+                "Пересечение с задачей, закончившейся раньше самой длинной, тоже должно находиться");
+        restored.deleteTask(3);
+        assertDoesNotThrow(restored::verifyIntegrity);
+    }
+
+    @Test
+    void testVerifyIntegrityAcceptsZeroDurationTaskAtStartOfLongerOne() {
+        LocalDateTime start = LocalDateTime.of(2025, 3, 1, 10, 0);
+        Task longer = scheduled(new Task("Длинная", "Описание", 1), start, 60);
+        Task instant = scheduled(new Task("Мгновенная", "Описание", 2), start, 0);
+        InMemoryTaskManager checked = new InMemoryTaskManager();
+        checked.addNewTask(longer);
+        checked.addNewTask(instant);
+        assertEquals(2, checked.getPrioritizedTasks().size(), "менеджер принимает обе задачи");
+
+        assertDoesNotThrow(checked::verifyIntegrity, "проверка не должна быть строже, чем проверка при добавлении");
+        assertDoesNotThrow(InMemoryTaskManager.restoredFrom(List.of(longer, instant))::verifyIntegrity);
+        assertDoesNotThrow(InMemoryTaskManager.restoredFrom(List.of(instant,
+                scheduled(new Task("Длинная", "Описание", 3), start, 60)))::verifyIntegrity);
+    }
+
+    @Test
+    void testVerifyIntegrityFindsIdsSharedBetweenTypes() {
+        InMemoryTaskManager restored = InMemoryTaskManager.restoredFrom(
+                List.of(new Task("Задача", "Описание", 1), new Epic("Эпик", "Описание", 1)));
+        assertThrows(ManagerSaveException.class, restored::verifyIntegrity);
+    }
+
+    @Test
+    void testVerifyIntegrityFindsEpicListingForeignOrMissingSubTask() {
+        Epic withGhost = new Epic("Эпик", "Описание", 1);
+        withGhost.addSubTaskToEpic(new SubTask("Пропавшая", "Описание", 1, 2));
+        assertThrows(ManagerSaveException.class, InMemoryTaskManager.restoredFrom(List.of(withGhost))::verifyIntegrity,
+                "Подзадача, которой нет в менеджере, не должна оставаться в эпике");
+
+        SubTask foreign = new SubTask("Чужая", "Описание", 3, 4);
+        Epic withForeign = new Epic("Эпик", "Описание", 1);
+        withForeign.addSubTaskToEpic(foreign);
+        InMemoryTaskManager restored = InMemoryTaskManager.restoredFrom(
+                List.of(withForeign, new Epic("Владелец", "Описание", 3), foreign));
+        assertThrows(ManagerSaveException.class, restored::verifyIntegrity,
+                "Подзадача другого эпика не должна числиться в этом эпике");
+    }
+
+    @Test
+    void testVerifyIntegrityPassesForManagerBuiltThroughChecks() {
+        assertDoesNotThrow(manager::verifyIntegrity);
+    }
+}
@@ -0,0 +1,52 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntIntHashMapTest {
+
+    @Test
+    void shouldBehaveLikeHashMapOnRandomOperations() {
+        IntIntHashMap map = new IntIntHashMap();
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5_000) - 1_000; // отрицательные ключи тоже допустимы
+            int expectedValue = orNoValue(expected.get(key));
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    assertEquals(expectedValue, map.put(key, i));
+                    expected.put(key, i);
+                }
+                case 1 -> {
+                    assertEquals(expectedValue, map.remove(key));
+                    expected.remove(key);
+                }
+                default -> assertEquals(expectedValue, map.get(key));
+            }
+            assertEquals(expected.containsKey(key), map.containsKey(key), "Расхождение по ключу " + key);
+            assertEquals(expected.size(), map.size());
+        }
+
+        int[] keyCount = new int[1];
+        map.forEachKey(key -> {
+            assertTrue(expected.containsKey(key));
+            keyCount[0]++;
+        });
+        assertEquals(expected.size(), keyCount[0]);
+    }
+
+    @Test
+    void shouldRejectNegativeValues() {
+        assertThrows(IllegalArgumentException.class, () -> new IntIntHashMap().put(1, IntIntHashMap.NO_VALUE));
+    }
+
+    private static int orNoValue(Integer value) {
+        return value == null ? IntIntHashMap.NO_VALUE : value;
+    }
+}
@@ -0,0 +1,82 @@
+package service;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.function.Supplier;
+
+// Сравнение IntObjectHashMap с HashMap<Integer, V>: занимаемая память и время put/get.
+// Запуск: java -Xmx2g -cp <классы main и test> service.IntObjectHashMapBenchmark [количество]
+public class IntObjectHashMapBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        Object value = new Object();
+        int[] lookupKeys = new Random(1).ints(count, 1, count + 1).toArray();
+
+        System.out.printf("Записей: %,d%n", count);
+        System.out.printf("Память HashMap:         %,d байт%n", measureFootprint(() -> fillHashMap(count, value)));
+        System.out.printf("Память IntObjectHashMap: %,d байт%n", measureFootprint(() -> fillIntMap(count, value)));
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            HashMap<Integer, Object> hashMap = fillHashMap(count, value);
+            long hashMapPut = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            IntObjectHashMap<Object> intMap = fillIntMap(count, value);
+            long intMapPut = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int hits = 0;
+            for (int key : lookupKeys) {
+                if (hashMap.get(key) != null) hits++;
+            }
+            long hashMapGet = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int key : lookupKeys) {
+                if (intMap.get(key) != null) hits--;
+            }
+            long intMapGet = System.nanoTime() - start;
+
+            System.out.printf("Раунд %d: put %.1f / %.1f нс, get %.1f / %.1f нс (HashMap / IntObjectHashMap)%s%n",
+                    round + 1,
+                    (double) hashMapPut / count, (double) intMapPut / count,
+                    (double) hashMapGet / count, (double) intMapGet / count,
+                    hits == 0 ? "" : " - расхождение результатов!");
+        }
+    }
+
+    private static HashMap<Integer, Object> fillHashMap(int count, Object value) {
+        HashMap<Integer, Object> map = new HashMap<>();
+        for (int id = 1; id <= count; id++) {
+            map.put(id, value);
+        }
+        return map;
+    }
+
+    private static IntObjectHashMap<Object> fillIntMap(int count, Object value) {
+        IntObjectHashMap<Object> map = new IntObjectHashMap<>();
+        for (int id = 1; id <= count; id++) {
+            map.put(id, value);
+        }
+        return map;
+    }
+
+    private static long measureFootprint(Supplier<Object> factory) {
+        long before = usedMemory();
+        Object map = factory.get();
+        long after = usedMemory();
+        if (map.hashCode() == 0) System.out.print(""); // не даем JIT выбросить структуру до замера
+        return after - before;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
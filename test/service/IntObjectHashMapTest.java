@@ -0,0 +1,88 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntObjectHashMapTest {
+
+    @Test
+    void shouldBehaveLikeHashMapOnRandomOperations() {
+        IntObjectHashMap<String> map = new IntObjectHashMap<>();
+        HashMap<Integer, String> expected = new HashMap<>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5_000) - 1_000; // отрицательные ключи тоже допустимы
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+                case 1 -> assertEquals(expected.remove(key), map.remove(key));
+                default -> assertEquals(expected.get(key), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (int key = -1_000; key < 4_000; key++) {
+            assertEquals(expected.containsKey(key), map.containsKey(key), "Расхождение по ключу " + key);
+        }
+        assertEquals(expected.size(), map.values().size());
+        assertTrue(map.values().containsAll(expected.values()));
+    }
+
+    @Test
+    void shouldIterateSequentialIdsInAscendingOrder() {
+        IntObjectHashMap<Integer> map = new IntObjectHashMap<>();
+        for (int id = 1; id <= 1_000; id++) {
+            map.put(id, id);
+        }
+
+        List<Integer> keys = new ArrayList<>();
+        map.forEachKey(keys::add);
+
+        assertEquals(new ArrayList<>(map.values()), keys);
+        for (int i = 1; i < keys.size(); i++) {
+            assertTrue(keys.get(i - 1) < keys.get(i), "id должны идти по возрастанию, как у HashMap");
+        }
+    }
+
+    @Test
+    void shouldKeepCollidingKeysReachableAfterRemoval() {
+        IntObjectHashMap<String> map = new IntObjectHashMap<>();
+        // ключи с одинаковой ячейкой в таблице на 16 элементов, цепочка переходит через конец таблицы
+        map.put(15, "a");
+        map.put(31, "b");
+        map.put(47, "c");
+        map.put(14, "d");
+
+        map.remove(15);
+
+        assertEquals("b", map.get(31));
+        assertEquals("c", map.get(47));
+        assertEquals("d", map.get(14));
+        assertNull(map.get(15));
+    }
+
+    @Test
+    void shouldClearAllEntries() {
+        IntObjectHashMap<String> map = new IntObjectHashMap<>();
+        map.put(1, "a");
+        map.put(2, "b");
+
+        map.clear();
+
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+        assertFalse(map.values().iterator().hasNext());
+    }
+
+    @Test
+    void shouldRejectNullValues() {
+        IntObjectHashMap<String> map = new IntObjectHashMap<>();
+        assertThrows(NullPointerException.class, () -> map.put(1, null));
+    }
+}
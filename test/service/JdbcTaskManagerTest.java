@@ -0,0 +1,134 @@
+package service;
+
+import exeptions.TimeIntersectionException;
+import model.Epic;
+import model.Status;
+import model.SubTask;
+import model.Task;
+import model.Type;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты идут на H2 (lib/h2-2.2.224.jar, подключен к модулю только для тестов)
+class JdbcTaskManagerTest extends TaskManagerTest<JdbcTaskManager> {
+
+    @TempDir
+    Path tempDir;
+    private String url;
+
+    @Override
+    protected JdbcTaskManager getManager() {
+        url = "jdbc:h2:" + tempDir.resolve("tasks").toAbsolutePath();
+        return new JdbcTaskManager(url);
+    }
+
+    @AfterEach
+    void closeManager() {
+        if (manager != null) manager.close();
+    }
+
+    private void reopen() {
+        manager.close();
+        manager = new JdbcTaskManager(url);
+    }
+
+    @Test
+    void testReopenRestoresState() {
+        subTask1.setStatus(Status.DONE);
+        manager.updateSubTask(subTask1);
+        manager.deleteTask(task2Id);
+        reopen();
+
+        assertEquals(List.of(task1Id), manager.getAllTasks().stream().map(Task::getId).toList());
+        assertEquals(Status.DONE, manager.getSubTaskById(subTask1Id).orElseThrow().getStatus());
+        assertEquals(Status.IN_PROGRESS, manager.getEpicById(epic1Id).orElseThrow().getStatus());
+        assertEquals(task1.getStartTime(), manager.getTaskById(task1Id).orElseThrow().getStartTime());
+        assertEquals(Duration.ofHours(1), manager.getTaskById(task1Id).orElseThrow().getDuration());
+    }
+
+    @Test
+    void testBatchInsertSurvivesReopen() {
+        List<Task> many = new ArrayList<>();
+        for (int i = 0; i < 2_500; i++) {
+            many.add(new Task("Задача " + i, "Описание, с \"кавычками\"\nи переводом строки"));
+        }
+        manager.addAll(many);
+        reopen();
+
+        assertEquals(2_502, manager.getAllTasks().size());
+        assertEquals(many.get(1_234).getDescription(),
+                manager.getTaskById(many.get(1_234).getId()).orElseThrow().getDescription());
+        assertEquals(many.get(2_499).getId() + 1, manager.addNewTask(new Task("Новая", "Описание")),
+                "Счетчик id должен продолжиться после перезапуска");
+    }
+
+    @Test
+    void testRejectedBatchLeavesDatabaseUnchanged() {
+        Task conflicting = new Task("Конфликт", "Описание");
+        conflicting.setStartTime(LocalDateTime.of(2025, 1, 1, 10, 30));
+        conflicting.setDuration(Duration.ofHours(1));
+        List<Operation> operations = List.of(Operation.delete(Type.TASK, task2Id), Operation.add(conflicting));
+        assertThrows(TimeIntersectionException.class, () -> manager.applyBatch(operations));
+        reopen();
+
+        assertEquals(List.of(task1Id, task2Id), manager.getAllTasks().stream().map(Task::getId).toList());
+    }
+
+    @Test
+    void testCacheIsBoundedAndEvictedTasksAreReadBack() {
+        manager.close();
+        manager = new JdbcTaskManager(url, 8);
+        int epicId = manager.addNewEpic(new Epic("Эпик", "Описание"));
+        List<Integer> subTaskIds = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            subTaskIds.add(manager.addNewSubTask(new SubTask("Подзадача " + i, "Описание", epicId)));
+            manager.addNewTask(new Task("Задача " + i, "Описание"));
+        }
+        assertTrue(manager.getCachedCount() <= 8, "Кэш не должен расти вместе с базой");
+        assertEquals(52, manager.getAllTasks().size());
+        assertTrue(manager.getCachedCount() <= 8, "Полная выборка не должна заполнять кэш");
+
+        // эпик вытеснен: изменение подзадачи должно отразиться, когда он будет прочитан заново
+        SubTask subTask = manager.getSubTaskById(subTaskIds.getFirst()).orElseThrow();
+        subTask.setStatus(Status.DONE);
+        manager.updateSubTask(subTask);
+        Epic epic = manager.getEpicById(epicId).orElseThrow();
+        assertEquals(50, epic.getSubTasksCount());
+        assertEquals(Status.IN_PROGRESS, epic.getStatus());
+        assertEquals("Подзадача 1", manager.getSubTaskById(subTaskIds.get(1)).orElseThrow().getTitle());
+    }
+
+    @Test
+    void testOverlapWithLongTaskIsFoundAfterReopen() {
+        Task longTask = new Task("Долгая", "Описание");
+        longTask.setStartTime(LocalDateTime.of(2025, 3, 1, 0, 0));
+        longTask.setDuration(Duration.ofDays(3));
+        manager.addNewTask(longTask);
+        reopen();
+
+        Task inside = new Task("Внутри", "Описание");
+        inside.setStartTime(LocalDateTime.of(2025, 3, 3, 12, 0));
+        inside.setDuration(Duration.ofMinutes(15));
+        assertThrows(TimeIntersectionException.class, () -> manager.addNewTask(inside),
+                "Задача, начавшаяся задолго до новой, тоже должна находиться");
+    }
+
+    @Test
+    void testDeletedEpicRemovesSubTaskRows() {
+        manager.addNewSubTask(new SubTask("Подзадача 3", "Описание", epic1Id));
+        manager.deleteEpic(epic1Id);
+        reopen();
+
+        assertEquals(List.of(epic2Id), manager.getAllEpics().stream().map(Epic::getId).toList());
+        assertTrue(manager.getAllSubTasks().isEmpty());
+    }
+}
@@ -12,6 +12,11 @@ class ManagersTest {
         assertNotNull(Managers.getDefault());
     }
 
+    @Test
+    public void managersShouldReturnThreadSafeTaskManager() {
+        assertInstanceOf(ConcurrentTaskManager.class, Managers.getConcurrent());
+    }
+
     @Test
     public void managersShouldReturnNonNullInstanceOfHistoryManager() {
         assertNotNull(Managers.getDefaultHistory());
@@ -0,0 +1,187 @@
+package service;
+
+import exeptions.ManagerSaveException;
+import exeptions.TimeIntersectionException;
+import model.Epic;
+import model.Status;
+import model.SubTask;
+import model.Task;
+import model.Type;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedTaskManagerTest extends TaskManagerTest<MappedTaskManager> {
+
+    @TempDir
+    Path tempDir;
+    private File storeFile;
+
+    @Override
+    protected MappedTaskManager getManager() {
+        storeFile = tempDir.resolve("tasks.dat").toFile();
+        return new MappedTaskManager(storeFile);
+    }
+
+    @AfterEach
+    void closeManager() {
+        manager.close();
+    }
+
+    @Test
+    void testReopenRestoresStateWrittenInPlace() {
+        subTask1.setStatus(Status.DONE);
+        manager.updateSubTask(subTask1);
+        manager.deleteTask(task2Id);
+        manager.close();
+
+        manager = new MappedTaskManager(storeFile);
+        assertEquals(List.of(task1Id), manager.getAllTasks().stream().map(Task::getId).toList(),
+                "Удаленная задача не должна вернуться после перезапуска");
+        SubTask loadedSubTask = manager.getSubTaskById(subTask1Id).orElseThrow();
+        assertEquals(Status.DONE, loadedSubTask.getStatus());
+        assertEquals(LocalDateTime.of(2025, 1, 1, 9, 0), loadedSubTask.getStartTime().orElseThrow());
+        assertEquals(Duration.ofHours(1), loadedSubTask.getDuration());
+        assertEquals(Status.IN_PROGRESS, manager.getEpicById(epic1Id).orElseThrow().getStatus(),
+                "Статус эпика должен вычисляться из подзадач хранилища");
+        assertEquals(task1.getDescription(), manager.getTaskById(task1Id).orElseThrow().getDescription());
+
+        int newTaskId = manager.addNewTask(new Task("Новая задача", null));
+        assertTrue(newTaskId > subTask2Id, "Счетчик id должен продолжиться после перезапуска");
+    }
+
+    @Test
+    void testUpdatesDoNotGrowStoreAndFreedSlotsAreReused() throws IOException {
+        Path slotsFile = storeFile.toPath();
+        Path stringsFile = Path.of(storeFile.getPath() + ".strings");
+        long slotsSize = Files.size(slotsFile);
+        long stringsSize = Files.size(stringsFile);
+
+        for (int i = 0; i < 5000; i++) {
+            task1.setStatus(i % 2 == 0 ? Status.DONE : Status.NEW);
+            manager.updateTask(task1);
+            manager.deleteTask(task2Id);
+            task2 = new Task("Задача", "Описание");
+            task2Id = manager.addNewTask(task2);
+        }
+        manager.flush();
+
+        assertEquals(slotsSize, Files.size(slotsFile), "Обновления должны переписывать слоты на месте");
+        assertEquals(stringsSize, Files.size(stringsFile), "Строки не длиннее прежних не должны расти в куче");
+    }
+
+    @Test
+    void testDeletedEpicFreesSubTaskSlotsAfterBatch() {
+        manager.applyBatch(List.of(Operation.add(new SubTask("Подзадача 3", "Описание", epic1Id)),
+                Operation.delete(Type.EPIC, epic1Id)));
+        manager.close();
+
+        manager = new MappedTaskManager(storeFile);
+        assertEquals(List.of(epic2Id), manager.getAllEpics().stream().map(Epic::getId).toList());
+        assertTrue(manager.getAllSubTasks().isEmpty(), "Подзадачи удаленного эпика не должны остаться в хранилище");
+    }
+
+    @Test
+    void testInterruptedUpdateLeavesOneWholeVersion() throws IOException {
+        Path slotsFile = storeFile.toPath();
+        manager.close();
+        byte[] beforeUpdate = Files.readAllBytes(slotsFile);
+
+        manager = new MappedTaskManager(storeFile);
+        Task renamed = new Task("Новое", "Другое", task1Id);
+        renamed.setStatus(Status.DONE);
+        manager.updateTask(renamed);
+        manager.close();
+        byte[] afterUpdate = Files.readAllBytes(slotsFile);
+
+        // слот новой версии не опубликован: куча строк уже дописана, слоты - как до изменения
+        Files.write(slotsFile, beforeUpdate);
+        manager = new MappedTaskManager(storeFile);
+        Task task = manager.getTaskById(task1Id).orElseThrow();
+        assertEquals(task1.getTitle(), task.getTitle(), "Строки прежней версии не должны переписываться на месте");
+        assertEquals(task1.getDescription(), task.getDescription());
+        assertEquals(Status.NEW, task.getStatus());
+        manager.close();
+
+        // новая версия опубликована, прежний слот не успел освободиться: заголовок 64 байта, task1 - в первом слоте
+        System.arraycopy(beforeUpdate, 64, afterUpdate, 64, 64);
+        Files.write(slotsFile, afterUpdate);
+        manager = new MappedTaskManager(storeFile);
+        assertEquals("Новое", manager.getTaskById(task1Id).orElseThrow().getTitle(), "Должна победить новая версия");
+        assertEquals(2, manager.getAllTasks().size());
+        manager.deleteTask(task1Id);
+        manager.close();
+
+        manager = new MappedTaskManager(storeFile);
+        assertTrue(manager.getTaskById(task1Id).isEmpty(), "Устаревший слот не должен воскреснуть после удаления");
+    }
+
+    @Test
+    void testCacheIsBoundedAndEvictedTasksAreReadBack() {
+        manager.close();
+        manager = new MappedTaskManager(storeFile, 8);
+        int epicId = manager.addNewEpic(new Epic("Эпик", "Описание"));
+        List<Integer> subTaskIds = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            subTaskIds.add(manager.addNewSubTask(new SubTask("Подзадача " + i, "Описание", epicId)));
+            manager.addNewTask(new Task("Задача " + i, "Описание"));
+        }
+        assertTrue(manager.getCachedCount() <= 8, "Кэш не должен расти вместе с хранилищем");
+        assertEquals(52, manager.getAllTasks().size());
+        assertTrue(manager.getCachedCount() <= 8, "Полная выборка не должна заполнять кэш");
+
+        // эпик вытеснен: изменение подзадачи должно отразиться, когда он будет прочитан заново
+        SubTask subTask = manager.getSubTaskById(subTaskIds.getFirst()).orElseThrow();
+        subTask.setStatus(Status.DONE);
+        manager.updateSubTask(subTask);
+        Epic epic = manager.getEpicById(epicId).orElseThrow();
+        assertEquals(50, epic.getSubTasksCount());
+        assertEquals(Status.IN_PROGRESS, epic.getStatus());
+        assertEquals("Подзадача 1", manager.getSubTaskById(subTaskIds.get(1)).orElseThrow().getTitle());
+    }
+
+    @Test
+    void testScheduleIsBuiltOnFirstTimeQueryAfterReopen() {
+        LocalDateTime start = LocalDateTime.of(2030, 1, 1, 10, 0); // позже задач из setUp
+        int lateId = manager.addNewTask(timedTask("Поздняя", start.plusHours(2), 30));
+        int earlyId = manager.addNewTask(timedTask("Ранняя", start, 30));
+        manager.close();
+
+        manager = new MappedTaskManager(storeFile);
+        assertFalse(manager.isScheduleBuilt(), "Расписание не должно строиться при открытии");
+        manager.addNewTask(new Task("Без времени", "Описание"));
+        assertTrue(manager.getTaskById(lateId).isPresent());
+        assertFalse(manager.isScheduleBuilt(), "Запросы без времени не должны строить расписание");
+
+        Task overlapping = timedTask("Пересекается", start.plusMinutes(20), 10);
+        assertThrows(TimeIntersectionException.class, () -> manager.addNewTask(overlapping));
+        assertTrue(manager.isScheduleBuilt());
+        List<Task> prioritized = manager.getPrioritizedTasks(start, null);
+        assertEquals(List.of(earlyId, lateId), prioritized.stream().map(Task::getId).toList());
+    }
+
+    private static Task timedTask(String title, LocalDateTime startTime, long minutes) {
+        Task task = new Task(title, "Описание");
+        task.setStartTime(startTime);
+        task.setDuration(Duration.ofMinutes(minutes));
+        return task;
+    }
+
+    @Test
+    void testRejectsForeignFile() throws IOException {
+        Path foreignFile = tempDir.resolve("foreign.csv");
+        Files.writeString(foreignFile, "id,type,name,status,description,duration,startTime,epic\n");
+        assertThrows(ManagerSaveException.class, () -> new MappedTaskManager(foreignFile.toFile()));
+    }
+}
@@ -0,0 +1,152 @@
+package service;
+
+import exeptions.ManagerSaveException;
+import model.Epic;
+import model.Status;
+import model.SubTask;
+import model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PagedTaskManagerTest extends TaskManagerTest<PagedTaskManager> {
+
+    @TempDir
+    Path tempDir;
+    private File storeFile;
+
+    @Override
+    protected PagedTaskManager getManager() {
+        storeFile = tempDir.resolve("tasks.pages").toFile();
+        return new PagedTaskManager(storeFile);
+    }
+
+    @AfterEach
+    void closeManager() {
+        manager.close();
+    }
+
+    private void reopen() {
+        manager.close();
+        manager = new PagedTaskManager(storeFile);
+    }
+
+    @Test
+    void testReopenRestoresState() {
+        subTask1.setStatus(Status.DONE);
+        manager.updateSubTask(subTask1);
+        manager.deleteTask(task2Id);
+        reopen();
+
+        assertEquals(List.of(task1Id), manager.getAllTasks().stream().map(Task::getId).toList());
+        assertEquals(Status.DONE, manager.getSubTaskById(subTask1Id).orElseThrow().getStatus());
+        assertEquals(Status.IN_PROGRESS, manager.getEpicById(epic1Id).orElseThrow().getStatus());
+        assertEquals(task1.getStartTime(), manager.getTaskById(task1Id).orElseThrow().getStartTime());
+    }
+
+    @Test
+    void testChangesAfterReopenReplaceLoadedRecords() {
+        reopen();
+        manager.deleteTask(task1Id);
+        Task task = manager.getTaskById(task2Id).orElseThrow();
+        task.setStatus(Status.DONE);
+        manager.updateTask(task);
+        reopen();
+
+        assertEquals(List.of(task2Id), manager.getAllTasks().stream().map(Task::getId).toList(),
+                "Удаленная после перезапуска задача не должна вернуться");
+        assertEquals(Status.DONE, manager.getTaskById(task2Id).orElseThrow().getStatus());
+        reopen();
+        assertEquals(1, manager.getAllTasks().size(), "Обновленная задача не должна остаться в двух версиях");
+    }
+
+    @Test
+    void testSingleChangeRewritesOnePageRegardlessOfStoreSize() {
+        List<Task> many = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            many.add(new Task("Задача " + i, "Описание задачи " + i));
+        }
+        manager.addAll(many);
+        assertTrue(manager.getLastFlushPages() > 10, "Пакет из тысяч задач должен занять много страниц");
+
+        Task task = many.get(2_500);
+        task.setStatus(Status.DONE);
+        manager.updateTask(task);
+        assertEquals(1, manager.getLastFlushPages(), "Обновление одной задачи должно переписать одну страницу");
+
+        manager.deleteTask(many.get(10).getId());
+        assertEquals(1, manager.getLastFlushPages(), "Удаление должно переписать только страницу задачи");
+
+        reopen();
+        assertEquals(Status.DONE, manager.getTaskById(task.getId()).orElseThrow().getStatus());
+        assertTrue(manager.getTaskById(many.get(10).getId()).isEmpty(), "Удаленная задача не должна вернуться");
+        assertEquals(5_001, manager.getAllTasks().size());
+    }
+
+    @Test
+    void testEmptiedPagesAndLargeRecordsAreReused() throws IOException {
+        List<Task> batch = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            batch.add(new Task("Задача " + i, "Описание"));
+        }
+        Task large = new Task("Большая задача", "x".repeat(3 * PagedTaskStore.PAGE_SIZE));
+        manager.addNewTask(large);
+        manager.addAll(batch);
+
+        long size = 0;
+        for (int round = 0; round < 4; round++) {
+            manager.deleteAllTasks();
+            batch.replaceAll(task -> new Task(task.getTitle(), task.getDescription()));
+            manager.addAll(batch);
+            large = new Task("Большая задача", "y".repeat(3 * PagedTaskStore.PAGE_SIZE));
+            manager.addNewTask(large);
+            // первый круг еще может взять новую страницу вместо места, занятого эпиками на общей странице
+            if (round == 0) size = Files.size(storeFile.toPath());
+        }
+        assertEquals(size, Files.size(storeFile.toPath()), "Освободившиеся страницы должны переиспользоваться");
+
+        reopen();
+        assertEquals(2_001, manager.getAllTasks().size());
+        assertEquals(large.getDescription(), manager.getTaskById(large.getId()).orElseThrow().getDescription());
+    }
+
+    @Test
+    void testTornJournalIsDiscarded() throws IOException {
+        manager.close();
+        Files.write(Path.of(storeFile.getPath() + ".journal"), new byte[]{0, 0, 0, 1, 0, 0, 0});
+        manager = new PagedTaskManager(storeFile);
+        assertEquals(List.of(task1Id, task2Id), manager.getAllTasks().stream().map(Task::getId).toList(),
+                "Оборванный журнал не должен трогать страницы");
+    }
+
+    @Test
+    void testCorruptedPageIsDetected() throws IOException {
+        manager.close();
+        byte[] content = Files.readAllBytes(storeFile.toPath());
+        content[PagedTaskStore.PAGE_SIZE + 40] ^= 1;
+        Files.write(storeFile.toPath(), content);
+
+        assertThrows(ManagerSaveException.class, () -> new PagedTaskManager(storeFile));
+        Files.delete(storeFile.toPath());
+        manager = getManager(); // чтобы closeManager было что закрыть
+    }
+
+    @Test
+    void testDeletedEpicRemovesSubTasksFromPages() {
+        manager.addNewSubTask(new SubTask("Подзадача 3", "Описание", epic1Id));
+        manager.deleteEpic(epic1Id);
+        reopen();
+
+        assertEquals(List.of(epic2Id), manager.getAllEpics().stream().map(Epic::getId).toList());
+        assertTrue(manager.getAllSubTasks().isEmpty());
+    }
+}
@@ -0,0 +1,91 @@
+package service;
+
+import model.Epic;
+import model.Status;
+import model.SubTask;
+import model.Task;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Размер, скорость записи и чтения снимка без сжатия и со сжатием разных уровней, для CSV и двоичного формата.
+// Скорость считается по размеру несжатого CSV, чтобы варианты можно было сравнивать между собой.
+// Запуск: java -Xmx2g -cp <классы main и test> service.SnapshotCompressionBenchmark [задач]
+public class SnapshotCompressionBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int SUBTASKS_PER_EPIC = 50;
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        List<Task> state = generate(count);
+        Path file = Files.createTempFile("tasks", ".snapshot");
+        try {
+            SnapshotStore plain = new SnapshotStore(file, false, SnapshotFormat.CSV, Compression.none());
+            plain.write(file, state);
+            long csvSize = Files.size(file);
+            System.out.printf("Задач: %,d, несжатый CSV: %,d байт%n", state.size(), csvSize);
+            System.out.printf("%-8s %-7s %14s %8s %14s %14s%n", "Формат", "Уровень", "Размер, байт", "Сжатие",
+                    "Запись, МБ/с", "Чтение, МБ/с");
+            for (SnapshotFormat format : SnapshotFormat.values()) {
+                for (int level : new int[]{0, 1, 6, 9}) {
+                    SnapshotStore store = new SnapshotStore(file, false, format, Compression.deflate(level));
+                    long save = best(() -> store.write(file, state));
+                    long size = Files.size(file);
+                    int[] loaded = new int[1];
+                    long load = best(() -> {
+                        loaded[0] = 0;
+                        store.read(file, task -> loaded[0]++);
+                    });
+                    if (loaded[0] != state.size()) throw new IllegalStateException("Прочитано " + loaded[0] + " задач");
+                    System.out.printf("%-8s %-7d %,14d %7.1fx %14.1f %14.1f%n", format, level, size,
+                            (double) csvSize / size, megabytesPerSecond(csvSize, save), megabytesPerSecond(csvSize, load));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Лучшее время из раундов, в нс
+    private static long best(Runnable action) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            action.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static double megabytesPerSecond(long bytes, long nanos) {
+        return bytes / 1_048_576.0 / (nanos / 1e9);
+    }
+
+    // Те же данные, что в FileBackedTaskManagerLoadBenchmark: эпики с подзадачами и задачи, у половины задано время
+    private static List<Task> generate(int count) {
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+        List<Task> state = new ArrayList<>(count);
+        int id = 0;
+        while (id < count) {
+            int epicId = Math.min(id + SUBTASKS_PER_EPIC + 1, count);
+            Epic epic = new Epic("Эпик " + epicId, "Описание", epicId);
+            while (++id < epicId) {
+                Task task = id % 2 == 0
+                        ? new SubTask("Задача " + id, "Описание", epicId, id)
+                        : new Task("Задача " + id, "Описание", id);
+                task.setStatus(Status.values()[id % 3]);
+                task.setDuration(Duration.ofMinutes(30));
+                if (id % 4 < 2) task.setStartTime(base.plusHours(id));
+                if (task instanceof SubTask subTask) epic.addSubTaskToEpic(subTask);
+                state.add(task);
+            }
+            state.add(epic);
+        }
+        return state;
+    }
+}
@@ -0,0 +1,183 @@
+package service;
+
+import exeptions.TimeIntersectionException;
+import model.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskIntervalTreeTest {
+    private static final int TASKS_COUNT = 100_000;
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private final Random random = new Random(42);
+    private List<Task> intervals;
+
+    @BeforeEach
+    public void beforeEach() {
+        // непересекающиеся интервалы: каждый в своем часовом слоте, длительность от 0 до 60 минут
+        intervals = new ArrayList<>(TASKS_COUNT);
+        for (int i = 0; i < TASKS_COUNT; i++) {
+            Task task = new Task("Задача " + i, "Описание " + i, i + 1);
+            task.setStartTime(BASE_TIME.plusHours(i).plusMinutes(random.nextInt(30)));
+            task.setDuration(Duration.ofMinutes(random.nextInt(31)));
+            intervals.add(task);
+        }
+    }
+
+    // Проверка пересечения так, как она делалась линейным проходом до появления индекса
+    private static boolean isOverlap(Task task1, Task task2) {
+        LocalDateTime start1 = task1.getStartTime().orElseThrow();
+        LocalDateTime end1 = task1.getEndTime();
+        LocalDateTime start2 = task2.getStartTime().orElseThrow();
+        LocalDateTime end2 = task2.getEndTime();
+
+        return !end1.isBefore(start2) && !end2.isBefore(start1) && !end1.isEqual(start2) && !end2.isEqual(start1);
+    }
+
+    private static boolean linearScan(List<Task> tasks, Task probe) {
+        return tasks.stream().anyMatch(task -> isOverlap(task, probe) && !task.equals(probe));
+    }
+
+    private Task randomProbe() {
+        Task probe = new Task("Проверка", "Проверка");
+        probe.setStartTime(BASE_TIME.plusMinutes(random.nextInt(TASKS_COUNT * 60)));
+        probe.setDuration(Duration.ofMinutes(random.nextInt(3) == 0 ? 0 : random.nextInt(90)));
+        return probe;
+    }
+
+    @Test
+    void findOverlapShouldMatchLinearScanOn100kIntervals() {
+        TaskIntervalTree tree = new TaskIntervalTree();
+        List<Task> shuffled = new ArrayList<>(intervals);
+        Collections.shuffle(shuffled, random);
+        shuffled.forEach(tree::add);
+
+        assertEquals(TASKS_COUNT, tree.size());
+        assertIterableEquals(intervals, tree.toList(), "Задачи должны идти по возрастанию времени начала");
+
+        for (int i = 0; i < 2_000; i++) {
+            Task probe = randomProbe();
+            boolean expected = linearScan(intervals, probe);
+            boolean actual = tree.findOverlap(probe.getStartTime().orElseThrow(), probe.getEndTime(), probe.getId()) != null;
+            assertEquals(expected, actual, "Результат индекса расходится с линейным поиском для " + probe);
+        }
+    }
+
+    @Test
+    void findOverlapShouldMatchLinearScanAfterRemovals() {
+        TaskIntervalTree tree = new TaskIntervalTree();
+        intervals.forEach(tree::add);
+
+        List<Task> remaining = new ArrayList<>();
+        for (Task task : intervals) {
+            if (task.getId() % 2 == 0) {
+                tree.remove(task);
+            } else {
+                remaining.add(task);
+            }
+        }
+
+        assertEquals(remaining.size(), tree.size());
+        for (int i = 0; i < 2_000; i++) {
+            Task probe = randomProbe();
+            boolean actual = tree.findOverlap(probe.getStartTime().orElseThrow(), probe.getEndTime(), probe.getId()) != null;
+            assertEquals(linearScan(remaining, probe), actual, "Результат индекса расходится с линейным поиском для " + probe);
+        }
+    }
+
+    @Test
+    void toListInRangeShouldMatchFilteredList() {
+        TaskIntervalTree tree = new TaskIntervalTree();
+        intervals.forEach(tree::add);
+
+        for (int i = 0; i < 200; i++) {
+            LocalDateTime from = BASE_TIME.plusMinutes(random.nextInt(TASKS_COUNT * 60));
+            LocalDateTime to = from.plusMinutes(random.nextInt(3 * 24 * 60));
+            List<Task> expected = intervals.stream()
+                    .filter(task -> !task.getStartTime().orElseThrow().isBefore(from))
+                    .filter(task -> task.getStartTime().orElseThrow().isBefore(to))
+                    .toList();
+            assertEquals(expected, tree.toList(from, to), "Неверный набор задач в окне " + from + " - " + to);
+        }
+    }
+
+    @Test
+    void findOverlapShouldIgnoreTaskItself() {
+        TaskIntervalTree tree = new TaskIntervalTree();
+        Task task = intervals.getFirst();
+        tree.add(task);
+
+        assertNull(tree.findOverlap(task.getStartTime().orElseThrow(), task.getEndTime(), task.getId()));
+        assertEquals(task, tree.findOverlap(task.getStartTime().orElseThrow(), task.getEndTime().plusMinutes(1), -1));
+    }
+
+    @Test
+    void addShouldReplaceIntervalOfUpdatedTask() {
+        TaskIntervalTree tree = new TaskIntervalTree();
+        Task task = intervals.getFirst();
+        tree.add(task);
+
+        task.setStartTime(BASE_TIME.plusDays(10)); // изменяем время у того же объекта
+        tree.add(task);
+
+        assertEquals(1, tree.size());
+        assertNull(tree.findOverlap(BASE_TIME, BASE_TIME.plusHours(1), -1), "Старый интервал должен удалиться");
+        assertEquals(task, tree.findOverlap(BASE_TIME.plusDays(10), BASE_TIME.plusDays(11), -1));
+
+        task.setStartTime(null);
+        tree.add(task);
+        assertTrue(tree.isEmpty(), "Задача без времени не должна оставаться в индексе");
+    }
+
+    @Test
+    void managerShouldDetectConflictsLikeLinearScanWith100kTasks() {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        for (Task interval : intervals) {
+            Task task = new Task(interval.getTitle(), interval.getDescription());
+            task.setStartTime(interval.getStartTime().orElseThrow());
+            task.setDuration(interval.getDuration());
+            manager.addNewTask(task);
+        }
+        List<Task> prioritized = manager.getPrioritizedTasks();
+        assertEquals(TASKS_COUNT, prioritized.size());
+
+        for (int i = 0; i < 500; i++) {
+            Task probe = randomProbe();
+            if (linearScan(prioritized, probe)) {
+                assertThrows(TimeIntersectionException.class, () -> manager.addNewTask(probe));
+            } else {
+                assertDoesNotThrow(() -> manager.addNewTask(probe));
+                prioritized = manager.getPrioritizedTasks();
+            }
+        }
+    }
+
+    @Test
+    void bulkBuiltTreeShouldMatchIncrementallyBuiltTree() {
+        List<Task> shuffled = new ArrayList<>(intervals);
+        Collections.shuffle(shuffled, random);
+        TaskIntervalTree incremental = new TaskIntervalTree();
+        shuffled.forEach(incremental::add);
+        TaskIntervalTree bulk = new TaskIntervalTree();
+        bulk.addAll(shuffled);
+
+        assertEquals(incremental.toList(), bulk.toList(), "Порядок задач должен совпадать");
+        for (int i = 0; i < 1_000; i++) {
+            Task probe = randomProbe();
+            assertEquals(incremental.findOverlap(probe.getStartTime().orElseThrow(), probe.getEndTime(), probe.getId()),
+                    bulk.findOverlap(probe.getStartTime().orElseThrow(), probe.getEndTime(), probe.getId()));
+        }
+        bulk.remove(intervals.get(0));
+        assertFalse(bulk.contains(intervals.get(0).getId()), "Массово построенное дерево должно поддерживать удаление");
+        assertEquals(TASKS_COUNT - 1, bulk.size());
+    }
+}
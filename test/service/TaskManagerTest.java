@@ -1,5 +1,6 @@
 package service;
 
+import exeptions.ManagerSaveException;
 import exeptions.TimeIntersectionException;
 import model.*;
 import org.junit.jupiter.api.BeforeEach;
@@ -190,6 +191,22 @@ abstract class TaskManagerTest<T extends TaskManager> {
                 .anyMatch(subTask -> (subTask.getId() == subTask1Id) || (subTask.getId() == subTask2Id)));
     }
 
+    @Test
+    void updateEpicShouldKeepStoredSubTasks() {
+        Epic renamed = new Epic("Новое имя", "Новое описание", epic1Id);
+        renamed.addSubTaskToEpic(new SubTask("Чужая подзадача", "Описание", epic1Id, 999));
+        manager.updateEpic(renamed);
+
+        Epic storedEpic = manager.getEpicById(epic1Id).orElseThrow();
+        assertEquals("Новое имя", storedEpic.getTitle());
+        assertEquals(List.of(subTask1Id, subTask2Id), manager.getEpicSubTasks(epic1Id).stream()
+                .map(Task::getId).sorted().toList(), "Подзадачи эпика не должны меняться при обновлении эпика");
+
+        manager.applyBatch(List.of(Operation.update(new Epic("Имя из пакета", "Описание", epic1Id))));
+        assertEquals(2, manager.getEpicById(epic1Id).orElseThrow().getSubTasksCount(),
+                "Обновление эпика в пакете тоже должно сохранять подзадачи");
+    }
+
     @Test
     void shouldBeEmptyHistoryAtTheBeginning() {
         assertTrue(manager.getHistory().isEmpty(), "История должна быть пустой до просмотра задач");
@@ -412,6 +429,33 @@ abstract class TaskManagerTest<T extends TaskManager> {
         assertTrue(prioritizedTasks.contains(subTask2), "Оставшаяся задача должна быть task2");
     }
 
+    @Test
+    void getPrioritizedTasksInRange_ShouldReturnTasksStartingInsideWindow() {
+        List<Task> prioritizedTasks = manager.getPrioritizedTasks(
+                LocalDateTime.of(2025, 1, 1, 10, 0),
+                LocalDateTime.of(2025, 1, 1, 13, 0)
+        );
+
+        assertEquals(List.of(task1, task2), prioritizedTasks,
+                "В окно [10:00, 13:00) должны попасть только задачи, начинающиеся внутри него");
+    }
+
+    @Test
+    void getPrioritizedTasksInRange_ShouldTreatNullBoundsAsOpen() {
+        assertEquals(manager.getPrioritizedTasks(), manager.getPrioritizedTasks(null, null));
+        assertEquals(List.of(subTask1, task1), manager.getPrioritizedTasks(null, LocalDateTime.of(2025, 1, 1, 11, 0)));
+        assertEquals(List.of(subTask2), manager.getPrioritizedTasks(LocalDateTime.of(2025, 1, 1, 12, 0), null));
+    }
+
+    @Test
+    void streamPrioritizedTasks_ShouldReturnSameTasksAsList() {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 9, 30);
+        LocalDateTime to = LocalDateTime.of(2025, 1, 2, 0, 0);
+
+        assertEquals(manager.getPrioritizedTasks(from, to), manager.streamPrioritizedTasks(from, to).toList());
+        assertEquals(0, manager.streamPrioritizedTasks(to, null).count(), "После окна задач быть не должно");
+    }
+
     @Test
     void EpicDurationShouldBeSetToZeroDurationWhenNoSubTasks() {
         assertEquals(Duration.ZERO, epic2.getDuration());
@@ -687,4 +731,90 @@ abstract class TaskManagerTest<T extends TaskManager> {
         assertDoesNotThrow(() -> manager.deleteTask(999),
                 "Не должно быть ошибок, если пытаться удалять несуществующую задачу");
     }
+
+    @Test
+    void addAll_ShouldAddAllTasksAndReturnTheirIds() {
+        Task taskA = new Task("Task A", "Description A");
+        taskA.setStartTime(LocalDateTime.of(2025, 2, 1, 10, 0));
+        taskA.setDuration(Duration.ofHours(1));
+        Task taskB = new Task("Task B", "Description B");
+        SubTask subTask3 = new SubTask("SubTask 3", "Description 3", epic2Id);
+        subTask3.setStartTime(LocalDateTime.of(2025, 2, 1, 11, 0));
+        subTask3.setDuration(Duration.ofHours(1));
+
+        List<Integer> ids = manager.addAll(List.of(taskA, taskB, subTask3));
+
+        assertEquals(List.of(taskA.getId(), taskB.getId(), subTask3.getId()), ids);
+        assertEquals(4, manager.getAllTasks().size());
+        assertEquals(List.of(subTask3), manager.getEpicSubTasks(epic2Id));
+        assertEquals(LocalDateTime.of(2025, 2, 1, 11, 0), epic2.getStartTime().orElseThrow());
+        assertEquals(6, manager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void applyBatch_ShouldNotChangeAnythingWhenTasksOfBatchOverlap() {
+        Task taskA = new Task("Task A", "Description A");
+        taskA.setStartTime(LocalDateTime.of(2025, 2, 1, 10, 0));
+        taskA.setDuration(Duration.ofHours(1));
+        Task taskB = new Task("Task B", "Description B");
+        taskB.setStartTime(LocalDateTime.of(2025, 2, 1, 10, 30));
+        taskB.setDuration(Duration.ofHours(1));
+
+        assertThrows(TimeIntersectionException.class, () -> manager.addAll(List.of(taskA, taskB)));
+
+        assertEquals(2, manager.getAllTasks().size(), "При ошибке пакет не должен применяться частично");
+        assertEquals(-1, taskA.getId(), "При ошибке задачам пакета не должны выдаваться id");
+    }
+
+    @Test
+    void applyBatch_ShouldNotChangeAnythingWhenBatchOverlapsExistingTask() {
+        Task taskA = new Task("Task A", "Description A");
+        Task taskB = new Task("Task B", "Description B");
+        taskB.setStartTime(LocalDateTime.of(2025, 1, 1, 10, 30)); // пересекается с task1
+        taskB.setDuration(Duration.ofHours(1));
+
+        assertThrows(TimeIntersectionException.class,
+                () -> manager.applyBatch(List.of(Operation.add(taskA), Operation.delete(Type.TASK, task2Id), Operation.add(taskB))));
+
+        assertEquals(List.of(task1, task2), manager.getAllTasks(), "При ошибке пакет не должен применяться частично");
+    }
+
+    @Test
+    void applyBatch_ShouldAllowToTakeTimeOfTaskDeletedInSameBatch() {
+        Task taskA = new Task("Task A", "Description A");
+        taskA.setStartTime(LocalDateTime.of(2025, 1, 1, 10, 0)); // то же время, что у task1
+        taskA.setDuration(Duration.ofHours(1));
+        task2.setStatus(Status.DONE);
+
+        List<Integer> ids = manager.applyBatch(List.of(
+                Operation.delete(Type.TASK, task1Id),
+                Operation.add(taskA),
+                Operation.update(task2)
+        ));
+
+        assertEquals(List.of(task1Id, taskA.getId(), task2Id), ids);
+        assertTrue(manager.getTaskById(task1Id).isEmpty());
+        assertEquals(List.of(subTask1, taskA, task2, subTask2), manager.getPrioritizedTasks());
+    }
+
+    @Test
+    void applyBatch_ShouldFailWhenSubTaskEpicIsDeletedInSameBatch() {
+        SubTask subTask3 = new SubTask("SubTask 3", "Description 3", epic1Id);
+
+        assertThrows(ManagerSaveException.class,
+                () -> manager.applyBatch(List.of(Operation.delete(Type.EPIC, epic1Id), Operation.add(subTask3))));
+
+        assertEquals(2, manager.getAllEpics().size(), "При ошибке пакет не должен применяться частично");
+        assertEquals(2, manager.getEpicSubTasks(epic1Id).size());
+    }
+
+    @Test
+    void applyBatch_ShouldUpdateEpicOfChangedSubTasks() {
+        subTask1.setStatus(Status.DONE);
+        subTask2.setStatus(Status.DONE);
+
+        manager.applyBatch(List.of(Operation.update(subTask1), Operation.update(subTask2)));
+
+        assertEquals(Status.DONE, epic1.getStatus());
+    }
 }
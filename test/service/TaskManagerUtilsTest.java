@@ -13,8 +13,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 class TaskManagerUtilsTest {
     private static FileBackedTaskManager manager;
@@ -70,4 +71,53 @@ class TaskManagerUtilsTest {
         assertEquals(expected, convertedTask, "Конвертация проходит неправильно");
     }
 
+    @Test
+    public void shouldQuoteAndRestoreSpecialCharacters() {
+        Task task = new Task("Купить \"молоко\", хлеб", "строка 1\nстрока 2\r\\конец", 7);
+        task.setStartTime(LocalDateTime.of(2025, 9, 7, 20, 5));
+        task.setDuration(Duration.ofMinutes(15));
+
+        String convertedTask = TaskManagerUtils.convertToString(task);
+        assertFalse(convertedTask.contains("\n"), "Задача должна занимать одну строку");
+        assertEquals("7,TASK,\"Купить \"\"молоко\"\", хлеб\",NEW,\"строка 1\\nстрока 2\\r\\\\конец\",15,"
+                + "07.09.2025 20:05,", convertedTask);
+
+        Task restoredTask = TaskManagerUtils.restoreFromString(convertedTask);
+        assertEquals(task.getTitle(), restoredTask.getTitle());
+        assertEquals(task.getDescription(), restoredTask.getDescription());
+        assertEquals(task.getStartTime(), restoredTask.getStartTime());
+        assertEquals(task.getDuration(), restoredTask.getDuration());
+    }
+
+    @Test
+    public void shouldDistinguishNullFromNullString() {
+        SubTask subTask = new SubTask("null", null, 3, 8);
+        String convertedTask = TaskManagerUtils.convertToString(subTask);
+        assertEquals("8,SUBTASK,\"null\",NEW,null,0,null,3", convertedTask);
+
+        SubTask restoredSubTask = (SubTask) TaskManagerUtils.restoreFromString(convertedTask);
+        assertEquals("null", restoredSubTask.getTitle());
+        assertNull(restoredSubTask.getDescription(), "null без кавычек означает отсутствие описания");
+        assertEquals(3, restoredSubTask.getParentEpicId());
+    }
+
+    @Test
+    public void shouldRejectMalformedRows() {
+        for (String row : List.of("1,TASK,Задача,NEW", "x,TASK,a,NEW,b,0,null,", "1,TASK,\"a,NEW,b,0,null,",
+                "1,BUG,a,NEW,b,0,null,", "2,SUBTASK,a,NEW,b,0,null,")) {
+            assertThrows(RuntimeException.class, () -> TaskManagerUtils.restoreFromString(row), row);
+        }
+    }
+
+    @Test
+    public void shouldRoundTripSpecialCharactersThroughFile() {
+        task1.setTitle("Задача, с запятой");
+        task1.setDescription("Многострочное\nописание с \"кавычками\"");
+        manager.updateTask(task1);
+
+        Task loadedTask = FileBackedTaskManager.loadFromFile(testFile).getTaskById(task1Id).orElseThrow();
+        assertEquals(task1.getTitle(), loadedTask.getTitle());
+        assertEquals(task1.getDescription(), loadedTask.getDescription());
+    }
+
 }
\ No newline at end of file
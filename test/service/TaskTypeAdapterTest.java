@@ -0,0 +1,109 @@
+package service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import model.Epic;
+import model.Status;
+import model.SubTask;
+import model.Task;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskTypeAdapterTest {
+    private final Gson gson = Managers.getGson();
+
+    private Epic epicWithSubTasks() {
+        Epic epic = new Epic("Эпик", "Описание", 1);
+        SubTask first = new SubTask("Первая", "Описание", 1, 2);
+        first.setStatus(Status.DONE);
+        first.setDuration(Duration.ofMinutes(30));
+        first.setStartTime(LocalDateTime.of(2025, 1, 1, 10, 0));
+        SubTask second = new SubTask("Вторая", "Описание", 1, 3);
+        epic.addSubTaskToEpic(first);
+        epic.addSubTaskToEpic(second);
+        return epic;
+    }
+
+    @Test
+    void testTaskIsWrittenCompactlyInFixedOrder() {
+        Task task = new Task("Задача", "Описание", 5);
+        task.setStatus(Status.IN_PROGRESS);
+        task.setDuration(Duration.ofMinutes(90));
+        task.setStartTime(LocalDateTime.of(2025, 3, 1, 9, 30));
+
+        assertEquals("{\"id\":5,\"title\":\"Задача\",\"status\":\"IN_PROGRESS\",\"description\":\"Описание\","
+                + "\"duration\":\"PT1H30M\",\"startTime\":\"01.03.2025 09:30\"}", gson.toJson(task));
+    }
+
+    @Test
+    void testTasksSurviveRoundTrip() {
+        Task task = new Task("Задача", "Описание", 5);
+        task.setStatus(Status.DONE);
+        task.setDuration(Duration.ofMinutes(15));
+        task.setStartTime(LocalDateTime.of(2025, 3, 1, 9, 30));
+        Task readTask = gson.fromJson(gson.toJson(task), Task.class);
+        assertEquals(gson.toJson(task), gson.toJson(readTask), "задача должна читаться без потерь");
+
+        SubTask subTask = new SubTask("Подзадача", "Описание", 7, 8);
+        SubTask readSubTask = gson.fromJson(gson.toJson(subTask), SubTask.class);
+        assertEquals(7, readSubTask.getParentEpicId());
+        assertEquals(8, readSubTask.getId());
+        assertEquals(Duration.ZERO, readSubTask.getDuration());
+        assertTrue(readSubTask.getStartTime().isEmpty());
+    }
+
+    @Test
+    void testEpicSubTasksAreWrittenAsIdsUnlessExpanded() {
+        Epic epic = epicWithSubTasks();
+
+        JsonObject compact = JsonParser.parseString(gson.toJson(epic)).getAsJsonObject();
+        JsonArray ids = compact.getAsJsonArray("subTasks");
+        assertEquals(2, ids.size());
+        assertTrue(ids.get(0).isJsonPrimitive() && ids.get(1).isJsonPrimitive(), "ожидался список id подзадач");
+        assertEquals("IN_PROGRESS", compact.get("status").getAsString());
+        assertEquals("01.01.2025 10:30", compact.get("endTime").getAsString());
+
+        JsonObject expanded = JsonParser.parseString(Managers.getExpandedGson().toJson(epic)).getAsJsonObject();
+        JsonArray subTasks = expanded.getAsJsonArray("subTasks");
+        assertEquals(2, subTasks.size());
+        assertEquals(1, subTasks.get(0).getAsJsonObject().get("parentEpicId").getAsInt());
+    }
+
+    @Test
+    void testEpicReadsEveryFormOfSubTasks() {
+        Epic epic = epicWithSubTasks();
+
+        Epic fromIds = gson.fromJson(gson.toJson(epic), Epic.class);
+        assertEquals(0, fromIds.getSubTasksCount(), "список id не создает подзадач");
+        assertEquals(epic.getId(), fromIds.getId());
+
+        Epic fromExpanded = gson.fromJson(Managers.getExpandedGson().toJson(epic), Epic.class);
+        assertEquals(2, fromExpanded.getSubTasksCount());
+        assertEquals(Status.IN_PROGRESS, fromExpanded.getStatus(), "статус пересчитывается по подзадачам");
+
+        String legacy = "{\"subTasks\":{\"2\":{\"parentEpicId\":1,\"id\":2,\"title\":\"Первая\",\"status\":\"DONE\"}},"
+                + "\"endTime\":null,\"id\":1,\"title\":\"Эпик\",\"unknown\":[1,{\"a\":2}]}";
+        Epic fromLegacy = gson.fromJson(legacy, Epic.class);
+        assertEquals(1, fromLegacy.getSubTasksCount(), "прежний формат подзадач должен читаться");
+        assertEquals(Status.DONE, fromLegacy.getStatus());
+    }
+
+    @Test
+    void testListsUseRuntimeTypes() {
+        Epic epic = epicWithSubTasks();
+        List<Task> tasks = List.of(new Task("Задача", "Описание", 4), epic, epic.getEpicSubTasks().getFirst());
+        JsonArray array = JsonParser.parseString(gson.toJson(tasks)).getAsJsonArray();
+
+        assertFalse(array.get(0).getAsJsonObject().has("subTasks"));
+        assertTrue(array.get(1).getAsJsonObject().has("subTasks"), "эпик в списке задач пишется как эпик");
+        assertTrue(array.get(2).getAsJsonObject().has("parentEpicId"), "подзадача в списке задач пишется как подзадача");
+        assertSame(gson, Managers.getGson(), "Gson должен быть общим");
+    }
+}